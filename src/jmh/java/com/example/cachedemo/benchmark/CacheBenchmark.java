@@ -0,0 +1,117 @@
+package com.example.cachedemo.benchmark;
+
+import com.example.cachedemo.cache.Cache;
+import com.example.cachedemo.cache.IntCache;
+import com.example.cachedemo.model.Film;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput and latency of get, put and get-or-put over the cache engines.
+ * The thread count is set by {@link CacheBenchmarkRunner}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheBenchmark {
+
+    private static final int TRACE_SIZE = 1 << 20;
+    private static final int TRACE_MASK = TRACE_SIZE - 1;
+
+    @Param({"lru", "2q", "striped", "lru-buffered", "2q-buffered", "tinylfu", "arc", "2q-ghost", "int-lru", "offheap"})
+    public String engine;
+
+    @Param({"zipfian", "uniform", "scan", "loop"})
+    public String distribution;
+
+    @Param({"1000", "100000"})
+    public int cacheSize;
+
+    private Cache<Integer, Film> cache;
+    // the int engine behind the adapter, measured with primitive keys, null for the other engines
+    private IntCache<Film> intCache;
+    private int[] trace;
+    // boxed up front, so boxing is not part of the measurement
+    private Integer[] keys;
+    private Film[] films;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int keySpace = cacheSize * 4;
+        trace = KeyDistributions.generate(distribution, keySpace, cacheSize, TRACE_SIZE, 42);
+        keys = new Integer[TRACE_SIZE];
+        for (int i = 0; i < TRACE_SIZE; i++) {
+            keys[i] = trace[i];
+        }
+        films = new Film[keySpace];
+        for (int id = 0; id < keySpace; id++) {
+            films[id] = CacheEngines.film(id);
+        }
+
+        cache = CacheEngines.create(engine, cacheSize);
+        intCache = CacheEngines.intCache(cache);
+        for (int i = 0; i < TRACE_SIZE && cache.size() < cache.maxSize(); i++) {
+            cache.put(keys[i], films[keys[i]]);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        // threads start at different points of the trace
+        int index = ThreadLocalRandom.current().nextInt(TRACE_SIZE);
+    }
+
+    @Benchmark
+    public Film get(ThreadState threadState) {
+        int index = threadState.index++ & TRACE_MASK;
+        if (intCache != null) {
+            return intCache.get(trace[index]);
+        }
+        return cache.get(keys[index]);
+    }
+
+    @Benchmark
+    public Film put(ThreadState threadState) {
+        int index = threadState.index++ & TRACE_MASK;
+        if (intCache != null) {
+            return intCache.put(trace[index], films[trace[index]]);
+        }
+        Integer key = keys[index];
+        return cache.put(key, films[key]);
+    }
+
+    @Benchmark
+    public Film mixed(ThreadState threadState) {
+        int index = threadState.index++ & TRACE_MASK;
+        if (intCache != null) {
+            int key = trace[index];
+            Film film = intCache.get(key);
+            if (film == null) {
+                intCache.put(key, films[key]);
+            }
+            return film;
+        }
+        Integer key = keys[index];
+        Film film = cache.get(key);
+        if (film == null) {
+            cache.put(key, films[key]);
+        }
+        return film;
+    }
+}
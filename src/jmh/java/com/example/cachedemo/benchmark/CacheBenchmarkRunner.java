@@ -0,0 +1,37 @@
+package com.example.cachedemo.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs {@link CacheBenchmark} once per thread count with the GC profiler (allocation rate per operation).
+ * Results are written to target/jmh-{threads}-threads.csv.
+ * <p>
+ * System properties: threads (default 1,4,16,64), engine, distribution, cacheSize
+ * (comma separated values overriding the benchmark parameters).
+ */
+public class CacheBenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : CacheBenchmark.class.getSimpleName();
+        for (String threads : System.getProperty("threads", "1,4,16,64").split(",")) {
+            ChainedOptionsBuilder options = new OptionsBuilder()
+                    .include(include)
+                    .threads(Integer.parseInt(threads.trim()))
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.CSV)
+                    .result("target/jmh-" + threads.trim() + "-threads.csv");
+            for (String param : new String[]{"engine", "distribution", "cacheSize"}) {
+                String values = System.getProperty(param);
+                if (values != null && !values.isEmpty()) {
+                    options.param(param, values.split(","));
+                }
+            }
+            new Runner(options.build()).run();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.cachedemo.benchmark;
+
+import com.example.cachedemo.cache.Cache;
+import com.example.cachedemo.cache.Cache2QImpl;
+import com.example.cachedemo.cache.CacheARCImpl;
+import com.example.cachedemo.cache.CacheBufferedImpl;
+import com.example.cachedemo.cache.CacheGhost2QImpl;
+import com.example.cachedemo.cache.CacheLRUImpl;
+import com.example.cachedemo.cache.CacheStripedImpl;
+import com.example.cachedemo.cache.CacheTinyLfuImpl;
+import com.example.cachedemo.cache.FilmCacheOffHeap;
+import com.example.cachedemo.cache.IntCache;
+import com.example.cachedemo.cache.IntCacheAdapter;
+import com.example.cachedemo.cache.IntCacheLRUImpl;
+import com.example.cachedemo.model.Film;
+
+/**
+ * Creates the cache engines by their profile name, all sized in number of films.
+ */
+final class CacheEngines {
+
+    // every benchmark film takes one 64 byte slot of the off-heap cache
+    static final int OFF_HEAP_SLOT_SIZE = 64;
+
+    private CacheEngines() {
+    }
+
+    static Cache<Integer, Film> create(String engine, int cacheSize) {
+        switch (engine) {
+            case "lru":
+                return new CacheLRUImpl<>(cacheSize);
+            case "2q":
+                return new Cache2QImpl<>(cacheSize);
+            case "striped":
+                return new CacheStripedImpl<>(cacheSize);
+            case "lru-buffered":
+                return new CacheBufferedImpl<>(new CacheLRUImpl<>(cacheSize));
+            case "2q-buffered":
+                return new CacheBufferedImpl<>(new Cache2QImpl<>(cacheSize));
+            case "tinylfu":
+                return new CacheTinyLfuImpl<>(cacheSize);
+            case "arc":
+                return new CacheARCImpl<>(cacheSize);
+            case "2q-ghost":
+                return new CacheGhost2QImpl<>(cacheSize);
+            case "int-lru":
+                return new IntCacheAdapter<>(new IntCacheLRUImpl<>(cacheSize));
+            case "offheap":
+                return new FilmCacheOffHeap(cacheSize * OFF_HEAP_SLOT_SIZE);
+            default:
+                throw new IllegalArgumentException("Unknown engine " + engine);
+        }
+    }
+
+    /**
+     * Returns the int engine behind the adapter, so the benchmark does not measure the boxed path of the adapter.
+     */
+    static IntCache<Film> intCache(Cache<Integer, Film> cache) {
+        return cache instanceof IntCacheAdapter ? ((IntCacheAdapter<Film>) cache).intCache() : null;
+    }
+
+    static Film film(int id) {
+        return Film.builder()
+                .id(id)
+                .title(String.format("Film %08d", id))
+                .year(1900 + id % 120)
+                .genre("Drama")
+                .watched(id % 2 == 0)
+                .build();
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.cachedemo.benchmark;
+
+import java.util.Random;
+
+/**
+ * Pre-generated key sequences, so that the benchmarks measure the cache and not the generator.
+ */
+final class KeyDistributions {
+
+    private static final double ZIPF_THETA = 0.99;
+
+    private KeyDistributions() {
+    }
+
+    /**
+     * @param distribution zipfian, uniform, scan or loop
+     * @param keySpace     keys are taken from [0, keySpace)
+     * @param cacheSize    size of the cache, the loop distribution cycles over a bit more keys than fit
+     */
+    static int[] generate(String distribution, int keySpace, int cacheSize, int length, long seed) {
+        Random random = new Random(seed);
+        int[] keys = new int[length];
+        switch (distribution) {
+            case "zipfian":
+                Zipfian zipfian = new Zipfian(keySpace, ZIPF_THETA);
+                for (int i = 0; i < length; i++) {
+                    keys[i] = scramble(zipfian.next(random), keySpace);
+                }
+                break;
+            case "uniform":
+                for (int i = 0; i < length; i++) {
+                    keys[i] = random.nextInt(keySpace);
+                }
+                break;
+            case "scan":
+                for (int i = 0; i < length; i++) {
+                    keys[i] = i % keySpace;
+                }
+                break;
+            case "loop":
+                int loop = Math.min(keySpace, cacheSize + cacheSize / 2);
+                for (int i = 0; i < length; i++) {
+                    keys[i] = i % loop;
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown distribution " + distribution);
+        }
+        return keys;
+    }
+
+    /**
+     * Spreads the popular ranks over the key space instead of keeping them at the lowest ids.
+     */
+    private static int scramble(int rank, int keySpace) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < 4; i++) {
+            hash ^= (rank >>> (i * 8)) & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return (int) Math.floorMod(hash, (long) keySpace);
+    }
+
+    /**
+     * Zipfian generator from "Quickly generating billion-record synthetic databases" (Gray et al.), as used by YCSB.
+     */
+    private static final class Zipfian {
+        private final int items;
+        private final double theta;
+        private final double zetaN;
+        private final double alpha;
+        private final double eta;
+
+        private Zipfian(int items, double theta) {
+            this.items = items;
+            this.theta = theta;
+            this.zetaN = zeta(items, theta);
+            this.alpha = 1.0 / (1.0 - theta);
+            double zeta2 = zeta(2, theta);
+            this.eta = (1 - Math.pow(2.0 / items, 1 - theta)) / (1 - zeta2 / zetaN);
+        }
+
+        private int next(Random random) {
+            double u = random.nextDouble();
+            double uz = u * zetaN;
+            if (uz < 1.0) {
+                return 0;
+            }
+            if (uz < 1.0 + Math.pow(0.5, theta)) {
+                return 1;
+            }
+            return (int) (items * Math.pow(eta * u - eta + 1, alpha)) % items;
+        }
+
+        private static double zeta(int n, double theta) {
+            double sum = 0;
+            for (int i = 1; i <= n; i++) {
+                sum += 1 / Math.pow(i, theta);
+            }
+            return sum;
+        }
+    }
+}
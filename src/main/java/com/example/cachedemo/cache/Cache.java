@@ -1,10 +1,46 @@
 package com.example.cachedemo.cache;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
 public interface Cache<K, V> {
     V get(K key);
 
+    /**
+     * Returns the cached value or loads and caches it.
+     * Concurrent misses of the same key share a single call of the loader.
+     * A null result of the loader is returned but not cached.
+     */
+    V get(K key, Function<? super K, ? extends V> loader);
+
+    /**
+     * Returns the cached values of the keys in the order of the keys, keys not in the cache are left out.
+     * Engines guarded by a single lock take it once for the whole batch.
+     */
+    default Map<K, V> getAll(Collection<? extends K> keys) {
+        Map<K, V> result = new LinkedHashMap<>();
+        for (K key : keys) {
+            V value = get(key);
+            if (value != null) {
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+
     V put(K key, V value);
 
+    /**
+     * Puts all the entries, engines guarded by a single lock take it once for the whole batch.
+     */
+    default void putAll(Map<? extends K, ? extends V> entries) {
+        for (Map.Entry<? extends K, ? extends V> entry : entries.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
     V remove(K key);
 
     int size();
@@ -14,4 +50,6 @@ public interface Cache<K, V> {
     void resize(int maxSize);
 
     void evictAll();
+
+    void setEvictionListener(EvictionListener<K, V> listener);
 }
@@ -1,8 +1,21 @@
 package com.example.cachedemo.cache;
 
+import com.example.cachedemo.cache.stats.CacheStats;
+import com.example.cachedemo.cache.stats.ConcurrentStatsCounter;
+import com.example.cachedemo.cache.stats.StatsCounter;
+
 import java.util.*;
+import java.util.function.Function;
+
+public class Cache2QImpl<K, V> implements Cache<K, V>, SnapshotSupport<K, V>, StatsSupport {
+    // queue numbers used in snapshots
+    public static final int QUEUE_IN = 0;
+    public static final int QUEUE_OUT = 1;
+    public static final int QUEUE_HOT = 2;
+
+    // max entries moved or evicted by one operation while the cache shrinks after resize()
+    static final int RESIZE_STEP = 16;
 
-public class Cache2QImpl<K, V> implements Cache<K, V> {
     private final HashMap<K, V> map;
     private final LinkedHashSet<K> mapIn, mapOut, mapHot;
 
@@ -10,13 +23,21 @@ public class Cache2QImpl<K, V> implements Cache<K, V> {
     private int sizeOut;
     private int sizeHot;
 
+    // sizes the queues are trimmed to, above the target sizes while the cache shrinks
     private int maxSizeIn;
     private int maxSizeOut;
     private int maxSizeHot;
 
+    private int targetSizeIn;
+    private int targetSizeOut;
+    private int targetSizeHot;
+
+    private EvictionListener<K, V> evictionListener;
+
+    private final LoadCoalescer<K, V> loads = new LoadCoalescer<>();
+
     //variables for statistic
-    private int hitCount;
-    private int missCount;
+    private volatile StatsCounter statsCounter = new ConcurrentStatsCounter();
 
     public Cache2QImpl(int maxSize) {
         if (maxSize <= 0) {
@@ -33,19 +54,13 @@ public class Cache2QImpl<K, V> implements Cache<K, V> {
     }
 
     /**
-     * Sets the size of the cache.
+     * Sets the size of the cache. Growing takes effect at once, shrinking moves or evicts
+     * at most {@link #RESIZE_STEP} entries here and in every following operation.
      */
     @Override
-    public void resize(int maxSize) {
-
+    public synchronized void resize(int maxSize) {
         calcMaxSizes(maxSize);
-        synchronized (this) {
-            HashMap<K, V> copy = new HashMap<>(map);
-            evictAll();
-            for (K key : copy.keySet()) {
-                put(key, copy.get(key));
-            }
-        }
+        shrinkStep();
     }
 
     /**
@@ -60,9 +75,10 @@ public class Cache2QImpl<K, V> implements Cache<K, V> {
 
         V mapValue;
         synchronized (this) {
+            shrinkStep();
             mapValue = map.get(key);
             if (mapValue != null) {
-                hitCount++;
+                statsCounter.recordHits(1);
                 if (mapHot.contains(key)) {
                     // add & trim (LRU)
                     mapHot.remove(key);
@@ -78,11 +94,21 @@ public class Cache2QImpl<K, V> implements Cache<K, V> {
                 }
                 return mapValue;
             }
-            missCount++;
+            statsCounter.recordMisses(1);
         }
         return null;
     }
 
+    @Override
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        return loads.get(this, key, loader, statsCounter);
+    }
+
+    @Override
+    public synchronized Map<K, V> getAll(Collection<? extends K> keys) {
+        return Cache.super.getAll(keys);
+    }
+
     /**
      *  Cache value
      */
@@ -112,6 +138,7 @@ public class Cache2QImpl<K, V> implements Cache<K, V> {
         }
         V result;
         synchronized (this) {
+            shrinkStep();
             final int sizeOfValue = safeSizeOf(key, value);
             //if there are free page slots then put value into a free page slot
             boolean hasFreeSlot = add2slot(key, safeSizeOf(key, value));
@@ -137,6 +164,11 @@ public class Cache2QImpl<K, V> implements Cache<K, V> {
         return result;
     }
 
+    @Override
+    public synchronized void putAll(Map<? extends K, ? extends V> entries) {
+        Cache.super.putAll(entries);
+    }
+
     /**
      * Removes the entry if it exists.
      */
@@ -147,6 +179,7 @@ public class Cache2QImpl<K, V> implements Cache<K, V> {
 
         V previous;
         synchronized (this) {
+            shrinkStep();
             previous = map.remove(key);
             if (previous != null) {
                 if (mapIn.contains(key)) {
@@ -184,6 +217,9 @@ public class Cache2QImpl<K, V> implements Cache<K, V> {
         sizeIn = 0;
         sizeOut = 0;
         sizeHot = 0;
+        maxSizeIn = targetSizeIn;
+        maxSizeOut = targetSizeOut;
+        maxSizeHot = targetSizeHot;
     }
 
     @Override
@@ -193,7 +229,59 @@ public class Cache2QImpl<K, V> implements Cache<K, V> {
 
     @Override
     public synchronized final int maxSize() {
-        return maxSizeIn + maxSizeOut + maxSizeHot;
+        return targetSizeIn + targetSizeOut + targetSizeHot;
+    }
+
+    @Override
+    public synchronized void setEvictionListener(EvictionListener<K, V> listener) {
+        this.evictionListener = listener;
+    }
+
+    @Override
+    public synchronized List<SnapshotEntry<K, V>> snapshot() {
+        List<SnapshotEntry<K, V>> entries = new ArrayList<>(map.size());
+        for (K key : mapIn) {
+            entries.add(new SnapshotEntry<>(QUEUE_IN, key, map.get(key)));
+        }
+        for (K key : mapOut) {
+            entries.add(new SnapshotEntry<>(QUEUE_OUT, key, map.get(key)));
+        }
+        for (K key : mapHot) {
+            entries.add(new SnapshotEntry<>(QUEUE_HOT, key, map.get(key)));
+        }
+        return entries;
+    }
+
+    @Override
+    public synchronized void restore(List<SnapshotEntry<K, V>> entries) {
+        evictAll();
+        for (SnapshotEntry<K, V> entry : entries) {
+            K key = entry.getKey();
+            V value = entry.getValue();
+            if (map.containsKey(key)) {
+                continue;
+            }
+            map.put(key, value);
+            final int sizeOfValue = safeSizeOf(key, value);
+            switch (entry.getQueue()) {
+                case QUEUE_IN:
+                    mapIn.add(key);
+                    sizeIn += sizeOfValue;
+                    break;
+                case QUEUE_OUT:
+                    mapOut.add(key);
+                    sizeOut += sizeOfValue;
+                    break;
+                default:
+                    mapHot.add(key);
+                    sizeHot += sizeOfValue;
+                    break;
+            }
+        }
+        // max sizes may have changed since the snapshot was taken
+        sizeIn -= trimFifo(QUEUE_IN, mapIn, sizeIn, maxSizeIn);
+        sizeOut -= trimFifo(QUEUE_OUT, mapOut, sizeOut, maxSizeOut);
+        trimMapHot();
     }
 
     /**
@@ -207,10 +295,58 @@ public class Cache2QImpl<K, V> implements Cache<K, V> {
             throw new IllegalArgumentException("maxSize <= 0");
         }
         synchronized (this) {
-            maxSizeIn = (int) (maxSize * .25);
-            maxSizeOut = maxSizeIn * 2;
-            maxSizeHot = maxSize - maxSizeOut - maxSizeIn;
+            targetSizeIn = (int) (maxSize * .25);
+            targetSizeOut = targetSizeIn * 2;
+            targetSizeHot = maxSize - targetSizeOut - targetSizeIn;
+            // the queues keep their entries until shrinkStep() trims them
+            maxSizeIn = Math.max(targetSizeIn, sizeIn);
+            maxSizeOut = Math.max(targetSizeOut, sizeOut);
+            maxSizeHot = Math.max(targetSizeHot, sizeHot);
+        }
+    }
+
+    /**
+     * Brings the queues down to their target sizes by a bounded number of moves and evictions.
+     * Entries leave mapIn for mapOut as usual, mapOut and mapHot evict their eldest entries.
+     */
+    private void shrinkStep() {
+        if (maxSizeIn == targetSizeIn && maxSizeOut == targetSizeOut && maxSizeHot == targetSizeHot) {
+            return;
+        }
+        int budget = RESIZE_STEP;
+        Iterator<K> it = mapIn.iterator();
+        while (budget > 0 && sizeIn > targetSizeIn && it.hasNext()) {
+            K key = it.next();
+            it.remove();
+            int movedSize = safeSizeOf(key, map.get(key));
+            sizeIn -= movedSize;
+            mapOut.add(key);
+            sizeOut += movedSize;
+            budget--;
+        }
+        it = mapOut.iterator();
+        while (budget > 0 && sizeOut > targetSizeOut && it.hasNext()) {
+            K key = it.next();
+            it.remove();
+            V value = map.remove(key);
+            int removedSize = safeSizeOf(key, value);
+            sizeOut -= removedSize;
+            notifyEviction(QUEUE_OUT, key, value, removedSize);
+            budget--;
+        }
+        it = mapHot.iterator();
+        while (budget > 0 && sizeHot > targetSizeHot && it.hasNext()) {
+            K key = it.next();
+            it.remove();
+            V value = map.remove(key);
+            int removedSize = safeSizeOf(key, value);
+            sizeHot -= removedSize;
+            notifyEviction(QUEUE_HOT, key, value, removedSize);
+            budget--;
         }
+        maxSizeIn = Math.max(targetSizeIn, sizeIn);
+        maxSizeOut = Math.max(targetSizeOut, sizeOut);
+        maxSizeHot = Math.max(targetSizeHot, sizeHot);
     }
 
     /**
@@ -231,7 +367,9 @@ public class Cache2QImpl<K, V> implements Cache<K, V> {
             key = mapHot.iterator().next();
             mapHot.remove(key);
             value = map.remove(key);
-            sizeHot -= safeSizeOf(key, value);
+            int removedSize = safeSizeOf(key, value);
+            sizeHot -= removedSize;
+            notifyEviction(QUEUE_HOT, key, value, removedSize);
         }
     }
 
@@ -274,13 +412,32 @@ public class Cache2QImpl<K, V> implements Cache<K, V> {
                     keyOut = mapOut.iterator().next();
                     mapOut.remove(keyOut);
                     valueOut = map.remove(keyOut);
-                    sizeOut -= safeSizeOf(keyOut, valueOut);
+                    int removedOutSize = safeSizeOf(keyOut, valueOut);
+                    sizeOut -= removedOutSize;
+                    notifyEviction(QUEUE_OUT, keyOut, valueOut, removedOutSize);
                 }
             }
         }
         return result;
     }
 
+    /**
+     * Remove items by FIFO from the queue until it fits, returns the size removed
+     */
+    private int trimFifo(int queueNumber, LinkedHashSet<K> queue, int size, int maxSize) {
+        int removed = 0;
+        Iterator<K> it = queue.iterator();
+        while (size - removed > maxSize && it.hasNext()) {
+            K key = it.next();
+            it.remove();
+            V value = map.remove(key);
+            int removedSize = safeSizeOf(key, value);
+            removed += removedSize;
+            notifyEviction(queueNumber, key, value, removedSize);
+        }
+        return removed;
+    }
+
     /**
      * Check for free slot in any container and add if exists
      */
@@ -305,6 +462,13 @@ public class Cache2QImpl<K, V> implements Cache<K, V> {
     }
 
 
+    private void notifyEviction(int queueNumber, K key, V value, int weight) {
+        statsCounter.recordEviction(queueNumber, weight);
+        if (evictionListener != null) {
+            evictionListener.onEviction(key, value);
+        }
+    }
+
     private int safeSizeOf(K key, V value) {
         int result = sizeOf(key, value);
         if (result < 0) {
@@ -322,23 +486,35 @@ public class Cache2QImpl<K, V> implements Cache<K, V> {
             return 1;
     }
 
-    public synchronized final int hitCount() {
-        return hitCount;
+    @Override
+    public void setStatsCounter(StatsCounter statsCounter) {
+        if (statsCounter == null) {
+            throw new NullPointerException("statsCounter == null");
+        }
+        this.statsCounter = statsCounter;
+    }
+
+    @Override
+    public CacheStats stats() {
+        return statsCounter.snapshot();
+    }
+
+    public final long hitCount() {
+        return stats().hitCount();
     }
 
-    public synchronized final int missCount() {
-        return missCount;
+    public final long missCount() {
+        return stats().missCount();
     }
 
     @Override
     public synchronized final String toString() {
-        int accesses = hitCount + missCount;
-        int hitPercent = accesses != 0 ? (100 * hitCount / accesses) : 0;
+        CacheStats stats = stats();
         return String.format("Cache[size=%d,maxSize=%d,hits=%d,misses=%d,hitRate=%d%%," +
                 "sizeIn=%d,sizeOut=%d,sizeHot=%d," +
-                        "]",
-                size(), maxSize(), hitCount, missCount, hitPercent, sizeIn, sizeOut, sizeHot)
-                + "\n map:" + map.toString();
+                        "evictionsOut=%d,evictionsHot=%d]",
+                size(), maxSize(), stats.hitCount(), stats.missCount(), (int) (100 * stats.hitRate()),
+                sizeIn, sizeOut, sizeHot, stats.evictionCount(QUEUE_OUT), stats.evictionCount(QUEUE_HOT));
     }
 }
 
@@ -0,0 +1,362 @@
+package com.example.cachedemo.cache;
+
+import com.example.cachedemo.cache.stats.CacheStats;
+import com.example.cachedemo.cache.stats.ConcurrentStatsCounter;
+import com.example.cachedemo.cache.stats.StatsCounter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Adaptive replacement cache (ARC).
+ * Like 2Q it keeps a recency queue (T1) for entries seen once and a frequency queue (T2)
+ * for entries seen at least twice, but the split between them is not fixed: the ghost queues
+ * B1/B2 remember keys evicted from T1/T2 and a hit in them moves the target size of T1.
+ */
+public class CacheARCImpl<K, V> implements Cache<K, V>, SnapshotSupport<K, V>, StatsSupport {
+
+    // queue numbers used in snapshots and eviction statistics, the ghost queues hold no values
+    public static final int QUEUE_RECENT = 0;
+    public static final int QUEUE_FREQUENT = 1;
+
+    // access ordered maps, the eldest entry is the LRU one
+    private final LinkedHashMap<K, V> mapRecent, mapFrequent;
+    // ghost queues hold only keys and the size the entry had
+    private final LinkedHashMap<K, Integer> ghostRecent, ghostFrequent;
+
+    private int sizeRecent;
+    private int sizeFrequent;
+    private int sizeGhostRecent;
+    private int sizeGhostFrequent;
+
+    private int maxSize;
+    // target size of the recency queue, adapted on ghost hits
+    private int targetRecent;
+
+    private EvictionListener<K, V> evictionListener;
+
+    private final LoadCoalescer<K, V> loads = new LoadCoalescer<>();
+
+    private volatile StatsCounter statsCounter = new ConcurrentStatsCounter();
+
+    public CacheARCImpl(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+
+        this.maxSize = maxSize;
+        mapRecent = new LinkedHashMap<>(16, 0.75f, true);
+        mapFrequent = new LinkedHashMap<>(16, 0.75f, true);
+        ghostRecent = new LinkedHashMap<>();
+        ghostFrequent = new LinkedHashMap<>();
+    }
+
+    @Override
+    public synchronized V get(K key) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+
+        V value = mapRecent.remove(key);
+        if (value != null) {
+            // second hit, move to the frequency queue
+            int sizeOfValue = safeSizeOf(key, value);
+            sizeRecent -= sizeOfValue;
+            mapFrequent.put(key, value);
+            sizeFrequent += sizeOfValue;
+            statsCounter.recordHits(1);
+            return value;
+        }
+        value = mapFrequent.get(key);
+        if (value != null) {
+            statsCounter.recordHits(1);
+            return value;
+        }
+        statsCounter.recordMisses(1);
+        return null;
+    }
+
+    @Override
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        return loads.get(this, key, loader, statsCounter);
+    }
+
+    @Override
+    public synchronized Map<K, V> getAll(Collection<? extends K> keys) {
+        return Cache.super.getAll(keys);
+    }
+
+    @Override
+    public synchronized V put(K key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException("key == null || value == null");
+        }
+
+        final int sizeOfValue = safeSizeOf(key, value);
+        boolean toRecent;
+        boolean ghostFrequentHit = false;
+        V previous;
+        Integer ghostSize;
+        if ((previous = mapRecent.remove(key)) != null) {
+            // an update is a second access, like a hit it moves the entry to the frequency queue
+            sizeRecent -= safeSizeOf(key, previous);
+            toRecent = false;
+        } else if ((previous = mapFrequent.remove(key)) != null) {
+            sizeFrequent -= safeSizeOf(key, previous);
+            toRecent = false;
+        } else if ((ghostSize = ghostRecent.remove(key)) != null) {
+            // recency queue was too small, grow its target by the ratio of the ghost sizes before the hit
+            int delta = Math.max(1, sizeGhostFrequent / Math.max(1, sizeGhostRecent)) * sizeOfValue;
+            sizeGhostRecent -= ghostSize;
+            targetRecent = Math.min(maxSize, targetRecent + delta);
+            toRecent = false;
+        } else if ((ghostSize = ghostFrequent.remove(key)) != null) {
+            // frequency queue was too small, shrink the recency target
+            int delta = Math.max(1, sizeGhostRecent / Math.max(1, sizeGhostFrequent)) * sizeOfValue;
+            sizeGhostFrequent -= ghostSize;
+            targetRecent = Math.max(0, targetRecent - delta);
+            toRecent = false;
+            ghostFrequentHit = true;
+        } else {
+            toRecent = true;
+        }
+
+        // room is made before the insert, so the new entry is never the victim
+        replace(ghostFrequentHit, sizeOfValue);
+        if (toRecent) {
+            mapRecent.put(key, value);
+            sizeRecent += sizeOfValue;
+        } else {
+            mapFrequent.put(key, value);
+            sizeFrequent += sizeOfValue;
+        }
+        // evicts the new entry only if it alone is larger than max size
+        replace(false, 0);
+        trimGhosts();
+        return previous;
+    }
+
+    @Override
+    public synchronized void putAll(Map<? extends K, ? extends V> entries) {
+        Cache.super.putAll(entries);
+    }
+
+    @Override
+    public synchronized V remove(K key) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+
+        V previous;
+        if ((previous = mapRecent.remove(key)) != null) {
+            sizeRecent -= safeSizeOf(key, previous);
+        } else if ((previous = mapFrequent.remove(key)) != null) {
+            sizeFrequent -= safeSizeOf(key, previous);
+        }
+        return previous;
+    }
+
+    @Override
+    public synchronized int size() {
+        return sizeRecent + sizeFrequent;
+    }
+
+    @Override
+    public synchronized int maxSize() {
+        return maxSize;
+    }
+
+    @Override
+    public synchronized void resize(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        this.maxSize = maxSize;
+        targetRecent = Math.min(targetRecent, maxSize);
+        replace(false, 0);
+        trimGhosts();
+    }
+
+    @Override
+    public synchronized void evictAll() {
+        mapRecent.clear();
+        mapFrequent.clear();
+        ghostRecent.clear();
+        ghostFrequent.clear();
+        sizeRecent = 0;
+        sizeFrequent = 0;
+        sizeGhostRecent = 0;
+        sizeGhostFrequent = 0;
+        targetRecent = 0;
+    }
+
+    @Override
+    public synchronized void setEvictionListener(EvictionListener<K, V> listener) {
+        this.evictionListener = listener;
+    }
+
+    /**
+     * The ghost queues and the target size of T1 are not part of the snapshot.
+     */
+    @Override
+    public synchronized List<SnapshotEntry<K, V>> snapshot() {
+        List<SnapshotEntry<K, V>> entries = new ArrayList<>(mapRecent.size() + mapFrequent.size());
+        for (Map.Entry<K, V> entry : mapRecent.entrySet()) {
+            entries.add(new SnapshotEntry<>(QUEUE_RECENT, entry.getKey(), entry.getValue()));
+        }
+        for (Map.Entry<K, V> entry : mapFrequent.entrySet()) {
+            entries.add(new SnapshotEntry<>(QUEUE_FREQUENT, entry.getKey(), entry.getValue()));
+        }
+        return entries;
+    }
+
+    @Override
+    public synchronized void restore(List<SnapshotEntry<K, V>> entries) {
+        evictAll();
+        for (SnapshotEntry<K, V> entry : entries) {
+            K key = entry.getKey();
+            V value = entry.getValue();
+            if (mapRecent.containsKey(key) || mapFrequent.containsKey(key)) {
+                continue;
+            }
+            final int sizeOfValue = safeSizeOf(key, value);
+            if (entry.getQueue() == QUEUE_RECENT) {
+                mapRecent.put(key, value);
+                sizeRecent += sizeOfValue;
+            } else {
+                mapFrequent.put(key, value);
+                sizeFrequent += sizeOfValue;
+            }
+        }
+        // max size may have changed since the snapshot was taken
+        replace(false, 0);
+        trimGhosts();
+    }
+
+    /**
+     * Current target size of the recency queue, the rest of max size is left to the frequency queue.
+     */
+    public synchronized int targetRecentSize() {
+        return targetRecent;
+    }
+
+    public synchronized int recentSize() {
+        return sizeRecent;
+    }
+
+    public synchronized int frequentSize() {
+        return sizeFrequent;
+    }
+
+    /**
+     * Moves LRU entries to the ghost queues until an entry of the incoming size fits into max size.
+     * The recency queue gives up entries while it is over its target.
+     */
+    private void replace(boolean ghostFrequentHit, int incoming) {
+        while (sizeRecent + sizeFrequent + incoming > maxSize && (!mapRecent.isEmpty() || !mapFrequent.isEmpty())) {
+            if (sizeRecent < 0 || sizeFrequent < 0) {
+                throw new IllegalStateException(getClass().getName()
+                        + ".sizeOf() is reporting inconsistent results!");
+            }
+            boolean fromRecent = !mapRecent.isEmpty()
+                    && (mapFrequent.isEmpty() || sizeRecent > targetRecent
+                    || (ghostFrequentHit && sizeRecent == targetRecent));
+            if (fromRecent) {
+                int sizeOfValue = evictToGhost(QUEUE_RECENT, mapRecent, ghostRecent);
+                sizeRecent -= sizeOfValue;
+                sizeGhostRecent += sizeOfValue;
+            } else {
+                int sizeOfValue = evictToGhost(QUEUE_FREQUENT, mapFrequent, ghostFrequent);
+                sizeFrequent -= sizeOfValue;
+                sizeGhostFrequent += sizeOfValue;
+            }
+        }
+    }
+
+    private int evictToGhost(int queue, LinkedHashMap<K, V> map, LinkedHashMap<K, Integer> ghost) {
+        Iterator<Map.Entry<K, V>> it = map.entrySet().iterator();
+        Map.Entry<K, V> eldest = it.next();
+        it.remove();
+        int sizeOfValue = safeSizeOf(eldest.getKey(), eldest.getValue());
+        ghost.put(eldest.getKey(), sizeOfValue);
+        statsCounter.recordEviction(queue, sizeOfValue);
+        if (evictionListener != null) {
+            evictionListener.onEviction(eldest.getKey(), eldest.getValue());
+        }
+        return sizeOfValue;
+    }
+
+    /**
+     * Keeps T1 + B1 within max size and the whole directory within twice max size.
+     */
+    private void trimGhosts() {
+        while (sizeRecent + sizeGhostRecent > maxSize && !ghostRecent.isEmpty()) {
+            sizeGhostRecent -= dropEldest(ghostRecent);
+        }
+        while (sizeRecent + sizeFrequent + sizeGhostRecent + sizeGhostFrequent > 2 * maxSize
+                && !ghostFrequent.isEmpty()) {
+            sizeGhostFrequent -= dropEldest(ghostFrequent);
+        }
+    }
+
+    private int dropEldest(LinkedHashMap<K, Integer> ghost) {
+        Iterator<Integer> it = ghost.values().iterator();
+        int sizeOfValue = it.next();
+        it.remove();
+        return sizeOfValue;
+    }
+
+    private int safeSizeOf(K key, V value) {
+        int result = sizeOf(key, value);
+        if (result < 0) {
+            throw new IllegalStateException("Negative size: " + key + "=" + value);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the size of the entry in user-defined units.  The default
+     * implementation returns 1 so that size is the number of entries and
+     * max size is the maximum number of entries.
+     */
+    protected int sizeOf(K key, V value) {
+        return 1;
+    }
+
+    @Override
+    public void setStatsCounter(StatsCounter statsCounter) {
+        if (statsCounter == null) {
+            throw new NullPointerException("statsCounter == null");
+        }
+        this.statsCounter = statsCounter;
+    }
+
+    @Override
+    public CacheStats stats() {
+        return statsCounter.snapshot();
+    }
+
+    public final long hitCount() {
+        return stats().hitCount();
+    }
+
+    public final long missCount() {
+        return stats().missCount();
+    }
+
+    @Override
+    public synchronized final String toString() {
+        CacheStats stats = stats();
+        return String.format("ARC Cache[size=%d,maxSize=%d,hits=%d,misses=%d,hitRate=%d%%," +
+                        "targetRecent=%d,sizeRecent=%d,sizeFrequent=%d,ghostRecent=%d,ghostFrequent=%d," +
+                        "evictionsRecent=%d,evictionsFrequent=%d]",
+                size(), maxSize(), stats.hitCount(), stats.missCount(), (int) (100 * stats.hitRate()),
+                targetRecent, sizeRecent, sizeFrequent, sizeGhostRecent, sizeGhostFrequent,
+                stats.evictionCount(QUEUE_RECENT), stats.evictionCount(QUEUE_FREQUENT));
+    }
+}
@@ -0,0 +1,342 @@
+package com.example.cachedemo.cache;
+
+import com.example.cachedemo.cache.stats.CacheStats;
+import com.example.cachedemo.cache.stats.ConcurrentStatsCounter;
+import com.example.cachedemo.cache.stats.StatsCounter;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Cache with a lock-free read path in front of an eviction policy (LRU or 2Q).
+ * Reads go to a concurrent map and only record the access into a lossy ring buffer.
+ * The buffer is replayed into the policy in batches by whoever gets the eviction lock,
+ * so the policy order lags slightly behind the real access order.
+ */
+public class CacheBufferedImpl<K, V> implements Cache<K, V>, SnapshotSupport<K, V>, StatsSupport {
+
+    // must be a power of two
+    private static final int BUFFER_SIZE = 128;
+    private static final int BUFFER_MASK = BUFFER_SIZE - 1;
+    private static final int DRAIN_THRESHOLD = BUFFER_SIZE / 4;
+
+    private final ConcurrentHashMap<K, V> data = new ConcurrentHashMap<>();
+    private final Cache<K, V> policy;
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final ReadBuffer<K>[] readBuffers;
+    private final int readBufferMask;
+
+    private volatile EvictionListener<K, V> evictionListener;
+
+    private final LoadCoalescer<K, V> loads = new LoadCoalescer<>();
+
+    //variables for statistic
+    private volatile StatsCounter statsCounter = new ConcurrentStatsCounter();
+
+    @SuppressWarnings("unchecked")
+    public CacheBufferedImpl(Cache<K, V> policy) {
+        if (policy == null) {
+            throw new NullPointerException("policy == null");
+        }
+        this.policy = policy;
+        this.policy.setEvictionListener(this::onPolicyEviction);
+        if (policy instanceof StatsSupport) {
+            // replayed reads must not count as hits, only the evictions of the policy are recorded
+            ((StatsSupport) policy).setStatsCounter(new PolicyStatsCounter());
+        }
+
+        int buffers = 1;
+        while (buffers < Runtime.getRuntime().availableProcessors()) {
+            buffers <<= 1;
+        }
+        this.readBuffers = new ReadBuffer[buffers];
+        for (int i = 0; i < buffers; i++) {
+            readBuffers[i] = new ReadBuffer<>();
+        }
+        this.readBufferMask = buffers - 1;
+    }
+
+    @Override
+    public V get(K key) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+
+        V value = data.get(key);
+        if (value != null) {
+            statsCounter.recordHits(1);
+            recordAccess(key);
+            return value;
+        }
+        statsCounter.recordMisses(1);
+        return null;
+    }
+
+    @Override
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        return loads.get(this, key, loader, statsCounter);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException("key == null || value == null");
+        }
+
+        evictionLock.lock();
+        try {
+            drainReadBuffers();
+            // the policy may evict the new entry right away, so the data map is updated first
+            V previous = data.put(key, value);
+            policy.put(key, value);
+            return previous;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> entries) {
+        evictionLock.lock();
+        try {
+            drainReadBuffers();
+            for (Map.Entry<? extends K, ? extends V> entry : entries.entrySet()) {
+                if (entry.getKey() == null || entry.getValue() == null) {
+                    throw new NullPointerException("key == null || value == null");
+                }
+                data.put(entry.getKey(), entry.getValue());
+            }
+            policy.putAll(entries);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public V remove(K key) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+
+        evictionLock.lock();
+        try {
+            policy.remove(key);
+            return data.remove(key);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        return policy.size();
+    }
+
+    @Override
+    public int maxSize() {
+        return policy.maxSize();
+    }
+
+    @Override
+    public void resize(int maxSize) {
+        evictionLock.lock();
+        try {
+            drainReadBuffers();
+            policy.resize(maxSize);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public void evictAll() {
+        evictionLock.lock();
+        try {
+            policy.evictAll();
+            data.clear();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public void setEvictionListener(EvictionListener<K, V> listener) {
+        this.evictionListener = listener;
+    }
+
+    /**
+     * Snapshot of the policy, supported if the policy supports it.
+     */
+    @Override
+    public List<SnapshotEntry<K, V>> snapshot() {
+        evictionLock.lock();
+        try {
+            drainReadBuffers();
+            return policySnapshotSupport().snapshot();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public void restore(List<SnapshotEntry<K, V>> entries) {
+        evictionLock.lock();
+        try {
+            SnapshotSupport<K, V> snapshotSupport = policySnapshotSupport();
+            policy.evictAll();
+            data.clear();
+            for (SnapshotEntry<K, V> entry : entries) {
+                data.put(entry.getKey(), entry.getValue());
+            }
+            // entries the policy cannot keep are removed from the data map by the eviction listener
+            snapshotSupport.restore(entries);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean supportsSnapshot() {
+        return SnapshotSupport.supports(policy);
+    }
+
+    @SuppressWarnings("unchecked")
+    private SnapshotSupport<K, V> policySnapshotSupport() {
+        if (!SnapshotSupport.supports(policy)) {
+            throw new IllegalStateException(policy.getClass().getName() + " does not support snapshots");
+        }
+        return (SnapshotSupport<K, V>) policy;
+    }
+
+    /**
+     * Records the access into the buffer of the current thread.
+     * The event is dropped if the buffer is full or another thread won the slot.
+     */
+    private void recordAccess(K key) {
+        ReadBuffer<K> buffer = readBuffers[(int) Thread.currentThread().getId() & readBufferMask];
+        long tail = buffer.writeCount.get();
+        long pending = tail - buffer.readCount;
+        if (pending < BUFFER_SIZE && buffer.writeCount.compareAndSet(tail, tail + 1)) {
+            buffer.slots.lazySet((int) (tail & BUFFER_MASK), key);
+            pending++;
+        }
+        if (pending >= DRAIN_THRESHOLD && evictionLock.tryLock()) {
+            try {
+                drainReadBuffers();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Replays the recorded accesses into the policy order.
+     * Must be called with the eviction lock held.
+     */
+    private void drainReadBuffers() {
+        for (ReadBuffer<K> buffer : readBuffers) {
+            long head = buffer.readCount;
+            long tail = buffer.writeCount.get();
+            for (; head < tail; head++) {
+                int index = (int) (head & BUFFER_MASK);
+                K key = buffer.slots.get(index);
+                if (key == null) {
+                    // the slot is claimed but not published yet
+                    break;
+                }
+                buffer.slots.lazySet(index, null);
+                if (data.containsKey(key)) {
+                    policy.get(key);
+                }
+            }
+            buffer.readCount = head;
+        }
+    }
+
+    /**
+     * Called under the eviction lock, also by readers draining the buffers, so it only touches the data map.
+     */
+    private void onPolicyEviction(K key, V value) {
+        data.remove(key);
+        EvictionListener<K, V> listener = evictionListener;
+        if (listener != null) {
+            listener.onEviction(key, value);
+        }
+    }
+
+    @Override
+    public void setStatsCounter(StatsCounter statsCounter) {
+        if (statsCounter == null) {
+            throw new NullPointerException("statsCounter == null");
+        }
+        this.statsCounter = statsCounter;
+    }
+
+    @Override
+    public CacheStats stats() {
+        return statsCounter.snapshot();
+    }
+
+    public long hitCount() {
+        return stats().hitCount();
+    }
+
+    public long missCount() {
+        return stats().missCount();
+    }
+
+    @Override
+    public final String toString() {
+        CacheStats stats = stats();
+        return String.format("Buffered Cache[size=%d,maxSize=%d,hits=%d,misses=%d,hitRate=%d%%," +
+                        "evictions=%d]",
+                size(), maxSize(), stats.hitCount(), stats.missCount(), (int) (100 * stats.hitRate()),
+                stats.evictionCount())
+                + " policy:" + policy.toString();
+    }
+
+    private static final class ReadBuffer<K> {
+        private final AtomicReferenceArray<K> slots = new AtomicReferenceArray<>(BUFFER_SIZE);
+        private final AtomicLong writeCount = new AtomicLong();
+        // written only with the eviction lock held
+        private volatile long readCount;
+    }
+
+    /**
+     * Forwards the evictions of the policy to the counter of the buffered cache.
+     */
+    private final class PolicyStatsCounter implements StatsCounter {
+
+        @Override
+        public void recordHits(int count) {
+        }
+
+        @Override
+        public void recordMisses(int count) {
+        }
+
+        @Override
+        public void recordLoadSuccess(long loadTime) {
+        }
+
+        @Override
+        public void recordLoadFailure(long loadTime) {
+        }
+
+        @Override
+        public void recordEviction(int queue, int weight) {
+            statsCounter.recordEviction(queue, weight);
+        }
+
+        @Override
+        public CacheStats snapshot() {
+            return statsCounter.snapshot();
+        }
+    }
+}
@@ -0,0 +1,442 @@
+package com.example.cachedemo.cache;
+
+import com.example.cachedemo.cache.stats.CacheStats;
+import com.example.cachedemo.cache.stats.StatsCounter;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Adds expiration and refresh to any cache engine.
+ * An entry expires a fixed time after it was written and/or after it was last read. Expired entries
+ * are never returned, a timing wheel removes them without scanning the cache.
+ * With refresh after write, a read through {@link #get(Object, Function)} of an entry older than the
+ * refresh time reloads it in the background while the old value is still returned.
+ * Reads go straight to the delegate, writes are serialized by the decorator.
+ * Evictions of the delegate are queued without locking and their timers are dropped by the next write.
+ */
+public class CacheExpiringImpl<K, V> implements Cache<K, V>, SnapshotSupport<K, V>, StatsSupport {
+
+    // reads try to advance the wheel at most once per its finest tick
+    private static final long CLEAN_UP_INTERVAL = 1L << 30;
+
+    private final Cache<K, V> delegate;
+    private final long expireAfterWriteNanos;
+    private final long expireAfterAccessNanos;
+    private final long refreshAfterWriteNanos;
+    private final Executor refreshExecutor;
+    private final LongSupplier nanoTime;
+
+    private final ConcurrentHashMap<K, Timer<K>> timers = new ConcurrentHashMap<>();
+    // guards the wheel and all writes to the delegate
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final TimerWheel<Timer<K>> wheel;
+    private volatile long lastCleanUp;
+    // evicted by the delegate, possibly under its own lock, the timers are dropped with the write lock held
+    private final ConcurrentLinkedQueue<Map.Entry<K, V>> evicted = new ConcurrentLinkedQueue<>();
+
+    private volatile EvictionListener<K, V> evictionListener;
+    // shared with the delegate, which records hits, misses and evictions
+    private volatile StatsCounter statsCounter = StatsCounter.disabled();
+
+    private final LoadCoalescer<K, V> loads = new LoadCoalescer<>();
+
+    /**
+     * A zero duration disables the corresponding expiration or refresh.
+     */
+    public CacheExpiringImpl(Cache<K, V> delegate, Duration expireAfterWrite, Duration expireAfterAccess,
+                             Duration refreshAfterWrite, Executor refreshExecutor) {
+        this(delegate, expireAfterWrite, expireAfterAccess, refreshAfterWrite, refreshExecutor, System::nanoTime);
+    }
+
+    CacheExpiringImpl(Cache<K, V> delegate, Duration expireAfterWrite, Duration expireAfterAccess,
+                      Duration refreshAfterWrite, Executor refreshExecutor, LongSupplier nanoTime) {
+        if (delegate == null || refreshExecutor == null) {
+            throw new NullPointerException("delegate == null || refreshExecutor == null");
+        }
+        if (expireAfterWrite.isNegative() || expireAfterAccess.isNegative() || refreshAfterWrite.isNegative()) {
+            throw new IllegalArgumentException("duration < 0");
+        }
+
+        this.delegate = delegate;
+        this.expireAfterWriteNanos = expireAfterWrite.toNanos();
+        this.expireAfterAccessNanos = expireAfterAccess.toNanos();
+        this.refreshAfterWriteNanos = refreshAfterWrite.toNanos();
+        this.refreshExecutor = refreshExecutor;
+        // the wheel needs a non negative clock
+        long origin = nanoTime.getAsLong();
+        this.nanoTime = () -> nanoTime.getAsLong() - origin;
+        this.wheel = new TimerWheel<>(0);
+        this.delegate.setEvictionListener(this::onDelegateEviction);
+    }
+
+    @Override
+    public V get(K key) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+
+        V value = delegate.get(key);
+        if (value == null) {
+            return null;
+        }
+        long now = nanoTime.getAsLong();
+        Timer<K> timer = timers.get(key);
+        if (timer != null) {
+            if (isExpired(timer, now)) {
+                expire(timer);
+                return null;
+            }
+            if (expireAfterAccessNanos > 0) {
+                // the wheel is not touched, the timer is moved when it fires
+                timer.accessTime = now;
+            }
+        }
+        if (now - lastCleanUp >= CLEAN_UP_INTERVAL && writeLock.tryLock()) {
+            try {
+                expireEntries(now);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Returns the cached value or loads it. An entry due for refresh is returned
+     * and reloaded by the refresh executor.
+     */
+    @Override
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        V value = loads.get(this, key, loader, statsCounter);
+        if (value != null && refreshAfterWriteNanos > 0) {
+            refreshIfNeeded(key, loader);
+        }
+        return value;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException("key == null || value == null");
+        }
+
+        writeLock.lock();
+        try {
+            // an eviction of the old value queued before must not drop the timer of the new one
+            dropEvictedTimers();
+            long now = nanoTime.getAsLong();
+            Timer<K> timer = timers.get(key);
+            if (timer == null) {
+                timer = new Timer<>(key);
+                timers.put(key, timer);
+            }
+            timer.writeTime = now;
+            timer.accessTime = now;
+            timer.value = value;
+            schedule(timer);
+            // if the delegate rejects the entry right away, its timer is dropped with the evictions
+            V previous = delegate.put(key, value);
+            expireEntries(now);
+            return previous;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> entries) {
+        writeLock.lock();
+        try {
+            // put drains the evictions of every entry
+            Cache.super.putAll(entries);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public V remove(K key) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+
+        writeLock.lock();
+        try {
+            Timer<K> timer = timers.remove(key);
+            if (timer != null) {
+                wheel.deschedule(timer);
+            }
+            return delegate.remove(key);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public int maxSize() {
+        return delegate.maxSize();
+    }
+
+    @Override
+    public void resize(int maxSize) {
+        writeLock.lock();
+        try {
+            delegate.resize(maxSize);
+            dropEvictedTimers();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void evictAll() {
+        writeLock.lock();
+        try {
+            wheel.clear();
+            timers.clear();
+            delegate.evictAll();
+            evicted.clear();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * The listener is called for size-based evictions of the delegate, not for expired entries.
+     */
+    @Override
+    public void setEvictionListener(EvictionListener<K, V> listener) {
+        this.evictionListener = listener;
+    }
+
+    /**
+     * Sets the counter of this cache and of the delegate, if the delegate supports stats.
+     */
+    @Override
+    public void setStatsCounter(StatsCounter statsCounter) {
+        if (statsCounter == null) {
+            throw new NullPointerException("statsCounter == null");
+        }
+        this.statsCounter = statsCounter;
+        if (delegate instanceof StatsSupport) {
+            ((StatsSupport) delegate).setStatsCounter(statsCounter);
+        }
+    }
+
+    @Override
+    public CacheStats stats() {
+        return statsCounter.snapshot();
+    }
+
+    /**
+     * Snapshot of the delegate, supported if the delegate supports it.
+     * The expiration times are not saved.
+     */
+    @Override
+    public List<SnapshotEntry<K, V>> snapshot() {
+        writeLock.lock();
+        try {
+            return delegateSnapshotSupport().snapshot();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Restores the entries as if they were written now.
+     */
+    @Override
+    public void restore(List<SnapshotEntry<K, V>> entries) {
+        writeLock.lock();
+        try {
+            SnapshotSupport<K, V> snapshotSupport = delegateSnapshotSupport();
+            wheel.clear();
+            timers.clear();
+            long now = nanoTime.getAsLong();
+            for (SnapshotEntry<K, V> entry : entries) {
+                Timer<K> timer = new Timer<>(entry.getKey());
+                timer.writeTime = now;
+                timer.accessTime = now;
+                timer.value = entry.getValue();
+                timers.put(entry.getKey(), timer);
+                schedule(timer);
+            }
+            evicted.clear();
+            snapshotSupport.restore(entries);
+            // entries the delegate could not keep
+            dropEvictedTimers();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean supportsSnapshot() {
+        return SnapshotSupport.supports(delegate);
+    }
+
+    @SuppressWarnings("unchecked")
+    private SnapshotSupport<K, V> delegateSnapshotSupport() {
+        if (!SnapshotSupport.supports(delegate)) {
+            throw new IllegalStateException(delegate.getClass().getName() + " does not support snapshots");
+        }
+        return (SnapshotSupport<K, V>) delegate;
+    }
+
+    private boolean isExpired(Timer<K> timer, long now) {
+        return (expireAfterWriteNanos > 0 && now - timer.writeTime >= expireAfterWriteNanos)
+                || (expireAfterAccessNanos > 0 && now - timer.accessTime >= expireAfterAccessNanos);
+    }
+
+    /**
+     * Puts the timer into the wheel at the earliest expiration time.
+     * Must be called with the write lock held.
+     */
+    private void schedule(Timer<K> timer) {
+        long time = Long.MAX_VALUE;
+        if (expireAfterWriteNanos > 0) {
+            time = timer.writeTime + expireAfterWriteNanos;
+        }
+        if (expireAfterAccessNanos > 0) {
+            time = Math.min(time, timer.accessTime + expireAfterAccessNanos);
+        }
+        if (time != Long.MAX_VALUE) {
+            wheel.schedule(timer, time);
+        }
+    }
+
+    /**
+     * Removes the entries whose timers fired, timers moved by reads meanwhile are scheduled again.
+     * Must be called with the write lock held.
+     */
+    private void expireEntries(long now) {
+        lastCleanUp = now;
+        dropEvictedTimers();
+        wheel.advance(now, timer -> {
+            if (isExpired(timer, now)) {
+                timers.remove(timer.key, timer);
+                delegate.remove(timer.key);
+            } else {
+                schedule(timer);
+            }
+        });
+    }
+
+    /**
+     * Drops the timers of the entries the delegate evicted.
+     * A key written again after its eviction has a timer for the new value, which is kept.
+     * Must be called with the write lock held.
+     */
+    private void dropEvictedTimers() {
+        Map.Entry<K, V> entry;
+        while ((entry = evicted.poll()) != null) {
+            Timer<K> timer = timers.get(entry.getKey());
+            if (timer != null && timer.value == entry.getValue()) {
+                timers.remove(entry.getKey());
+                wheel.deschedule(timer);
+            }
+        }
+    }
+
+    private void expire(Timer<K> timer) {
+        writeLock.lock();
+        try {
+            // the entry may have been written again meanwhile
+            if (timers.get(timer.key) == timer && isExpired(timer, nanoTime.getAsLong())) {
+                timers.remove(timer.key);
+                wheel.deschedule(timer);
+                delegate.remove(timer.key);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void refreshIfNeeded(K key, Function<? super K, ? extends V> loader) {
+        Timer<K> timer = timers.get(key);
+        if (timer == null) {
+            return;
+        }
+        long writeTime = timer.writeTime;
+        if (nanoTime.getAsLong() - writeTime < refreshAfterWriteNanos
+                || !timer.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> refresh(timer, writeTime, loader));
+        } catch (RejectedExecutionException e) {
+            // the next read tries again
+            timer.refreshing.set(false);
+        }
+    }
+
+    private void refresh(Timer<K> timer, long writeTime, Function<? super K, ? extends V> loader) {
+        try {
+            V value = loader.apply(timer.key);
+            writeLock.lock();
+            try {
+                // a refresh that raced with a write or removal is dropped
+                if (timers.get(timer.key) == timer && timer.writeTime == writeTime) {
+                    if (value != null) {
+                        put(timer.key, value);
+                    } else {
+                        remove(timer.key);
+                    }
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        } finally {
+            timer.refreshing.set(false);
+        }
+    }
+
+    /**
+     * Called under the lock of the delegate, which may be held by a reader, so the write lock is not taken here.
+     */
+    private void onDelegateEviction(K key, V value) {
+        evicted.add(new AbstractMap.SimpleImmutableEntry<>(key, value));
+        EvictionListener<K, V> listener = evictionListener;
+        if (listener != null) {
+            listener.onEviction(key, value);
+        }
+    }
+
+    @Override
+    public final String toString() {
+        return String.format("Expiring Cache[size=%d,maxSize=%d,expireAfterWrite=%dms,expireAfterAccess=%dms," +
+                        "refreshAfterWrite=%dms]",
+                size(), maxSize(), expireAfterWriteNanos / 1_000_000, expireAfterAccessNanos / 1_000_000,
+                refreshAfterWriteNanos / 1_000_000)
+                + " delegate:" + delegate.toString();
+    }
+
+    private static final class Timer<K> extends TimerWheel.Node {
+        private final K key;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        // the value written with the timer, tells an eviction of an older value apart, guarded by the write lock
+        private Object value;
+        private volatile long writeTime;
+        private volatile long accessTime;
+
+        private Timer(K key) {
+            this.key = key;
+        }
+    }
+}
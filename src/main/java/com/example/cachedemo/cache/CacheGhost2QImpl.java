@@ -0,0 +1,313 @@
+package com.example.cachedemo.cache;
+
+import com.example.cachedemo.cache.stats.CacheStats;
+import com.example.cachedemo.cache.stats.ConcurrentStatsCounter;
+import com.example.cachedemo.cache.stats.StatsCounter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 2Q cache whose A1out queue keeps only key fingerprints.
+ * New entries go to the A1in FIFO, entries leaving A1in are dropped and only their fingerprint
+ * is remembered in A1out. A key that comes back while its fingerprint is in A1out goes to the Am LRU.
+ * Since A1out costs no values, the whole weight budget is spent on A1in and Am.
+ */
+public class CacheGhost2QImpl<K, V> implements Cache<K, V>, SnapshotSupport<K, V>, StatsSupport {
+
+    // queue numbers used in snapshots and eviction statistics, the same as in Cache2QImpl, A1out holds no values
+    public static final int QUEUE_IN = Cache2QImpl.QUEUE_IN;
+    public static final int QUEUE_HOT = Cache2QImpl.QUEUE_HOT;
+
+    private final LinkedHashMap<K, V> mapIn;
+    // access ordered, the eldest entry is the LRU one
+    private final LinkedHashMap<K, V> mapHot;
+    private final GhostQueue ghostOut;
+
+    private int sizeIn;
+    private int sizeHot;
+
+    private int maxSize;
+    private int maxSizeIn;
+
+    private EvictionListener<K, V> evictionListener;
+
+    private final LoadCoalescer<K, V> loads = new LoadCoalescer<>();
+
+    private volatile StatsCounter statsCounter = new ConcurrentStatsCounter();
+
+    /**
+     * A1out remembers max size / 2 fingerprints, which suits entries of weight 1.
+     */
+    public CacheGhost2QImpl(int maxSize) {
+        this(maxSize, Math.max(16, maxSize / 2));
+    }
+
+    /**
+     * @param ghostCapacity number of fingerprints remembered by A1out, in entries whatever their weight
+     */
+    public CacheGhost2QImpl(int maxSize, int ghostCapacity) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+
+        calcMaxSizes(maxSize);
+
+        mapIn = new LinkedHashMap<>();
+        mapHot = new LinkedHashMap<>(16, 0.75f, true);
+        ghostOut = new GhostQueue(ghostCapacity);
+    }
+
+    @Override
+    public synchronized V get(K key) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+
+        V value = mapHot.get(key);
+        if (value == null) {
+            // FIFO, a hit in A1in does not change the order
+            value = mapIn.get(key);
+        }
+        if (value != null) {
+            statsCounter.recordHits(1);
+            return value;
+        }
+        statsCounter.recordMisses(1);
+        return null;
+    }
+
+    @Override
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        return loads.get(this, key, loader, statsCounter);
+    }
+
+    @Override
+    public synchronized Map<K, V> getAll(Collection<? extends K> keys) {
+        return Cache.super.getAll(keys);
+    }
+
+    @Override
+    public synchronized V put(K key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException("key == null || value == null");
+        }
+
+        final int sizeOfValue = safeSizeOf(key, value);
+        V previous;
+        if ((previous = mapHot.get(key)) != null) {
+            mapHot.put(key, value);
+            sizeHot += sizeOfValue - safeSizeOf(key, previous);
+        } else if ((previous = mapIn.get(key)) != null) {
+            mapIn.put(key, value);
+            sizeIn += sizeOfValue - safeSizeOf(key, previous);
+        } else {
+            int fingerprint = GhostQueue.fingerprint(key.hashCode());
+            if (ghostOut.contains(fingerprint)) {
+                // seen recently, so it is hot, and no longer a ghost
+                ghostOut.remove(fingerprint);
+                mapHot.put(key, value);
+                sizeHot += sizeOfValue;
+            } else {
+                mapIn.put(key, value);
+                sizeIn += sizeOfValue;
+            }
+        }
+
+        trim();
+        return previous;
+    }
+
+    @Override
+    public synchronized void putAll(Map<? extends K, ? extends V> entries) {
+        Cache.super.putAll(entries);
+    }
+
+    @Override
+    public synchronized V remove(K key) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+
+        V previous;
+        if ((previous = mapIn.remove(key)) != null) {
+            sizeIn -= safeSizeOf(key, previous);
+        } else if ((previous = mapHot.remove(key)) != null) {
+            sizeHot -= safeSizeOf(key, previous);
+        }
+        return previous;
+    }
+
+    @Override
+    public synchronized int size() {
+        return sizeIn + sizeHot;
+    }
+
+    @Override
+    public synchronized int maxSize() {
+        return maxSize;
+    }
+
+    @Override
+    public synchronized void resize(int maxSize) {
+        calcMaxSizes(maxSize);
+        trim();
+    }
+
+    @Override
+    public synchronized void evictAll() {
+        mapIn.clear();
+        mapHot.clear();
+        ghostOut.clear();
+        sizeIn = 0;
+        sizeHot = 0;
+    }
+
+    @Override
+    public synchronized void setEvictionListener(EvictionListener<K, V> listener) {
+        this.evictionListener = listener;
+    }
+
+    /**
+     * The fingerprints of A1out are not part of the snapshot.
+     */
+    @Override
+    public synchronized List<SnapshotEntry<K, V>> snapshot() {
+        List<SnapshotEntry<K, V>> entries = new ArrayList<>(mapIn.size() + mapHot.size());
+        for (Map.Entry<K, V> entry : mapIn.entrySet()) {
+            entries.add(new SnapshotEntry<>(QUEUE_IN, entry.getKey(), entry.getValue()));
+        }
+        for (Map.Entry<K, V> entry : mapHot.entrySet()) {
+            entries.add(new SnapshotEntry<>(QUEUE_HOT, entry.getKey(), entry.getValue()));
+        }
+        return entries;
+    }
+
+    /**
+     * Entries of any other queue, such as A1out of a {@link Cache2QImpl} snapshot, go to A1in.
+     */
+    @Override
+    public synchronized void restore(List<SnapshotEntry<K, V>> entries) {
+        evictAll();
+        for (SnapshotEntry<K, V> entry : entries) {
+            K key = entry.getKey();
+            V value = entry.getValue();
+            if (mapIn.containsKey(key) || mapHot.containsKey(key)) {
+                continue;
+            }
+            final int sizeOfValue = safeSizeOf(key, value);
+            if (entry.getQueue() == QUEUE_HOT) {
+                mapHot.put(key, value);
+                sizeHot += sizeOfValue;
+            } else {
+                mapIn.put(key, value);
+                sizeIn += sizeOfValue;
+            }
+        }
+        // max size may have changed since the snapshot was taken
+        trim();
+    }
+
+    /**
+     * Sets sizes:
+     * mapIn  ~ 25%
+     * mapHot ~ 75%
+     * mapIn may borrow the space mapHot does not use yet.
+     */
+    private void calcMaxSizes(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        this.maxSize = maxSize;
+        maxSizeIn = (int) (maxSize * .25);
+    }
+
+    /**
+     * Remove items by FIFO from mapIn (remembering them in A1out) or by LRU from mapHot
+     */
+    private void trim() {
+        while (sizeIn + sizeHot > maxSize) {
+            if (sizeIn < 0 || sizeHot < 0) {
+                throw new IllegalStateException(getClass().getName()
+                        + ".sizeOf() is reporting inconsistent results!");
+            }
+            if (!mapIn.isEmpty() && (sizeIn > maxSizeIn || mapHot.isEmpty())) {
+                Map.Entry<K, V> eldest = removeEldest(mapIn);
+                sizeIn -= safeSizeOf(eldest.getKey(), eldest.getValue());
+                ghostOut.add(GhostQueue.fingerprint(eldest.getKey().hashCode()));
+                notifyEviction(QUEUE_IN, eldest.getKey(), eldest.getValue());
+            } else {
+                Map.Entry<K, V> eldest = removeEldest(mapHot);
+                sizeHot -= safeSizeOf(eldest.getKey(), eldest.getValue());
+                notifyEviction(QUEUE_HOT, eldest.getKey(), eldest.getValue());
+            }
+        }
+    }
+
+    private Map.Entry<K, V> removeEldest(LinkedHashMap<K, V> map) {
+        Iterator<Map.Entry<K, V>> it = map.entrySet().iterator();
+        Map.Entry<K, V> eldest = it.next();
+        it.remove();
+        return eldest;
+    }
+
+    private void notifyEviction(int queueNumber, K key, V value) {
+        statsCounter.recordEviction(queueNumber, safeSizeOf(key, value));
+        if (evictionListener != null) {
+            evictionListener.onEviction(key, value);
+        }
+    }
+
+    private int safeSizeOf(K key, V value) {
+        int result = sizeOf(key, value);
+        if (result < 0) {
+            throw new IllegalStateException("Negative size: " + key + "=" + value);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the size of the entry in user-defined units.  The default
+     * implementation returns 1 so that size is the number of entries and
+     * max size is the maximum number of entries.
+     */
+    protected int sizeOf(K key, V value) {
+        return 1;
+    }
+
+    @Override
+    public void setStatsCounter(StatsCounter statsCounter) {
+        if (statsCounter == null) {
+            throw new NullPointerException("statsCounter == null");
+        }
+        this.statsCounter = statsCounter;
+    }
+
+    @Override
+    public CacheStats stats() {
+        return statsCounter.snapshot();
+    }
+
+    public final long hitCount() {
+        return stats().hitCount();
+    }
+
+    public final long missCount() {
+        return stats().missCount();
+    }
+
+    @Override
+    public synchronized final String toString() {
+        CacheStats stats = stats();
+        return String.format("Ghost 2Q Cache[size=%d,maxSize=%d,hits=%d,misses=%d,hitRate=%d%%," +
+                        "sizeIn=%d,sizeHot=%d,ghosts=%d,evictionsIn=%d,evictionsHot=%d" +
+                        "]",
+                size(), maxSize(), stats.hitCount(), stats.missCount(), (int) (100 * stats.hitRate()),
+                sizeIn, sizeHot, ghostOut.size(), stats.evictionCount(QUEUE_IN), stats.evictionCount(QUEUE_HOT));
+    }
+}
@@ -0,0 +1,298 @@
+package com.example.cachedemo.cache;
+
+import com.example.cachedemo.cache.stats.CacheStats;
+import com.example.cachedemo.cache.stats.StatsCounter;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Serves the most frequently read keys from an immutable map in front of the delegate, without any lock.
+ * A sample of the reads feeds a {@link SpaceSaving} tracker. Every few thousand samples the top keys
+ * are pinned in a new map, which replaces the old one, and the counts are halved. A key is pinned with the value
+ * its last sampled read returned, so pinning does not read the delegate, records no hits and moves no entries.
+ * Writes of a pinned key unpin it in a new copy of the map, so a read never sees an old value after the
+ * write returned, and the following reads pin it again with the new value. Pinning the written value instead
+ * could keep the older one of two concurrent writes. Writes should be much rarer than reads, as every write
+ * to a hot key copies the map.
+ * A pinned key evicted by the delegate is unpinned by the next write or sampled read.
+ */
+public class CacheHotKeyImpl<K, V> implements Cache<K, V>, SnapshotSupport<K, V>, StatsSupport {
+
+    // every 16th read is recorded
+    private static final int SAMPLE_MASK = 15;
+    private static final int REFRESH_SAMPLES = 4096;
+    private static final int COUNTERS_PER_KEY = 8;
+
+    private final Cache<K, V> delegate;
+    private final int hotKeys;
+
+    private volatile Map<K, V> hot = Collections.emptyMap();
+    // guards the tracker, samples are dropped while it is busy
+    private final ReentrantLock trackerLock = new ReentrantLock();
+    private final SpaceSaving<K> tracker;
+    private int samples;
+    // guards the replacement of the hot map and the sampled values
+    private final Object hotLock = new Object();
+    // values returned by the sampled reads since the last refresh, the candidates for pinning
+    private Map<K, V> sampledValues = new HashMap<>();
+    // bumped by every write and eviction, a sampled read that raced with one does not record its value
+    private final AtomicLong changes = new AtomicLong();
+    // evicted by the delegate, not yet dropped from the hot map and the sampled values
+    private final Queue<K> evicted = new ConcurrentLinkedQueue<>();
+
+    private volatile EvictionListener<K, V> evictionListener;
+
+    // hits of pinned keys, the delegate records everything else
+    private volatile StatsCounter statsCounter = StatsCounter.disabled();
+
+    private final LoadCoalescer<K, V> loads = new LoadCoalescer<>();
+
+    public CacheHotKeyImpl(Cache<K, V> delegate, int hotKeys) {
+        if (delegate == null) {
+            throw new NullPointerException("delegate == null");
+        }
+        if (hotKeys <= 0) {
+            throw new IllegalArgumentException("hotKeys <= 0");
+        }
+        this.delegate = delegate;
+        this.hotKeys = hotKeys;
+        this.tracker = new SpaceSaving<>(hotKeys * COUNTERS_PER_KEY);
+        this.delegate.setEvictionListener(this::onDelegateEviction);
+    }
+
+    @Override
+    public V get(K key) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+
+        boolean sampled = (ThreadLocalRandom.current().nextInt() & SAMPLE_MASK) == 0;
+        long changeCount = sampled ? changes.get() : 0;
+        V value = hot.get(key);
+        if (value != null) {
+            statsCounter.recordHits(1);
+        } else {
+            value = delegate.get(key);
+        }
+        if (sampled) {
+            sample(key, value, changeCount);
+        }
+        return value;
+    }
+
+    @Override
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        return loads.get(this, key, loader, statsCounter);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        V previous = delegate.put(key, value);
+        unpin(key);
+        return previous;
+    }
+
+    @Override
+    public V remove(K key) {
+        V previous = delegate.remove(key);
+        unpin(key);
+        return previous;
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public int maxSize() {
+        return delegate.maxSize();
+    }
+
+    @Override
+    public void resize(int maxSize) {
+        delegate.resize(maxSize);
+    }
+
+    @Override
+    public void evictAll() {
+        synchronized (hotLock) {
+            delegate.evictAll();
+            changes.incrementAndGet();
+            evicted.clear();
+            sampledValues.clear();
+            hot = Collections.emptyMap();
+        }
+    }
+
+    @Override
+    public void setEvictionListener(EvictionListener<K, V> listener) {
+        this.evictionListener = listener;
+    }
+
+    /**
+     * Keys pinned at the moment, for diagnostics.
+     */
+    public Map<K, V> hotEntries() {
+        return Collections.unmodifiableMap(hot);
+    }
+
+    /**
+     * Sets the counter of this cache and of the delegate, if the delegate supports stats.
+     */
+    @Override
+    public void setStatsCounter(StatsCounter statsCounter) {
+        if (statsCounter == null) {
+            throw new NullPointerException("statsCounter == null");
+        }
+        this.statsCounter = statsCounter;
+        if (delegate instanceof StatsSupport) {
+            ((StatsSupport) delegate).setStatsCounter(statsCounter);
+        }
+    }
+
+    @Override
+    public CacheStats stats() {
+        return statsCounter.snapshot();
+    }
+
+    /**
+     * Snapshot of the delegate, supported if the delegate supports it.
+     */
+    @Override
+    public List<SnapshotEntry<K, V>> snapshot() {
+        return delegateSnapshotSupport().snapshot();
+    }
+
+    @Override
+    public void restore(List<SnapshotEntry<K, V>> entries) {
+        synchronized (hotLock) {
+            delegateSnapshotSupport().restore(entries);
+            changes.incrementAndGet();
+            evicted.clear();
+            sampledValues.clear();
+            hot = Collections.emptyMap();
+        }
+    }
+
+    @Override
+    public boolean supportsSnapshot() {
+        return SnapshotSupport.supports(delegate);
+    }
+
+    @SuppressWarnings("unchecked")
+    private SnapshotSupport<K, V> delegateSnapshotSupport() {
+        if (!SnapshotSupport.supports(delegate)) {
+            throw new IllegalStateException(delegate.getClass().getName() + " does not support snapshots");
+        }
+        return (SnapshotSupport<K, V>) delegate;
+    }
+
+    /**
+     * Records a read of the key that returned the value, changeCount is the change count before the read.
+     */
+    private void sample(K key, V value, long changeCount) {
+        if (!trackerLock.tryLock()) {
+            return;
+        }
+        try {
+            tracker.record(key);
+            synchronized (hotLock) {
+                dropEvicted();
+                if (value == null) {
+                    sampledValues.remove(key);
+                } else if (changes.get() == changeCount) {
+                    // neither written nor evicted since the read, so the value is current
+                    sampledValues.put(key, value);
+                }
+            }
+            if (++samples >= REFRESH_SAMPLES) {
+                samples = 0;
+                refresh(tracker.top(hotKeys));
+                tracker.age();
+            }
+        } finally {
+            trackerLock.unlock();
+        }
+    }
+
+    /**
+     * Pins the keys with their sampled values, keys without a current sampled value are skipped.
+     */
+    private void refresh(List<K> keys) {
+        synchronized (hotLock) {
+            dropEvicted();
+            Map<K, V> pinned = new HashMap<>(keys.size() * 2);
+            for (K key : keys) {
+                // writes and evictions update the sampled values under this lock, so the values are current
+                V value = sampledValues.get(key);
+                if (value != null) {
+                    pinned.put(key, value);
+                }
+            }
+            hot = pinned;
+            sampledValues = new HashMap<>();
+        }
+    }
+
+    private void unpin(K key) {
+        synchronized (hotLock) {
+            changes.incrementAndGet();
+            dropEvicted();
+            sampledValues.remove(key);
+            if (hot.containsKey(key)) {
+                Map<K, V> copy = new HashMap<>(hot);
+                copy.remove(key);
+                hot = copy;
+            }
+        }
+    }
+
+    /**
+     * Drops the keys evicted by the delegate from the sampled values and the hot map, called with the hot lock.
+     */
+    private void dropEvicted() {
+        Map<K, V> copy = null;
+        K key;
+        while ((key = evicted.poll()) != null) {
+            sampledValues.remove(key);
+            if (hot.containsKey(key)) {
+                if (copy == null) {
+                    copy = new HashMap<>(hot);
+                }
+                copy.remove(key);
+            }
+        }
+        if (copy != null) {
+            hot = copy;
+        }
+    }
+
+    /**
+     * Called under the lock of the delegate, so it only queues the key for {@link #dropEvicted()}.
+     */
+    private void onDelegateEviction(K key, V value) {
+        // counted before it is queued, so a sampled read either sees the count or its value is dropped later
+        changes.incrementAndGet();
+        evicted.add(key);
+        EvictionListener<K, V> listener = evictionListener;
+        if (listener != null) {
+            listener.onEviction(key, value);
+        }
+    }
+
+    @Override
+    public final String toString() {
+        return String.format("Hot key Cache[size=%d,maxSize=%d,hotKeys=%d,pinned=%d]",
+                size(), maxSize(), hotKeys, hot.size()) + " delegate:" + delegate.toString();
+    }
+}
@@ -1,16 +1,33 @@
 package com.example.cachedemo.cache;
 
+import com.example.cachedemo.cache.stats.CacheStats;
+import com.example.cachedemo.cache.stats.ConcurrentStatsCounter;
+import com.example.cachedemo.cache.stats.StatsCounter;
+
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+public class CacheLRUImpl<K, V> implements Cache<K, V>, SnapshotSupport<K, V>, StatsSupport {
 
-public class CacheLRUImpl<K, V> implements Cache<K, V> {
+    // max entries evicted by one operation while the cache shrinks after resize()
+    static final int RESIZE_STEP = 16;
 
     private final LinkedHashMap<K, V> map;
     private int maxSize;
+    // size the cache is trimmed to, above max size while the cache shrinks
+    private int limit;
     private int size;
 
+    private EvictionListener<K, V> evictionListener;
+
+    private final LoadCoalescer<K, V> loads = new LoadCoalescer<>();
+
     //variables for statistic
-    private int hitCount;
-    private int missCount;
+    private volatile StatsCounter statsCounter = new ConcurrentStatsCounter();
 
     public CacheLRUImpl(int maxSize) {
         if (maxSize <= 0) {
@@ -19,6 +36,7 @@ public class CacheLRUImpl<K, V> implements Cache<K, V> {
 
         this.map = new LinkedHashMap<>();
         this.maxSize = maxSize;
+        this.limit = maxSize;
         size = 0;
     }
 
@@ -29,20 +47,31 @@ public class CacheLRUImpl<K, V> implements Cache<K, V> {
         }
 
         synchronized (this) {
+            shrinkStep();
             V value = map.get(key);
             if (value != null) {
-                hitCount++;
+                statsCounter.recordHits(1);
                 // add & trim (LRU)
                 map.remove(key);
                 map.put(key, value);
                 return value;
             }
 
-            missCount++;
+            statsCounter.recordMisses(1);
         }
         return null;
     }
 
+    @Override
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        return loads.get(this, key, loader, statsCounter);
+    }
+
+    @Override
+    public synchronized Map<K, V> getAll(Collection<? extends K> keys) {
+        return Cache.super.getAll(keys);
+    }
+
     @Override
     public V put(K key, V value) {
         if (key == null || value == null) {
@@ -50,6 +79,7 @@ public class CacheLRUImpl<K, V> implements Cache<K, V> {
         }
         V result;
         synchronized (this) {
+            shrinkStep();
 
             if (map.containsKey(key)) {
                 V oldValue = map.remove(key);
@@ -62,6 +92,11 @@ public class CacheLRUImpl<K, V> implements Cache<K, V> {
         return result;
     }
 
+    @Override
+    public synchronized void putAll(Map<? extends K, ? extends V> entries) {
+        Cache.super.putAll(entries);
+    }
+
     @Override
     public V remove(K key) {
         if (key == null) {
@@ -69,8 +104,11 @@ public class CacheLRUImpl<K, V> implements Cache<K, V> {
         }
 
         synchronized (this) {
+            shrinkStep();
             V removedValue =  map.remove(key);
-            size -= safeSizeOf(key, removedValue);
+            if (removedValue != null) {
+                size -= safeSizeOf(key, removedValue);
+            }
             return removedValue;
         }
     }
@@ -85,35 +123,85 @@ public class CacheLRUImpl<K, V> implements Cache<K, V> {
         return maxSize;
     }
 
+    /**
+     * Sets the size of the cache. Growing takes effect at once, shrinking evicts
+     * at most {@link #RESIZE_STEP} entries here and in every following operation.
+     */
     @Override
-    public void resize(int maxSize) {
-        this.maxSize = maxSize;
-
-        synchronized (this) {
-            LinkedHashMap<K, V> copy = new LinkedHashMap<>(map);
-            evictAll();
-            for (K key : copy.keySet()) {
-                put(key, copy.get(key));
-            }
+    public synchronized void resize(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
         }
+        this.maxSize = maxSize;
+        this.limit = Math.max(maxSize, size);
+        shrinkStep();
     }
 
     @Override
     public synchronized void evictAll() {
         map.clear();
         size = 0;
+        limit = maxSize;
+    }
+
+    @Override
+    public synchronized void setEvictionListener(EvictionListener<K, V> listener) {
+        this.evictionListener = listener;
+    }
+
+    @Override
+    public synchronized List<SnapshotEntry<K, V>> snapshot() {
+        List<SnapshotEntry<K, V>> entries = new ArrayList<>(map.size());
+        for (Map.Entry<K, V> entry : map.entrySet()) {
+            entries.add(new SnapshotEntry<>(0, entry.getKey(), entry.getValue()));
+        }
+        return entries;
+    }
+
+    @Override
+    public synchronized void restore(List<SnapshotEntry<K, V>> entries) {
+        evictAll();
+        for (SnapshotEntry<K, V> entry : entries) {
+            put(entry.getKey(), entry.getValue());
+        }
     }
 
     private void trimMap() {
         while (true) {
 
-            if (size <= maxSize || map.isEmpty()) {
+            if (size <= limit || map.isEmpty()) {
                 break;
             }
 
-            K key = map.keySet().iterator().next();
-            V oldValue = map.remove(key);
-            size -= safeSizeOf(key, oldValue);
+            evictEldest();
+        }
+    }
+
+    /**
+     * Brings the limit down to max size by a bounded number of evictions.
+     */
+    private void shrinkStep() {
+        if (limit == maxSize) {
+            return;
+        }
+        for (int i = 0; i < RESIZE_STEP && size > maxSize && !map.isEmpty(); i++) {
+            evictEldest();
+        }
+        limit = Math.max(maxSize, size);
+    }
+
+    private void evictEldest() {
+        K key = map.keySet().iterator().next();
+        V oldValue = map.remove(key);
+        int removedSize = safeSizeOf(key, oldValue);
+        size -= removedSize;
+        notifyEviction(key, oldValue, removedSize);
+    }
+
+    private void notifyEviction(K key, V value, int weight) {
+        statsCounter.recordEviction(0, weight);
+        if (evictionListener != null) {
+            evictionListener.onEviction(key, value);
         }
     }
 
@@ -134,21 +222,33 @@ public class CacheLRUImpl<K, V> implements Cache<K, V> {
         return 1;
     }
 
-    public int hitCount() {
-        return hitCount;
+    @Override
+    public void setStatsCounter(StatsCounter statsCounter) {
+        if (statsCounter == null) {
+            throw new NullPointerException("statsCounter == null");
+        }
+        this.statsCounter = statsCounter;
+    }
+
+    @Override
+    public CacheStats stats() {
+        return statsCounter.snapshot();
+    }
+
+    public final long hitCount() {
+        return stats().hitCount();
     }
 
-    public int missCount() {
-        return missCount;
+    public final long missCount() {
+        return stats().missCount();
     }
 
     @Override
     public synchronized final String toString() {
-        int accesses = hitCount() + missCount();
-        int hitPercent = accesses != 0 ? (100 * hitCount() / accesses) : 0;
+        CacheStats stats = stats();
         return String.format("LRU Cache[size=%d,maxSize=%d,hits=%d,misses=%d,hitRate=%d%%," +
-                        "]",
-                size(), maxSize(), hitCount(), missCount(), hitPercent)
-                + "\n map:" + map.toString();
+                        "evictions=%d]",
+                size(), maxSize(), stats.hitCount(), stats.missCount(), (int) (100 * stats.hitRate()),
+                stats.evictionCount());
     }
 }
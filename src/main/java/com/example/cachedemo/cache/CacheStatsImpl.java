@@ -0,0 +1,148 @@
+package com.example.cachedemo.cache;
+
+import com.example.cachedemo.cache.stats.CacheStats;
+import com.example.cachedemo.cache.stats.ConcurrentStatsCounter;
+import com.example.cachedemo.cache.stats.StatsCounter;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Records the statistics of an engine that does not record them itself.
+ * The decorator sees no queues and no weights, every eviction is recorded as one entry of queue 0.
+ */
+public class CacheStatsImpl<K, V> implements Cache<K, V>, SnapshotSupport<K, V>, StatsSupport {
+
+    private final Cache<K, V> delegate;
+
+    private volatile EvictionListener<K, V> evictionListener;
+    private volatile StatsCounter statsCounter = new ConcurrentStatsCounter();
+
+    private final LoadCoalescer<K, V> loads = new LoadCoalescer<>();
+
+    public CacheStatsImpl(Cache<K, V> delegate) {
+        if (delegate == null) {
+            throw new NullPointerException("delegate == null");
+        }
+        this.delegate = delegate;
+        this.delegate.setEvictionListener(this::onDelegateEviction);
+    }
+
+    @Override
+    public V get(K key) {
+        V value = delegate.get(key);
+        if (value != null) {
+            statsCounter.recordHits(1);
+        } else {
+            statsCounter.recordMisses(1);
+        }
+        return value;
+    }
+
+    @Override
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        return loads.get(this, key, loader, statsCounter);
+    }
+
+    @Override
+    public Map<K, V> getAll(Collection<? extends K> keys) {
+        Map<K, V> result = delegate.getAll(keys);
+        statsCounter.recordHits(result.size());
+        statsCounter.recordMisses(keys.size() - result.size());
+        return result;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        return delegate.put(key, value);
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> entries) {
+        delegate.putAll(entries);
+    }
+
+    @Override
+    public V remove(K key) {
+        return delegate.remove(key);
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public int maxSize() {
+        return delegate.maxSize();
+    }
+
+    @Override
+    public void resize(int maxSize) {
+        delegate.resize(maxSize);
+    }
+
+    @Override
+    public void evictAll() {
+        delegate.evictAll();
+    }
+
+    @Override
+    public void setEvictionListener(EvictionListener<K, V> listener) {
+        this.evictionListener = listener;
+    }
+
+    @Override
+    public void setStatsCounter(StatsCounter statsCounter) {
+        if (statsCounter == null) {
+            throw new NullPointerException("statsCounter == null");
+        }
+        this.statsCounter = statsCounter;
+    }
+
+    @Override
+    public CacheStats stats() {
+        return statsCounter.snapshot();
+    }
+
+    /**
+     * Snapshot of the delegate, supported if the delegate supports it.
+     */
+    @Override
+    public List<SnapshotEntry<K, V>> snapshot() {
+        return delegateSnapshotSupport().snapshot();
+    }
+
+    @Override
+    public void restore(List<SnapshotEntry<K, V>> entries) {
+        delegateSnapshotSupport().restore(entries);
+    }
+
+    @Override
+    public boolean supportsSnapshot() {
+        return SnapshotSupport.supports(delegate);
+    }
+
+    @SuppressWarnings("unchecked")
+    private SnapshotSupport<K, V> delegateSnapshotSupport() {
+        if (!SnapshotSupport.supports(delegate)) {
+            throw new IllegalStateException(delegate.getClass().getName() + " does not support snapshots");
+        }
+        return (SnapshotSupport<K, V>) delegate;
+    }
+
+    private void onDelegateEviction(K key, V value) {
+        statsCounter.recordEviction(0, 1);
+        EvictionListener<K, V> listener = evictionListener;
+        if (listener != null) {
+            listener.onEviction(key, value);
+        }
+    }
+
+    @Override
+    public final String toString() {
+        return stats().toString() + " delegate:" + delegate.toString();
+    }
+}
@@ -0,0 +1,316 @@
+package com.example.cachedemo.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * LRU cache split into independently locked segments.
+ * Each segment keeps its own LRU order, the weight budget is shared by all segments.
+ */
+public class CacheStripedImpl<K, V> implements Cache<K, V> {
+
+    private static final int DEFAULT_SEGMENTS = 16;
+
+    private final Segment<K, V>[] segments;
+    private final int segmentShift;
+
+    private final AtomicInteger size = new AtomicInteger();
+    private volatile int maxSize;
+
+    private volatile EvictionListener<K, V> evictionListener;
+
+    private final LoadCoalescer<K, V> loads = new LoadCoalescer<>();
+
+    // segment to start with when the budget has to be reclaimed from other segments
+    private final AtomicInteger victimSegment = new AtomicInteger();
+
+    public CacheStripedImpl(int maxSize) {
+        this(maxSize, DEFAULT_SEGMENTS);
+    }
+
+    @SuppressWarnings("unchecked")
+    public CacheStripedImpl(int maxSize, int concurrencyLevel) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        if (concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("concurrencyLevel <= 0");
+        }
+
+        int segmentCount = 1;
+        int shift = 0;
+        while (segmentCount < concurrencyLevel) {
+            segmentCount <<= 1;
+            shift++;
+        }
+        this.segmentShift = 32 - shift;
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment<>();
+        }
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public V get(K key) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+
+        Segment<K, V> segment = segmentFor(key);
+        segment.lock();
+        try {
+            // access ordered map moves the entry to the tail (LRU)
+            V value = segment.map.get(key);
+            if (value != null) {
+                segment.hitCount++;
+                return value;
+            }
+            segment.missCount++;
+        } finally {
+            segment.unlock();
+        }
+        return null;
+    }
+
+    @Override
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        return loads.get(this, key, loader);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException("key == null || value == null");
+        }
+
+        Segment<K, V> segment = segmentFor(key);
+        V previous;
+        segment.lock();
+        try {
+            previous = segment.map.put(key, value);
+            int delta = safeSizeOf(key, value);
+            if (previous != null) {
+                delta -= safeSizeOf(key, previous);
+            }
+            segment.size += delta;
+            size.addAndGet(delta);
+            trimSegment(segment, key);
+        } finally {
+            segment.unlock();
+        }
+        if (size.get() > maxSize) {
+            trimToSize(key);
+        }
+        return previous;
+    }
+
+    @Override
+    public V remove(K key) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+
+        Segment<K, V> segment = segmentFor(key);
+        segment.lock();
+        try {
+            V removedValue = segment.map.remove(key);
+            if (removedValue != null) {
+                int removedSize = safeSizeOf(key, removedValue);
+                segment.size -= removedSize;
+                size.addAndGet(-removedSize);
+            }
+            return removedValue;
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public int maxSize() {
+        return maxSize;
+    }
+
+    @Override
+    public void resize(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        this.maxSize = maxSize;
+        trimToSize(null);
+    }
+
+    @Override
+    public void evictAll() {
+        for (Segment<K, V> segment : segments) {
+            segment.lock();
+            try {
+                segment.map.clear();
+                size.addAndGet(-segment.size);
+                segment.size = 0;
+            } finally {
+                segment.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void setEvictionListener(EvictionListener<K, V> listener) {
+        this.evictionListener = listener;
+    }
+
+    /**
+     * Remove items by LRU from the segment while the whole cache is over budget, except the written key.
+     * Must be called with the segment lock held.
+     */
+    private void trimSegment(Segment<K, V> segment, K written) {
+        while (size.get() > maxSize && evictEldest(segment, written)) {
+            if (segment.size < 0 || (segment.map.isEmpty() && segment.size != 0)) {
+                throw new IllegalStateException(getClass().getName()
+                        + ".sizeOf() is reporting inconsistent results!");
+            }
+        }
+    }
+
+    /**
+     * Reclaims the budget from other segments when the writing segment had nothing left to evict.
+     * The written key is evicted last, only if it alone is larger than max size.
+     * Only one segment lock is held at a time.
+     */
+    private void trimToSize(K written) {
+        int emptySegments = 0;
+        while (size.get() > maxSize && emptySegments < segments.length) {
+            Segment<K, V> segment = segments[victimSegment.getAndIncrement() & (segments.length - 1)];
+            segment.lock();
+            try {
+                if (evictEldest(segment, written)) {
+                    emptySegments = 0;
+                } else {
+                    emptySegments++;
+                }
+            } finally {
+                segment.unlock();
+            }
+        }
+        if (written != null && size.get() > maxSize) {
+            Segment<K, V> segment = segmentFor(written);
+            segment.lock();
+            try {
+                evictEldest(segment, null);
+            } finally {
+                segment.unlock();
+            }
+        }
+    }
+
+    /**
+     * Evicts the LRU entry of the segment other than the written key.
+     */
+    private boolean evictEldest(Segment<K, V> segment, K written) {
+        Iterator<Map.Entry<K, V>> it = segment.map.entrySet().iterator();
+        if (!it.hasNext()) {
+            return false;
+        }
+        Map.Entry<K, V> eldest = it.next();
+        if (written != null && eldest.getKey().equals(written)) {
+            if (!it.hasNext()) {
+                return false;
+            }
+            eldest = it.next();
+        }
+        it.remove();
+        int removedSize = safeSizeOf(eldest.getKey(), eldest.getValue());
+        segment.size -= removedSize;
+        size.addAndGet(-removedSize);
+        EvictionListener<K, V> listener = evictionListener;
+        if (listener != null) {
+            listener.onEviction(eldest.getKey(), eldest.getValue());
+        }
+        return true;
+    }
+
+    private Segment<K, V> segmentFor(K key) {
+        if (segments.length == 1) {
+            return segments[0];
+        }
+        // spread the hash so that sequential ids do not land in neighbouring segments only
+        int h = key.hashCode() * 0x9E3779B9;
+        return segments[h >>> segmentShift];
+    }
+
+    private int safeSizeOf(K key, V value) {
+        int result = sizeOf(key, value);
+        if (result < 0) {
+            throw new IllegalStateException("Negative size: " + key + "=" + value);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the size of the entry in user-defined units.  The default
+     * implementation returns 1 so that size is the number of entries and
+     * max size is the maximum number of entries.
+     */
+    protected int sizeOf(K key, V value) {
+        return 1;
+    }
+
+    public int segments() {
+        return segments.length;
+    }
+
+    public int hitCount() {
+        int result = 0;
+        for (Segment<K, V> segment : segments) {
+            segment.lock();
+            try {
+                result += segment.hitCount;
+            } finally {
+                segment.unlock();
+            }
+        }
+        return result;
+    }
+
+    public int missCount() {
+        int result = 0;
+        for (Segment<K, V> segment : segments) {
+            segment.lock();
+            try {
+                result += segment.missCount;
+            } finally {
+                segment.unlock();
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public final String toString() {
+        int hits = hitCount();
+        int misses = missCount();
+        int accesses = hits + misses;
+        int hitPercent = accesses != 0 ? (100 * hits / accesses) : 0;
+        return String.format("Striped Cache[size=%d,maxSize=%d,hits=%d,misses=%d,hitRate=%d%%," +
+                        "segments=%d]",
+                size(), maxSize(), hits, misses, hitPercent, segments.length);
+    }
+
+    private static final class Segment<K, V> extends ReentrantLock {
+        private final LinkedHashMap<K, V> map = new LinkedHashMap<>(16, 0.75f, true);
+        private int size;
+
+        //variables for statistic
+        private int hitCount;
+        private int missCount;
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.cachedemo.cache;
+
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+
+/**
+ * Two cache tiers, a small fast L1 in front of a big L2 (e.g. {@link FilmCacheMapped}).
+ * The tiers are exclusive: entries evicted from L1 are demoted to L2, an L2 hit moves the entry back to L1.
+ * Only entries evicted from L2 leave the cache and reach the eviction listener.
+ * L1 hits take no lock of this class, misses and writes are serialized so that a key is never in both tiers.
+ * Entries evicted from L1 are queued and put into L2 once L1 released its lock, so the tiers never lock each other.
+ * Size, max size and resize refer to L1, L2 keeps the budget it was created with.
+ */
+public class CacheTieredImpl<K, V> implements Cache<K, V> {
+
+    private final Cache<K, V> l1;
+    private final Cache<K, V> l2;
+
+    // evicted from L1, not yet put into L2
+    private final Queue<Map.Entry<K, V>> demotions = new ConcurrentLinkedQueue<>();
+
+    private volatile EvictionListener<K, V> evictionListener;
+
+    private final LoadCoalescer<K, V> loads = new LoadCoalescer<>();
+
+    public CacheTieredImpl(Cache<K, V> l1, Cache<K, V> l2) {
+        if (l1 == null || l2 == null) {
+            throw new NullPointerException("l1 == null || l2 == null");
+        }
+        this.l1 = l1;
+        this.l2 = l2;
+        // called under the lock of L1, so it only queues the entry
+        this.l1.setEvictionListener((key, value) -> demotions.add(new AbstractMap.SimpleImmutableEntry<>(key, value)));
+        this.l2.setEvictionListener(this::onL2Eviction);
+    }
+
+    @Override
+    public V get(K key) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+
+        V value = l1.get(key);
+        if (value != null) {
+            if (!demotions.isEmpty()) {
+                synchronized (this) {
+                    demote();
+                }
+            }
+            return value;
+        }
+        synchronized (this) {
+            // promoted by another thread meanwhile
+            value = l1.get(key);
+            if (value == null) {
+                value = l2.remove(key);
+                if (value != null) {
+                    l1.put(key, value);
+                }
+            }
+            demote();
+        }
+        return value;
+    }
+
+    @Override
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        return loads.get(this, key, loader);
+    }
+
+    @Override
+    public synchronized V put(K key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException("key == null || value == null");
+        }
+
+        V previous = l1.put(key, value);
+        // a demotion of the old value may be pending, L2 must not keep it
+        demote();
+        l2.remove(key);
+        return previous;
+    }
+
+    @Override
+    public synchronized V remove(K key) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+
+        V previous = l1.remove(key);
+        // a read may have evicted the entry from L1 without demoting it yet
+        demote();
+        V demoted = l2.remove(key);
+        return previous != null ? previous : demoted;
+    }
+
+    @Override
+    public int size() {
+        return l1.size();
+    }
+
+    @Override
+    public int maxSize() {
+        return l1.maxSize();
+    }
+
+    /**
+     * Resizes L1, entries over the new size are demoted to L2.
+     */
+    @Override
+    public synchronized void resize(int maxSize) {
+        l1.resize(maxSize);
+        demote();
+    }
+
+    @Override
+    public synchronized void evictAll() {
+        l1.evictAll();
+        demotions.clear();
+        l2.evictAll();
+    }
+
+    @Override
+    public void setEvictionListener(EvictionListener<K, V> listener) {
+        this.evictionListener = listener;
+    }
+
+    public Cache<K, V> l1() {
+        return l1;
+    }
+
+    public Cache<K, V> l2() {
+        return l2;
+    }
+
+    /**
+     * Puts the entries evicted from L1 into L2, called with the lock of this class but not the one of L1.
+     */
+    private void demote() {
+        Map.Entry<K, V> entry;
+        while ((entry = demotions.poll()) != null) {
+            l2.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void onL2Eviction(K key, V value) {
+        EvictionListener<K, V> listener = evictionListener;
+        if (listener != null) {
+            listener.onEviction(key, value);
+        }
+    }
+
+    @Override
+    public final String toString() {
+        return "Tiered Cache l1:" + l1.toString() + " l2:" + l2.toString();
+    }
+}
@@ -0,0 +1,380 @@
+package com.example.cachedemo.cache;
+
+import com.example.cachedemo.cache.stats.CacheStats;
+import com.example.cachedemo.cache.stats.ConcurrentStatsCounter;
+import com.example.cachedemo.cache.stats.StatsCounter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * W-TinyLFU cache.
+ * New entries go to a small LRU window, entries leaving the window compete with the
+ * probation victim of the main SLRU region and are admitted only if they were accessed
+ * more often according to the frequency sketch. Entries hit in probation move to protected.
+ */
+public class CacheTinyLfuImpl<K, V> implements Cache<K, V>, SnapshotSupport<K, V>, StatsSupport {
+
+    // queue numbers used in snapshots and eviction statistics
+    public static final int QUEUE_WINDOW = 0;
+    public static final int QUEUE_PROBATION = 1;
+    public static final int QUEUE_PROTECTED = 2;
+
+    // access ordered maps, the eldest entry is the LRU one
+    private final LinkedHashMap<K, V> mapWindow, mapProbation, mapProtected;
+    private final FrequencySketch<K> sketch;
+
+    private int sizeWindow;
+    private int sizeProbation;
+    private int sizeProtected;
+
+    private int maxSize;
+    private int maxSizeWindow;
+    private int maxSizeProtected;
+
+    private EvictionListener<K, V> evictionListener;
+
+    private final LoadCoalescer<K, V> loads = new LoadCoalescer<>();
+
+    private volatile StatsCounter statsCounter = new ConcurrentStatsCounter();
+
+    public CacheTinyLfuImpl(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+
+        calcMaxSizes(maxSize);
+
+        mapWindow = new LinkedHashMap<>(16, 0.75f, true);
+        mapProbation = new LinkedHashMap<>(16, 0.75f, true);
+        mapProtected = new LinkedHashMap<>(16, 0.75f, true);
+        sketch = new FrequencySketch<>(maxSize);
+    }
+
+    @Override
+    public synchronized V get(K key) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+
+        sketch.increment(key);
+
+        V value = mapWindow.get(key);
+        if (value == null) {
+            value = mapProtected.get(key);
+        }
+        if (value == null) {
+            value = mapProbation.remove(key);
+            if (value != null) {
+                // second hit, promote to protected
+                int sizeOfValue = safeSizeOf(key, value);
+                sizeProbation -= sizeOfValue;
+                mapProtected.put(key, value);
+                sizeProtected += sizeOfValue;
+                trimProtected();
+            }
+        }
+
+        if (value != null) {
+            statsCounter.recordHits(1);
+            return value;
+        }
+        statsCounter.recordMisses(1);
+        return null;
+    }
+
+    @Override
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        return loads.get(this, key, loader, statsCounter);
+    }
+
+    @Override
+    public synchronized Map<K, V> getAll(Collection<? extends K> keys) {
+        return Cache.super.getAll(keys);
+    }
+
+    @Override
+    public synchronized V put(K key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException("key == null || value == null");
+        }
+
+        final int sizeOfValue = safeSizeOf(key, value);
+        V previous;
+        if ((previous = mapWindow.get(key)) != null) {
+            mapWindow.put(key, value);
+            sizeWindow += sizeOfValue - safeSizeOf(key, previous);
+        } else if ((previous = mapProbation.get(key)) != null) {
+            mapProbation.put(key, value);
+            sizeProbation += sizeOfValue - safeSizeOf(key, previous);
+        } else if ((previous = mapProtected.get(key)) != null) {
+            mapProtected.put(key, value);
+            sizeProtected += sizeOfValue - safeSizeOf(key, previous);
+            trimProtected();
+        } else {
+            sketch.increment(key);
+            mapWindow.put(key, value);
+            sizeWindow += sizeOfValue;
+        }
+
+        evict();
+        return previous;
+    }
+
+    @Override
+    public synchronized void putAll(Map<? extends K, ? extends V> entries) {
+        Cache.super.putAll(entries);
+    }
+
+    @Override
+    public synchronized V remove(K key) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+
+        V previous;
+        if ((previous = mapWindow.remove(key)) != null) {
+            sizeWindow -= safeSizeOf(key, previous);
+        } else if ((previous = mapProbation.remove(key)) != null) {
+            sizeProbation -= safeSizeOf(key, previous);
+        } else if ((previous = mapProtected.remove(key)) != null) {
+            sizeProtected -= safeSizeOf(key, previous);
+        }
+        return previous;
+    }
+
+    @Override
+    public synchronized int size() {
+        return sizeWindow + sizeProbation + sizeProtected;
+    }
+
+    @Override
+    public synchronized int maxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Sets the size of the cache. The frequency sketch is rebuilt if its width changes.
+     */
+    @Override
+    public synchronized void resize(int maxSize) {
+        calcMaxSizes(maxSize);
+        sketch.ensureCapacity(maxSize);
+        trimProtected();
+        evict();
+    }
+
+    @Override
+    public synchronized void evictAll() {
+        mapWindow.clear();
+        mapProbation.clear();
+        mapProtected.clear();
+        sizeWindow = 0;
+        sizeProbation = 0;
+        sizeProtected = 0;
+    }
+
+    @Override
+    public synchronized void setEvictionListener(EvictionListener<K, V> listener) {
+        this.evictionListener = listener;
+    }
+
+    @Override
+    public synchronized List<SnapshotEntry<K, V>> snapshot() {
+        List<SnapshotEntry<K, V>> entries =
+                new ArrayList<>(mapWindow.size() + mapProbation.size() + mapProtected.size());
+        for (Map.Entry<K, V> entry : mapWindow.entrySet()) {
+            entries.add(new SnapshotEntry<>(QUEUE_WINDOW, entry.getKey(), entry.getValue()));
+        }
+        for (Map.Entry<K, V> entry : mapProbation.entrySet()) {
+            entries.add(new SnapshotEntry<>(QUEUE_PROBATION, entry.getKey(), entry.getValue()));
+        }
+        for (Map.Entry<K, V> entry : mapProtected.entrySet()) {
+            entries.add(new SnapshotEntry<>(QUEUE_PROTECTED, entry.getKey(), entry.getValue()));
+        }
+        return entries;
+    }
+
+    /**
+     * The frequency sketch is not part of the snapshot, every restored entry counts as accessed once.
+     */
+    @Override
+    public synchronized void restore(List<SnapshotEntry<K, V>> entries) {
+        evictAll();
+        for (SnapshotEntry<K, V> entry : entries) {
+            K key = entry.getKey();
+            V value = entry.getValue();
+            if (mapWindow.containsKey(key) || mapProbation.containsKey(key) || mapProtected.containsKey(key)) {
+                continue;
+            }
+            sketch.increment(key);
+            final int sizeOfValue = safeSizeOf(key, value);
+            switch (entry.getQueue()) {
+                case QUEUE_WINDOW:
+                    mapWindow.put(key, value);
+                    sizeWindow += sizeOfValue;
+                    break;
+                case QUEUE_PROBATION:
+                    mapProbation.put(key, value);
+                    sizeProbation += sizeOfValue;
+                    break;
+                default:
+                    mapProtected.put(key, value);
+                    sizeProtected += sizeOfValue;
+                    break;
+            }
+        }
+        // max sizes may have changed since the snapshot was taken
+        trimProtected();
+        evict();
+    }
+
+    /**
+     * Sets sizes:
+     * window    ~ 1%
+     * protected ~ 80% of the main region
+     * probation ~ the rest
+     */
+    private void calcMaxSizes(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        this.maxSize = maxSize;
+        maxSizeWindow = Math.max(1, (int) (maxSize * .01));
+        maxSizeProtected = (int) ((maxSize - maxSizeWindow) * .8);
+    }
+
+    /**
+     * Moves entries over the window budget to probation, then evicts from the main region.
+     * An entry moved out of the window (candidate) replaces the probation LRU entry (victim)
+     * only if the sketch reports it as more frequent.
+     */
+    private void evict() {
+        ArrayDeque<K> candidates = new ArrayDeque<>();
+        while (sizeWindow > maxSizeWindow && !mapWindow.isEmpty()) {
+            Map.Entry<K, V> eldest = mapWindow.entrySet().iterator().next();
+            K key = eldest.getKey();
+            V value = eldest.getValue();
+            int sizeOfValue = safeSizeOf(key, value);
+            mapWindow.remove(key);
+            sizeWindow -= sizeOfValue;
+            mapProbation.put(key, value);
+            sizeProbation += sizeOfValue;
+            candidates.add(key);
+        }
+
+        while (sizeWindow + sizeProbation + sizeProtected > maxSize) {
+            LinkedHashMap<K, V> victimMap = !mapProbation.isEmpty() ? mapProbation
+                    : !mapProtected.isEmpty() ? mapProtected : mapWindow;
+            if (victimMap.isEmpty()) {
+                throw new IllegalStateException(getClass().getName()
+                        + ".sizeOf() is reporting inconsistent results!");
+            }
+            K victim = victimMap.keySet().iterator().next();
+            K candidate = candidates.peekFirst();
+
+            K evicted;
+            if (candidate == null || candidate.equals(victim)) {
+                evicted = victim;
+            } else if (sketch.frequency(candidate) > sketch.frequency(victim)) {
+                evicted = victim;
+            } else {
+                evicted = candidate;
+            }
+            if (evicted == candidate) {
+                candidates.pollFirst();
+            }
+            evictEntry(evicted);
+        }
+    }
+
+    private void evictEntry(K key) {
+        V value;
+        int queue;
+        if ((value = mapProbation.remove(key)) != null) {
+            queue = QUEUE_PROBATION;
+            sizeProbation -= safeSizeOf(key, value);
+        } else if ((value = mapProtected.remove(key)) != null) {
+            queue = QUEUE_PROTECTED;
+            sizeProtected -= safeSizeOf(key, value);
+        } else if ((value = mapWindow.remove(key)) != null) {
+            queue = QUEUE_WINDOW;
+            sizeWindow -= safeSizeOf(key, value);
+        } else {
+            return;
+        }
+        statsCounter.recordEviction(queue, safeSizeOf(key, value));
+        if (evictionListener != null) {
+            evictionListener.onEviction(key, value);
+        }
+    }
+
+    /**
+     * Demotes entries by LRU from protected to probation.
+     */
+    private void trimProtected() {
+        Iterator<Map.Entry<K, V>> it = mapProtected.entrySet().iterator();
+        while (sizeProtected > maxSizeProtected && it.hasNext()) {
+            Map.Entry<K, V> eldest = it.next();
+            it.remove();
+            int sizeOfValue = safeSizeOf(eldest.getKey(), eldest.getValue());
+            sizeProtected -= sizeOfValue;
+            mapProbation.put(eldest.getKey(), eldest.getValue());
+            sizeProbation += sizeOfValue;
+        }
+    }
+
+    private int safeSizeOf(K key, V value) {
+        int result = sizeOf(key, value);
+        if (result < 0) {
+            throw new IllegalStateException("Negative size: " + key + "=" + value);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the size of the entry in user-defined units.  The default
+     * implementation returns 1 so that size is the number of entries and
+     * max size is the maximum number of entries.
+     */
+    protected int sizeOf(K key, V value) {
+        return 1;
+    }
+
+    @Override
+    public void setStatsCounter(StatsCounter statsCounter) {
+        if (statsCounter == null) {
+            throw new NullPointerException("statsCounter == null");
+        }
+        this.statsCounter = statsCounter;
+    }
+
+    @Override
+    public CacheStats stats() {
+        return statsCounter.snapshot();
+    }
+
+    public final long hitCount() {
+        return stats().hitCount();
+    }
+
+    public final long missCount() {
+        return stats().missCount();
+    }
+
+    @Override
+    public synchronized final String toString() {
+        CacheStats stats = stats();
+        return String.format("TinyLFU Cache[size=%d,maxSize=%d,hits=%d,misses=%d,hitRate=%d%%," +
+                        "sizeWindow=%d,sizeProbation=%d,sizeProtected=%d,evictions=%d" +
+                        "]",
+                size(), maxSize(), stats.hitCount(), stats.missCount(), (int) (100 * stats.hitRate()),
+                sizeWindow, sizeProbation, sizeProtected, stats.evictionCount());
+    }
+}
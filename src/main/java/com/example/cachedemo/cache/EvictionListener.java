@@ -0,0 +1,11 @@
+package com.example.cachedemo.cache;
+
+/**
+ * Callback for entries removed by the cache itself to stay within its max size.
+ * It is invoked while the cache holds its lock, also on the read path of engines that evict while promoting
+ * an entry, so it must be fast, must not call back into the cache and must not block on any other lock.
+ */
+@FunctionalInterface
+public interface EvictionListener<K, V> {
+    void onEviction(K key, V value);
+}
@@ -2,6 +2,9 @@ package com.example.cachedemo.cache;
 
 import com.example.cachedemo.model.Film;
 
+/**
+ * 2Q cache of films weighed by their heap footprint, max size is in bytes.
+ */
 public class FilmCache2Q extends Cache2QImpl<Integer, Film> {
 
     public FilmCache2Q(int maxSize) {
@@ -10,6 +13,6 @@ public class FilmCache2Q extends Cache2QImpl<Integer, Film> {
 
     @Override
     protected int sizeOf(Integer key, Film film) {
-        return (film.getTitle().length() + film.getGenre().length()) * 2 + 9;
+        return FilmFootprint.sizeOf(film);
     }
 }
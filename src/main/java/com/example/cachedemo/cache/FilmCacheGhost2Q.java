@@ -0,0 +1,19 @@
+package com.example.cachedemo.cache;
+
+import com.example.cachedemo.model.Film;
+
+/**
+ * Ghost 2Q cache of films weighed by their heap footprint, max size is in bytes.
+ * A1out counts fingerprints, it remembers about half as many films as fit the budget.
+ */
+public class FilmCacheGhost2Q extends CacheGhost2QImpl<Integer, Film> {
+
+    public FilmCacheGhost2Q(int maxSize) {
+        super(maxSize, Math.max(16, maxSize / FilmFootprint.TYPICAL_SIZE / 2));
+    }
+
+    @Override
+    protected int sizeOf(Integer key, Film film) {
+        return FilmFootprint.sizeOf(film);
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.cachedemo.cache;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Off-heap film cache whose slabs are regions of a memory-mapped file, so it can hold more than fits in RAM.
+ * The OS pages the slabs in and out, the heap holds only the index. The file content is not reused
+ * on the next start, the file is truncated when it is opened.
+ * The channel belongs to the caller, who closes it once the cache is no longer used.
+ */
+public class FilmCacheMapped extends FilmCacheOffHeap {
+
+    public FilmCacheMapped(int maxSize, FileChannel channel) {
+        super(maxSize, slab -> map(channel, slab, slabSize(maxSize)));
+    }
+
+    /**
+     * Opens the file for a cache, an existing file is truncated.
+     */
+    public static FileChannel open(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Maps the n-th slab, the file grows with the mapping. The mapping stays valid without the channel.
+     */
+    private static ByteBuffer map(FileChannel channel, int slab, int slabSize) {
+        try {
+            return channel.map(FileChannel.MapMode.READ_WRITE, (long) slab * slabSize, slabSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
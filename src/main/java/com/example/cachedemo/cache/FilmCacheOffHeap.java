@@ -0,0 +1,249 @@
+package com.example.cachedemo.cache;
+
+import com.example.cachedemo.cache.stats.CacheStats;
+import com.example.cachedemo.cache.stats.ConcurrentStatsCounter;
+import com.example.cachedemo.cache.stats.StatsCounter;
+import com.example.cachedemo.model.Film;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * LRU film cache that keeps films serialized in direct memory slabs (see {@link FilmCodec}, {@link SlabStore}).
+ * The heap holds only the primitive index: key, slot handle and LRU links per entry.
+ * Size and max size are in bytes of slab slots, a hit decodes a fresh {@link Film} copy.
+ */
+public class FilmCacheOffHeap implements Cache<Integer, Film>, SnapshotSupport<Integer, Film>, StatsSupport {
+
+    private static final int MAX_SLAB_SIZE = 1 << 20;
+
+    private final IntLinkedIndex index;
+    private final SlabStore store;
+    private int[] handles;
+
+    private int maxSize;
+
+    private EvictionListener<Integer, Film> evictionListener;
+
+    private final LoadCoalescer<Integer, Film> loads = new LoadCoalescer<>();
+
+    private volatile StatsCounter statsCounter = new ConcurrentStatsCounter();
+
+    public FilmCacheOffHeap(int maxSize) {
+        this(maxSize, slab -> ByteBuffer.allocateDirect(slabSize(maxSize)));
+    }
+
+    /**
+     * @param slabAllocator returns the buffer for the n-th slab, {@link #slabSize(int)} bytes long
+     */
+    protected FilmCacheOffHeap(int maxSize, IntFunction<ByteBuffer> slabAllocator) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+
+        this.maxSize = maxSize;
+        this.store = new SlabStore(slabSize(maxSize), slabAllocator);
+        this.index = new IntLinkedIndex(Math.min(maxSize / 64, 1024));
+        this.handles = new int[index.capacity()];
+    }
+
+    static int slabSize(int maxSize) {
+        int slabSize = Integer.highestOneBit(Math.max(maxSize, SlabStore.MAX_SLOT_SIZE));
+        return Math.min(slabSize, MAX_SLAB_SIZE);
+    }
+
+    @Override
+    public synchronized Film get(Integer key) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+
+        int entry = index.find(key);
+        if (entry != IntLinkedIndex.NIL) {
+            statsCounter.recordHits(1);
+            index.moveToTail(entry);
+            return FilmCodec.decode(store.slot(handles[entry]));
+        }
+        statsCounter.recordMisses(1);
+        return null;
+    }
+
+    @Override
+    public Film get(Integer key, Function<? super Integer, ? extends Film> loader) {
+        return loads.get(this, key, loader, statsCounter);
+    }
+
+    @Override
+    public synchronized Map<Integer, Film> getAll(Collection<? extends Integer> keys) {
+        return Cache.super.getAll(keys);
+    }
+
+    /**
+     * Stores a copy of the film. Films larger than the biggest slot are not cached,
+     * the previous value of the key is evicted then.
+     * Returns null, the previous value is not decoded.
+     */
+    @Override
+    public synchronized Film put(Integer key, Film film) {
+        if (key == null || film == null) {
+            throw new NullPointerException("key == null || value == null");
+        }
+
+        int entry = index.find(key);
+        int handle = store.allocate(FilmCodec.encodedSize(film));
+        if (handle == SlabStore.NO_SLOT) {
+            if (entry != IntLinkedIndex.NIL) {
+                evict(entry);
+            }
+            return null;
+        }
+        FilmCodec.encode(film, store.slot(handle));
+
+        if (entry != IntLinkedIndex.NIL) {
+            store.free(handles[entry]);
+            index.moveToTail(entry);
+        } else {
+            entry = index.insert(key);
+            if (handles.length < index.capacity()) {
+                handles = Arrays.copyOf(handles, index.capacity());
+            }
+        }
+        handles[entry] = handle;
+        trimMap();
+        return null;
+    }
+
+    @Override
+    public synchronized void putAll(Map<? extends Integer, ? extends Film> entries) {
+        Cache.super.putAll(entries);
+    }
+
+    @Override
+    public synchronized Film remove(Integer key) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+
+        int entry = index.find(key);
+        if (entry == IntLinkedIndex.NIL) {
+            return null;
+        }
+        Film previous = FilmCodec.decode(store.slot(handles[entry]));
+        release(entry);
+        return previous;
+    }
+
+    @Override
+    public synchronized int size() {
+        return (int) store.usedBytes();
+    }
+
+    @Override
+    public synchronized int maxSize() {
+        return maxSize;
+    }
+
+    @Override
+    public synchronized void resize(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        this.maxSize = maxSize;
+        trimMap();
+    }
+
+    @Override
+    public synchronized void evictAll() {
+        index.clear();
+        store.clear();
+    }
+
+    @Override
+    public synchronized void setEvictionListener(EvictionListener<Integer, Film> listener) {
+        this.evictionListener = listener;
+    }
+
+    /**
+     * Decodes every film, from the least recently used one.
+     */
+    @Override
+    public synchronized List<SnapshotEntry<Integer, Film>> snapshot() {
+        List<SnapshotEntry<Integer, Film>> entries = new ArrayList<>(index.size());
+        for (int entry = index.head(); entry != IntLinkedIndex.NIL; entry = index.next(entry)) {
+            entries.add(new SnapshotEntry<>(0, index.key(entry), FilmCodec.decode(store.slot(handles[entry]))));
+        }
+        return entries;
+    }
+
+    @Override
+    public synchronized void restore(List<SnapshotEntry<Integer, Film>> entries) {
+        evictAll();
+        for (SnapshotEntry<Integer, Film> entry : entries) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Bytes taken by the slabs, including free slots.
+     */
+    public synchronized long reservedBytes() {
+        return store.reservedBytes();
+    }
+
+    private void trimMap() {
+        while (store.usedBytes() > maxSize && index.head() != IntLinkedIndex.NIL) {
+            evict(index.head());
+        }
+    }
+
+    private void evict(int entry) {
+        int key = index.key(entry);
+        Film film = evictionListener != null ? FilmCodec.decode(store.slot(handles[entry])) : null;
+        statsCounter.recordEviction(0, store.slotSize(handles[entry]));
+        release(entry);
+        if (film != null) {
+            evictionListener.onEviction(key, film);
+        }
+    }
+
+    private void release(int entry) {
+        store.free(handles[entry]);
+        index.remove(entry);
+    }
+
+    @Override
+    public void setStatsCounter(StatsCounter statsCounter) {
+        if (statsCounter == null) {
+            throw new NullPointerException("statsCounter == null");
+        }
+        this.statsCounter = statsCounter;
+    }
+
+    @Override
+    public CacheStats stats() {
+        return statsCounter.snapshot();
+    }
+
+    public final long hitCount() {
+        return stats().hitCount();
+    }
+
+    public final long missCount() {
+        return stats().missCount();
+    }
+
+    @Override
+    public synchronized final String toString() {
+        CacheStats stats = stats();
+        return String.format("Off-heap Cache[size=%d,maxSize=%d,hits=%d,misses=%d,hitRate=%d%%," +
+                        "entries=%d,reserved=%d,evictions=%d]",
+                size(), maxSize(), stats.hitCount(), stats.missCount(), (int) (100 * stats.hitRate()),
+                index.size(), store.reservedBytes(), stats.evictionCount());
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.cachedemo.cache;
+
+import com.example.cachedemo.model.Film;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact binary layout of a {@link Film}:
+ * id (int), flags (byte), year (int), title and genre as length prefixed UTF-8.
+ * Null fields are marked by flags or by a -1 length, so they cost no payload.
+ */
+public final class FilmCodec {
+
+    private static final int FLAG_ID = 1;
+    private static final int FLAG_YEAR = 1 << 1;
+    private static final int FLAG_WATCHED = 1 << 2;
+    private static final int FLAG_WATCHED_TRUE = 1 << 3;
+
+    private static final int FIXED_SIZE = 4 + 1 + 4 + 4 + 4;
+
+    private FilmCodec() {
+    }
+
+    /**
+     * Returns the number of bytes {@link #encode} writes for the film.
+     */
+    public static int encodedSize(Film film) {
+        return FIXED_SIZE + utf8Length(film.getTitle()) + utf8Length(film.getGenre());
+    }
+
+    /**
+     * Writes the film at the current position of the buffer.
+     */
+    public static void encode(Film film, ByteBuffer target) {
+        int flags = 0;
+        if (film.getId() != null) {
+            flags |= FLAG_ID;
+        }
+        if (film.getYear() != null) {
+            flags |= FLAG_YEAR;
+        }
+        if (film.getWatched() != null) {
+            flags |= FLAG_WATCHED;
+            if (film.getWatched()) {
+                flags |= FLAG_WATCHED_TRUE;
+            }
+        }
+        target.putInt(film.getId() != null ? film.getId() : 0);
+        target.put((byte) flags);
+        target.putInt(film.getYear() != null ? film.getYear() : 0);
+        putString(film.getTitle(), target);
+        putString(film.getGenre(), target);
+    }
+
+    /**
+     * Reads a film from the current position of the buffer.
+     */
+    public static Film decode(ByteBuffer source) {
+        int id = source.getInt();
+        int flags = source.get();
+        int year = source.getInt();
+        String title = getString(source);
+        String genre = getString(source);
+        return Film.builder()
+                .id((flags & FLAG_ID) != 0 ? id : null)
+                .year((flags & FLAG_YEAR) != 0 ? year : null)
+                .watched((flags & FLAG_WATCHED) != 0 ? (flags & FLAG_WATCHED_TRUE) != 0 : null)
+                .title(title)
+                .genre(genre)
+                .build();
+    }
+
+    private static void putString(String value, ByteBuffer target) {
+        if (value == null) {
+            target.putInt(-1);
+            return;
+        }
+        target.putInt(utf8Length(value));
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                target.put((byte) c);
+            } else if (c < 0x800) {
+                target.put((byte) (0xc0 | (c >> 6)));
+                target.put((byte) (0x80 | (c & 0x3f)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                target.put((byte) (0xf0 | (codePoint >> 18)));
+                target.put((byte) (0x80 | ((codePoint >> 12) & 0x3f)));
+                target.put((byte) (0x80 | ((codePoint >> 6) & 0x3f)));
+                target.put((byte) (0x80 | (codePoint & 0x3f)));
+            } else if (Character.isSurrogate(c)) {
+                // unpaired surrogate, same replacement as String.getBytes
+                target.put((byte) '?');
+            } else {
+                target.put((byte) (0xe0 | (c >> 12)));
+                target.put((byte) (0x80 | ((c >> 6) & 0x3f)));
+                target.put((byte) (0x80 | (c & 0x3f)));
+            }
+        }
+    }
+
+    private static String getString(ByteBuffer source) {
+        int length = source.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        source.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int utf8Length(String value) {
+        if (value == null) {
+            return 0;
+        }
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.cachedemo.cache;
+
+import com.example.cachedemo.model.Film;
+
+/**
+ * Heap footprint of a cached {@link Film} in bytes, for a 64-bit JVM with compressed references
+ * and 8 byte object alignment (the default for heaps below 32 GB).
+ * Counts the film, its strings and boxed fields and the hash map and queue nodes of the 2Q engines.
+ * The key is the boxed id of the film, so it is counted once. Boolean values are shared and cost nothing.
+ */
+public final class FilmFootprint {
+
+    private static final int OBJECT_HEADER = 12;
+    private static final int ARRAY_HEADER = 16;
+    private static final int REFERENCE = 4;
+
+    private static final int FILM = align(OBJECT_HEADER + 5 * REFERENCE);
+    private static final int INTEGER = align(OBJECT_HEADER + 4);
+    // header, value array reference, hash and coder or padding
+    private static final int STRING = align(OBJECT_HEADER + REFERENCE + 4 + 1);
+
+    // HashMap node and table slot, LinkedHashSet node of the queue
+    static final int ENTRY_OVERHEAD = align(OBJECT_HEADER + 4 + 3 * REFERENCE) + 2 * REFERENCE
+            + align(OBJECT_HEADER + 4 + 5 * REFERENCE);
+
+    /**
+     * Bytes of a film with a title of 20 and a genre of 8 Latin-1 characters,
+     * for sizing structures that count films rather than bytes.
+     */
+    public static final int TYPICAL_SIZE = ENTRY_OVERHEAD + FILM + 2 * INTEGER
+            + 2 * STRING + align(ARRAY_HEADER + 20) + align(ARRAY_HEADER + 8);
+
+    // since Java 9 strings of Latin-1 characters store one byte per character
+    private static final boolean COMPACT_STRINGS = !System.getProperty("java.specification.version").startsWith("1.");
+
+    private FilmFootprint() {
+    }
+
+    /**
+     * Returns the bytes the film and its cache entry keep reachable.
+     */
+    public static int sizeOf(Film film) {
+        int size = ENTRY_OVERHEAD + FILM + sizeOf(film.getTitle()) + sizeOf(film.getGenre());
+        if (film.getId() != null) {
+            size += INTEGER;
+        }
+        if (film.getYear() != null) {
+            size += INTEGER;
+        }
+        return size;
+    }
+
+    static int sizeOf(String s) {
+        if (s == null) {
+            return 0;
+        }
+        return STRING + align(ARRAY_HEADER + s.length() * bytesPerChar(s));
+    }
+
+    private static int bytesPerChar(String s) {
+        if (!COMPACT_STRINGS) {
+            return 2;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) > 0xFF) {
+                return 2;
+            }
+        }
+        return 1;
+    }
+
+    private static int align(int size) {
+        return (size + 7) & ~7;
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.cachedemo.cache;
+
+import com.example.cachedemo.model.Film;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Binary snapshot file of a film cache.
+ * Layout: header (magic, version, section count, then offset and record count of every section)
+ * followed by the sections. A record is queue (byte), key (int), length (int) and the {@link FilmCodec} bytes.
+ * Sections are independent, so a snapshot is decoded in parallel.
+ */
+public final class FilmSnapshotFile {
+
+    private static final int MAGIC = 0x46534e50;
+    private static final int VERSION = 1;
+    private static final int RECORD_HEADER_SIZE = 1 + 4 + 4;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private FilmSnapshotFile() {
+    }
+
+    /**
+     * Writes the entries to a temporary file next to the target and moves it over the target,
+     * so a crash never leaves a half written snapshot behind.
+     */
+    public static void write(Path file, List<SnapshotEntry<Integer, Film>> entries, int sections) throws IOException {
+        if (sections <= 0) {
+            throw new IllegalArgumentException("sections <= 0");
+        }
+        int sectionCount = Math.max(1, Math.min(sections, entries.size()));
+        int[] recordSizes = new int[entries.size()];
+        for (int i = 0; i < recordSizes.length; i++) {
+            recordSizes[i] = RECORD_HEADER_SIZE + FilmCodec.encodedSize(entries.get(i).getValue());
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(12 + sectionCount * 12);
+        header.putInt(MAGIC).putInt(VERSION).putInt(sectionCount);
+        long offset = header.capacity();
+        for (int section = 0; section < sectionCount; section++) {
+            int from = sectionStart(section, sectionCount, entries.size());
+            int to = sectionStart(section + 1, sectionCount, entries.size());
+            header.putLong(offset).putInt(to - from);
+            for (int i = from; i < to; i++) {
+                offset += recordSizes[i];
+            }
+        }
+        header.flip();
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, header);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            for (int i = 0; i < recordSizes.length; i++) {
+                if (buffer.remaining() < recordSizes[i]) {
+                    buffer.flip();
+                    writeFully(channel, buffer);
+                    buffer.clear();
+                    if (buffer.remaining() < recordSizes[i]) {
+                        buffer = ByteBuffer.allocateDirect(recordSizes[i]);
+                    }
+                }
+                SnapshotEntry<Integer, Film> entry = entries.get(i);
+                buffer.put((byte) entry.getQueue());
+                buffer.putInt(entry.getKey());
+                buffer.putInt(recordSizes[i] - RECORD_HEADER_SIZE);
+                FilmCodec.encode(entry.getValue(), buffer);
+            }
+            buffer.flip();
+            writeFully(channel, buffer);
+            channel.force(false);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads all entries in the order they were written, decoding the sections in parallel.
+     */
+    public static List<SnapshotEntry<Integer, Film>> read(Path file) throws IOException {
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (mapped.remaining() < 12 || mapped.getInt() != MAGIC) {
+            throw new IOException(file + " is not a cache snapshot");
+        }
+        int version = mapped.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        int sectionCount = mapped.getInt();
+        long[] offsets = new long[sectionCount];
+        int[] counts = new int[sectionCount];
+        for (int section = 0; section < sectionCount; section++) {
+            offsets[section] = mapped.getLong();
+            counts[section] = mapped.getInt();
+        }
+
+        List<List<SnapshotEntry<Integer, Film>>> sections = IntStream.range(0, sectionCount)
+                .parallel()
+                .mapToObj(section -> readSection(mapped.duplicate(), offsets[section], counts[section]))
+                .collect(Collectors.toList());
+
+        List<SnapshotEntry<Integer, Film>> entries = new ArrayList<>();
+        sections.forEach(entries::addAll);
+        return entries;
+    }
+
+    private static List<SnapshotEntry<Integer, Film>> readSection(ByteBuffer buffer, long offset, int count) {
+        buffer.position((int) offset);
+        List<SnapshotEntry<Integer, Film>> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int queue = buffer.get();
+            int key = buffer.getInt();
+            int length = buffer.getInt();
+            int end = buffer.position() + length;
+            Film film = FilmCodec.decode(buffer);
+            if (buffer.position() != end) {
+                throw new IllegalStateException("Corrupted snapshot record of key " + key);
+            }
+            entries.add(new SnapshotEntry<>(queue, key, film));
+        }
+        return entries;
+    }
+
+    private static int sectionStart(int section, int sectionCount, int size) {
+        return (int) ((long) size * section / sectionCount);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.cachedemo.cache;
+
+import java.util.Arrays;
+
+/**
+ * FIFO of key fingerprints for caches that only need to remember which keys were evicted recently.
+ * Fingerprints live in a primitive ring, membership is answered by an open addressing table that maps
+ * a fingerprint to the ring slot of its newest occurrence, so a ghost entry costs a few ints and never
+ * references the key or the value.
+ * Not thread safe, the owning cache guards it with its own lock.
+ */
+final class GhostQueue {
+
+    private final int[] ring;
+    private int head;
+    private int count;
+
+    // linear probing table of fingerprint -> ring slot of its newest occurrence, 0 marks an empty slot
+    private final int[] tableKeys;
+    private final int[] tableSlots;
+    private final int tableMask;
+
+    GhostQueue(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity <= 0");
+        }
+        ring = new int[capacity];
+        int tableSize = Integer.highestOneBit(capacity) << 2;
+        tableKeys = new int[tableSize];
+        tableSlots = new int[tableSize];
+        tableMask = tableSize - 1;
+    }
+
+    /**
+     * Returns the fingerprint the queue would store for the hash code of a key.
+     */
+    static int fingerprint(int hashCode) {
+        int x = hashCode * 0x9E3779B9;
+        x ^= x >>> 16;
+        return x != 0 ? x : 1;
+    }
+
+    boolean contains(int fingerprint) {
+        return find(fingerprint) >= 0;
+    }
+
+    /**
+     * Appends the fingerprint, dropping the oldest one when the ring is full.
+     */
+    void add(int fingerprint) {
+        if (count == ring.length) {
+            // an older occurrence, or one removed meanwhile, leaves the table alone
+            int index = find(ring[head]);
+            if (index >= 0 && tableSlots[index] == head) {
+                delete(index);
+            }
+            head = (head + 1) % ring.length;
+            count--;
+        }
+        int slot = (head + count) % ring.length;
+        ring[slot] = fingerprint;
+        count++;
+        int index = fingerprint & tableMask;
+        while (tableKeys[index] != 0 && tableKeys[index] != fingerprint) {
+            index = (index + 1) & tableMask;
+        }
+        tableKeys[index] = fingerprint;
+        tableSlots[index] = slot;
+    }
+
+    /**
+     * Forgets the fingerprint, its slots in the ring stay until they are dropped but no longer match.
+     */
+    void remove(int fingerprint) {
+        int index = find(fingerprint);
+        if (index >= 0) {
+            delete(index);
+        }
+    }
+
+    int size() {
+        return count;
+    }
+
+    int capacity() {
+        return ring.length;
+    }
+
+    void clear() {
+        head = 0;
+        count = 0;
+        Arrays.fill(tableKeys, 0);
+        Arrays.fill(tableSlots, 0);
+    }
+
+    private int find(int fingerprint) {
+        int index = fingerprint & tableMask;
+        while (tableKeys[index] != 0) {
+            if (tableKeys[index] == fingerprint) {
+                return index;
+            }
+            index = (index + 1) & tableMask;
+        }
+        return -1;
+    }
+
+    private void delete(int index) {
+        // backward shift deletion keeps the probe sequences intact
+        int hole = index;
+        int next = (hole + 1) & tableMask;
+        while (tableKeys[next] != 0) {
+            int home = tableKeys[next] & tableMask;
+            if (((next - home) & tableMask) >= ((next - hole) & tableMask)) {
+                tableKeys[hole] = tableKeys[next];
+                tableSlots[hole] = tableSlots[next];
+                hole = next;
+            }
+            next = (next + 1) & tableMask;
+        }
+        tableKeys[hole] = 0;
+        tableSlots[hole] = 0;
+    }
+}
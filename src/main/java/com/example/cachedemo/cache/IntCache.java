@@ -0,0 +1,23 @@
+package com.example.cachedemo.cache;
+
+/**
+ * Cache specialized for primitive int keys, so lookups do not box the key.
+ * Records its own statistics, so callers can use it directly instead of through a stats decorator.
+ */
+public interface IntCache<V> extends StatsSupport {
+    V get(int key);
+
+    V put(int key, V value);
+
+    V remove(int key);
+
+    int size();
+
+    int maxSize();
+
+    void resize(int maxSize);
+
+    void evictAll();
+
+    void setEvictionListener(EvictionListener<Integer, V> listener);
+}
@@ -0,0 +1,141 @@
+package com.example.cachedemo.cache;
+
+import com.example.cachedemo.cache.stats.CacheStats;
+import com.example.cachedemo.cache.stats.ConcurrentStatsCounter;
+import com.example.cachedemo.cache.stats.StatsCounter;
+
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * Exposes an {@link IntCache} through the generic {@link Cache} interface.
+ * Callers holding a primitive id can use {@link #get(int, IntFunction)} or {@link #intCache()} to skip boxing.
+ */
+public class IntCacheAdapter<V> implements Cache<Integer, V>, StatsSupport {
+
+    private final IntCache<V> intCache;
+    private final LoadCoalescer<Integer, V> loads = new LoadCoalescer<>();
+    // the counter of the int cache, records the load times
+    private volatile StatsCounter statsCounter = new ConcurrentStatsCounter();
+
+    public IntCacheAdapter(IntCache<V> intCache) {
+        if (intCache == null) {
+            throw new NullPointerException("intCache == null");
+        }
+        this.intCache = intCache;
+        intCache.setStatsCounter(statsCounter);
+    }
+
+    public IntCache<V> intCache() {
+        return intCache;
+    }
+
+    @Override
+    public V get(Integer key) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+        return intCache.get(key);
+    }
+
+    @Override
+    public V get(Integer key, Function<? super Integer, ? extends V> loader) {
+        return loads.get(this, key, loader, statsCounter);
+    }
+
+    /**
+     * Same as {@link #get(Integer, Function)}, a hit does not box the key.
+     */
+    public V get(int key, IntFunction<? extends V> loader) {
+        if (loader == null) {
+            throw new NullPointerException("loader == null");
+        }
+
+        long finished = loads.finishedLoads();
+        V value = intCache.get(key);
+        if (value != null) {
+            return value;
+        }
+        return load(key, loader, finished);
+    }
+
+    /**
+     * Returns the count to pass to {@link #load}, read before the caller looks the key up in {@link #intCache()}.
+     */
+    public long finishedLoads() {
+        return loads.finishedLoads();
+    }
+
+    /**
+     * Loads a key the caller already missed in {@link #intCache()}, so a hit needs no loader.
+     * Waits for a load of the key in flight instead of starting another one.
+     *
+     * @param finished {@link #finishedLoads()} read before the lookup that missed
+     */
+    public V load(int key, IntFunction<? extends V> loader, long finished) {
+        if (loader == null) {
+            throw new NullPointerException("loader == null");
+        }
+        return loads.load(this, key, boxed -> loader.apply(boxed), statsCounter, finished);
+    }
+
+    @Override
+    public V put(Integer key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException("key == null || value == null");
+        }
+        return intCache.put(key, value);
+    }
+
+    @Override
+    public V remove(Integer key) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+        return intCache.remove(key);
+    }
+
+    @Override
+    public int size() {
+        return intCache.size();
+    }
+
+    @Override
+    public int maxSize() {
+        return intCache.maxSize();
+    }
+
+    @Override
+    public void resize(int maxSize) {
+        intCache.resize(maxSize);
+    }
+
+    @Override
+    public void evictAll() {
+        intCache.evictAll();
+    }
+
+    @Override
+    public void setEvictionListener(EvictionListener<Integer, V> listener) {
+        intCache.setEvictionListener(listener);
+    }
+
+    /**
+     * Sets the counter of the int cache.
+     */
+    @Override
+    public void setStatsCounter(StatsCounter statsCounter) {
+        intCache.setStatsCounter(statsCounter);
+        this.statsCounter = statsCounter;
+    }
+
+    @Override
+    public CacheStats stats() {
+        return intCache.stats();
+    }
+
+    @Override
+    public String toString() {
+        return intCache.toString();
+    }
+}
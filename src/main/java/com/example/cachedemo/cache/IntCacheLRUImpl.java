@@ -0,0 +1,189 @@
+package com.example.cachedemo.cache;
+
+import com.example.cachedemo.cache.stats.CacheStats;
+import com.example.cachedemo.cache.stats.ConcurrentStatsCounter;
+import com.example.cachedemo.cache.stats.StatsCounter;
+
+import java.util.Arrays;
+
+/**
+ * LRU cache for int keys.
+ * Keys, weights and the LRU links are kept in parallel primitive arrays (see {@link IntLinkedIndex}),
+ * so an entry costs no node objects and a hit allocates nothing.
+ */
+public class IntCacheLRUImpl<V> implements IntCache<V> {
+
+    private final IntLinkedIndex index;
+    private Object[] values;
+    private int[] weights;
+
+    private int maxSize;
+    private int size;
+
+    private EvictionListener<Integer, V> evictionListener;
+
+    private volatile StatsCounter statsCounter = new ConcurrentStatsCounter();
+
+    public IntCacheLRUImpl(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+
+        this.maxSize = maxSize;
+        this.index = new IntLinkedIndex(Math.min(maxSize, 1024));
+        this.values = new Object[index.capacity()];
+        this.weights = new int[index.capacity()];
+    }
+
+    @Override
+    public synchronized V get(int key) {
+        int entry = index.find(key);
+        if (entry != IntLinkedIndex.NIL) {
+            statsCounter.recordHits(1);
+            index.moveToTail(entry);
+            return valueAt(entry);
+        }
+        statsCounter.recordMisses(1);
+        return null;
+    }
+
+    @Override
+    public synchronized V put(int key, V value) {
+        if (value == null) {
+            throw new NullPointerException("value == null");
+        }
+
+        final int sizeOfValue = safeSizeOf(key, value);
+        V previous = null;
+        int entry = index.find(key);
+        if (entry != IntLinkedIndex.NIL) {
+            previous = valueAt(entry);
+            size -= weights[entry];
+            index.moveToTail(entry);
+        } else {
+            entry = index.insert(key);
+            if (values.length < index.capacity()) {
+                values = Arrays.copyOf(values, index.capacity());
+                weights = Arrays.copyOf(weights, index.capacity());
+            }
+        }
+        values[entry] = value;
+        weights[entry] = sizeOfValue;
+        size += sizeOfValue;
+        trimMap();
+        return previous;
+    }
+
+    @Override
+    public synchronized V remove(int key) {
+        int entry = index.find(key);
+        if (entry == IntLinkedIndex.NIL) {
+            return null;
+        }
+        V previous = valueAt(entry);
+        release(entry);
+        return previous;
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized int maxSize() {
+        return maxSize;
+    }
+
+    @Override
+    public synchronized void resize(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        this.maxSize = maxSize;
+        trimMap();
+    }
+
+    @Override
+    public synchronized void evictAll() {
+        index.clear();
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    @Override
+    public synchronized void setEvictionListener(EvictionListener<Integer, V> listener) {
+        this.evictionListener = listener;
+    }
+
+    private void trimMap() {
+        while (size > maxSize && index.head() != IntLinkedIndex.NIL) {
+            int entry = index.head();
+            int key = index.key(entry);
+            V value = valueAt(entry);
+            int weight = weights[entry];
+            release(entry);
+            statsCounter.recordEviction(0, weight);
+            if (evictionListener != null) {
+                evictionListener.onEviction(key, value);
+            }
+        }
+    }
+
+    private void release(int entry) {
+        size -= weights[entry];
+        values[entry] = null;
+        index.remove(entry);
+    }
+
+    @SuppressWarnings("unchecked")
+    private V valueAt(int entry) {
+        return (V) values[entry];
+    }
+
+    private int safeSizeOf(int key, V value) {
+        int result = sizeOf(key, value);
+        if (result < 0) {
+            throw new IllegalStateException("Negative size: " + key + "=" + value);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the size of the entry in user-defined units.  The default
+     * implementation returns 1 so that size is the number of entries and
+     * max size is the maximum number of entries.
+     */
+    protected int sizeOf(int key, V value) {
+        return 1;
+    }
+
+    @Override
+    public void setStatsCounter(StatsCounter statsCounter) {
+        if (statsCounter == null) {
+            throw new NullPointerException("statsCounter == null");
+        }
+        this.statsCounter = statsCounter;
+    }
+
+    @Override
+    public CacheStats stats() {
+        return statsCounter.snapshot();
+    }
+
+    public final long hitCount() {
+        return stats().hitCount();
+    }
+
+    public final long missCount() {
+        return stats().missCount();
+    }
+
+    @Override
+    public synchronized final String toString() {
+        CacheStats stats = stats();
+        return String.format("Int LRU Cache[size=%d,maxSize=%d,hits=%d,misses=%d,hitRate=%d%%,entries=%d" +
+                        "]",
+                size, maxSize, stats.hitCount(), stats.missCount(), (int) (100 * stats.hitRate()), index.size());
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.cachedemo.cache;
+
+import java.util.Arrays;
+
+/**
+ * Primitive int key index with an intrusive doubly linked list over its entries.
+ * Keys are found through an open addressing table, entries are slots in parallel int arrays
+ * linked by index, so the owner can keep its values in arrays indexed by the same entry number.
+ * The eldest entry of the list is the head. Not thread safe.
+ */
+final class IntLinkedIndex {
+
+    static final int NIL = -1;
+
+    // entry + 1, 0 marks an empty slot
+    private int[] table;
+    private int tableMask;
+
+    private int[] keys;
+    private int[] prev;
+    private int[] next;
+
+    private int head = NIL;
+    private int tail = NIL;
+    private int freeHead = NIL;
+    private int allocated;
+    private int size;
+
+    IntLinkedIndex(int initialCapacity) {
+        int capacity = Math.max(8, initialCapacity);
+        keys = new int[capacity];
+        prev = new int[capacity];
+        next = new int[capacity];
+        allocateTable(capacity);
+    }
+
+    /**
+     * Returns the entry of the key or {@link #NIL}.
+     */
+    int find(int key) {
+        int index = hash(key) & tableMask;
+        int slot;
+        while ((slot = table[index]) != 0) {
+            if (keys[slot - 1] == key) {
+                return slot - 1;
+            }
+            index = (index + 1) & tableMask;
+        }
+        return NIL;
+    }
+
+    /**
+     * Adds an absent key as the newest entry. The owner must check {@link #capacity()} afterwards
+     * because the entry arrays may have grown.
+     */
+    int insert(int key) {
+        int entry;
+        if (freeHead != NIL) {
+            entry = freeHead;
+            freeHead = next[entry];
+        } else {
+            if (allocated == keys.length) {
+                grow();
+            }
+            entry = allocated++;
+        }
+        keys[entry] = key;
+        linkLast(entry);
+
+        int index = hash(key) & tableMask;
+        while (table[index] != 0) {
+            index = (index + 1) & tableMask;
+        }
+        table[index] = entry + 1;
+        size++;
+        return entry;
+    }
+
+    void remove(int entry) {
+        unlink(entry);
+        deleteFromTable(entry);
+        next[entry] = freeHead;
+        prev[entry] = NIL;
+        freeHead = entry;
+        size--;
+    }
+
+    void moveToTail(int entry) {
+        if (entry != tail) {
+            unlink(entry);
+            linkLast(entry);
+        }
+    }
+
+    int head() {
+        return head;
+    }
+
+    int next(int entry) {
+        return next[entry];
+    }
+
+    int key(int entry) {
+        return keys[entry];
+    }
+
+    int size() {
+        return size;
+    }
+
+    int capacity() {
+        return keys.length;
+    }
+
+    void clear() {
+        Arrays.fill(table, 0);
+        head = NIL;
+        tail = NIL;
+        freeHead = NIL;
+        allocated = 0;
+        size = 0;
+    }
+
+    private void linkLast(int entry) {
+        prev[entry] = tail;
+        next[entry] = NIL;
+        if (tail == NIL) {
+            head = entry;
+        } else {
+            next[tail] = entry;
+        }
+        tail = entry;
+    }
+
+    private void unlink(int entry) {
+        int p = prev[entry];
+        int n = next[entry];
+        if (p == NIL) {
+            head = n;
+        } else {
+            next[p] = n;
+        }
+        if (n == NIL) {
+            tail = p;
+        } else {
+            prev[n] = p;
+        }
+    }
+
+    private void deleteFromTable(int entry) {
+        int index = hash(keys[entry]) & tableMask;
+        while (table[index] != entry + 1) {
+            index = (index + 1) & tableMask;
+        }
+        // backward shift deletion keeps the probe sequences intact
+        int hole = index;
+        int nextIndex = (hole + 1) & tableMask;
+        int slot;
+        while ((slot = table[nextIndex]) != 0) {
+            int home = hash(keys[slot - 1]) & tableMask;
+            if (((nextIndex - home) & tableMask) >= ((nextIndex - hole) & tableMask)) {
+                table[hole] = slot;
+                hole = nextIndex;
+            }
+            nextIndex = (nextIndex + 1) & tableMask;
+        }
+        table[hole] = 0;
+    }
+
+    private void grow() {
+        int capacity = keys.length * 2;
+        keys = Arrays.copyOf(keys, capacity);
+        prev = Arrays.copyOf(prev, capacity);
+        next = Arrays.copyOf(next, capacity);
+        allocateTable(capacity);
+        for (int entry = head; entry != NIL; entry = next[entry]) {
+            int index = hash(keys[entry]) & tableMask;
+            while (table[index] != 0) {
+                index = (index + 1) & tableMask;
+            }
+            table[index] = entry + 1;
+        }
+    }
+
+    private void allocateTable(int capacity) {
+        // keep the load factor at or below 0.5
+        int tableSize = Integer.highestOneBit(capacity) << 2;
+        table = new int[tableSize];
+        tableMask = tableSize - 1;
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.cachedemo.cache;
+
+import com.example.cachedemo.cache.stats.StatsCounter;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Keeps at most one load per key in flight.
+ * The first caller that misses runs the loader, callers missing the same key meanwhile wait for its result.
+ * A caller whose miss raced with the end of another load reads the cache again before it loads.
+ */
+public final class LoadCoalescer<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> loads = new ConcurrentHashMap<>();
+    // counts the loads unregistered so far, tells a caller whether one finished after its miss
+    private final AtomicLong finishedLoads = new AtomicLong();
+
+    public V get(Cache<K, V> cache, K key, Function<? super K, ? extends V> loader) {
+        return get(cache, key, loader, StatsCounter.disabled());
+    }
+
+    /**
+     * Same as {@link #get(Cache, Object, Function)}, records the time of the load.
+     */
+    public V get(Cache<K, V> cache, K key, Function<? super K, ? extends V> loader, StatsCounter statsCounter) {
+        if (key == null || loader == null) {
+            throw new NullPointerException("key == null || loader == null");
+        }
+
+        long finished = finishedLoads.get();
+        V value = cache.get(key);
+        if (value != null) {
+            return value;
+        }
+        return load(cache, key, loader, statsCounter, finished);
+    }
+
+    /**
+     * Returns the count to pass to {@link #load}, read before the caller looks the key up.
+     */
+    public long finishedLoads() {
+        return finishedLoads.get();
+    }
+
+    /**
+     * Loads a key the caller already missed in the cache, for callers that look keys up themselves.
+     * Waits for a load of the key in flight instead of starting another one.
+     *
+     * @param finished {@link #finishedLoads()} read before the lookup that missed
+     */
+    public V load(Cache<K, V> cache, K key, Function<? super K, ? extends V> loader, StatsCounter statsCounter,
+                  long finished) {
+        if (key == null || loader == null) {
+            throw new NullPointerException("key == null || loader == null");
+        }
+
+        V value;
+        CompletableFuture<V> load = new CompletableFuture<>();
+        CompletableFuture<V> inFlight = loads.putIfAbsent(key, load);
+        if (inFlight != null) {
+            return join(inFlight);
+        }
+        long start = System.nanoTime();
+        try {
+            if (finishedLoads.get() != finished) {
+                // a load finished between the miss and the registration, it may have cached the key
+                value = cache.get(key);
+                if (value != null) {
+                    load.complete(value);
+                    return value;
+                }
+            }
+            value = loader.apply(key);
+            statsCounter.recordLoadSuccess(System.nanoTime() - start);
+            if (value != null) {
+                // cached before the load is unregistered, so later callers hit
+                cache.put(key, value);
+            }
+            load.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            statsCounter.recordLoadFailure(System.nanoTime() - start);
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            // counted before the load is unregistered, so a caller that registers next sees it
+            finishedLoads.incrementAndGet();
+            loads.remove(key, load);
+        }
+    }
+
+    private V join(CompletableFuture<V> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.cachedemo.cache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Slot allocator over large byte buffers (slabs).
+ * Records are rounded up to a power of two size class between 32 and 4096 bytes, every class
+ * carves its own slabs into equal slots and reuses freed slots through a primitive stack.
+ * A slot is addressed by an int handle (size class in the top bits, slot number in the rest).
+ * Not thread safe.
+ */
+final class SlabStore {
+
+    static final int NO_SLOT = -1;
+
+    static final int MIN_SLOT_SIZE = 32;
+    static final int MAX_SLOT_SIZE = 4096;
+
+    private static final int CLASS_SHIFT = 27;
+    private static final int SLOT_MASK = (1 << CLASS_SHIFT) - 1;
+
+    private final int slabSize;
+    private final IntFunction<ByteBuffer> slabAllocator;
+    private final SizeClass[] sizeClasses;
+    private int slabCount;
+    private long usedBytes;
+
+    /**
+     * @param slabAllocator returns the buffer for the n-th slab allocated by this store
+     */
+    SlabStore(int slabSize, IntFunction<ByteBuffer> slabAllocator) {
+        if (slabSize < MAX_SLOT_SIZE) {
+            throw new IllegalArgumentException("slabSize < " + MAX_SLOT_SIZE);
+        }
+        this.slabSize = slabSize;
+        this.slabAllocator = slabAllocator;
+        int classes = Integer.numberOfTrailingZeros(MAX_SLOT_SIZE) - Integer.numberOfTrailingZeros(MIN_SLOT_SIZE) + 1;
+        this.sizeClasses = new SizeClass[classes];
+        for (int i = 0; i < classes; i++) {
+            sizeClasses[i] = new SizeClass(MIN_SLOT_SIZE << i, slabSize / (MIN_SLOT_SIZE << i));
+        }
+    }
+
+    /**
+     * Returns the slot size a record of the given length would take, or {@link #NO_SLOT} if it does not fit any class.
+     */
+    static int slotSizeFor(int length) {
+        if (length > MAX_SLOT_SIZE) {
+            return NO_SLOT;
+        }
+        return Math.max(MIN_SLOT_SIZE, Integer.highestOneBit(length - 1) << 1);
+    }
+
+    /**
+     * Returns a handle of a free slot for a record of the given length, or {@link #NO_SLOT} if it is too large.
+     */
+    int allocate(int length) {
+        int slotSize = slotSizeFor(length);
+        if (slotSize == NO_SLOT) {
+            return NO_SLOT;
+        }
+        int classIndex = Integer.numberOfTrailingZeros(slotSize) - Integer.numberOfTrailingZeros(MIN_SLOT_SIZE);
+        SizeClass sizeClass = sizeClasses[classIndex];
+        int slot;
+        if (sizeClass.freeCount > 0) {
+            slot = sizeClass.free[--sizeClass.freeCount];
+        } else {
+            if (sizeClass.allocatedSlots == sizeClass.slabs.size() * sizeClass.slotsPerSlab) {
+                sizeClass.slabs.add(slabAllocator.apply(slabCount++));
+            }
+            slot = sizeClass.allocatedSlots++;
+        }
+        usedBytes += slotSize;
+        return (classIndex << CLASS_SHIFT) | slot;
+    }
+
+    void free(int handle) {
+        SizeClass sizeClass = sizeClasses[handle >>> CLASS_SHIFT];
+        if (sizeClass.freeCount == sizeClass.free.length) {
+            sizeClass.free = Arrays.copyOf(sizeClass.free, Math.max(16, sizeClass.free.length * 2));
+        }
+        sizeClass.free[sizeClass.freeCount++] = handle & SLOT_MASK;
+        usedBytes -= sizeClass.slotSize;
+    }
+
+    int slotSize(int handle) {
+        return sizeClasses[handle >>> CLASS_SHIFT].slotSize;
+    }
+
+    /**
+     * Returns the slab of the slot with position and limit set to the slot bounds.
+     */
+    ByteBuffer slot(int handle) {
+        SizeClass sizeClass = sizeClasses[handle >>> CLASS_SHIFT];
+        int slot = handle & SLOT_MASK;
+        ByteBuffer slab = sizeClass.slabs.get(slot / sizeClass.slotsPerSlab);
+        int offset = (slot % sizeClass.slotsPerSlab) * sizeClass.slotSize;
+        slab.clear();
+        slab.position(offset);
+        slab.limit(offset + sizeClass.slotSize);
+        return slab;
+    }
+
+    /**
+     * Marks all slots free, the slabs are kept for reuse.
+     */
+    void clear() {
+        for (SizeClass sizeClass : sizeClasses) {
+            sizeClass.freeCount = 0;
+            sizeClass.allocatedSlots = 0;
+        }
+        usedBytes = 0;
+    }
+
+    long usedBytes() {
+        return usedBytes;
+    }
+
+    long reservedBytes() {
+        return (long) slabCount * slabSize;
+    }
+
+    private static final class SizeClass {
+        private final int slotSize;
+        private final int slotsPerSlab;
+        private final List<ByteBuffer> slabs = new ArrayList<>();
+        private int[] free = new int[0];
+        private int freeCount;
+        private int allocatedSlots;
+
+        private SizeClass(int slotSize, int slotsPerSlab) {
+            this.slotSize = slotSize;
+            this.slotsPerSlab = slotsPerSlab;
+        }
+    }
+}
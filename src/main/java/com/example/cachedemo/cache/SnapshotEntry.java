@@ -0,0 +1,32 @@
+package com.example.cachedemo.cache;
+
+/**
+ * Cache entry together with the queue it was found in.
+ */
+public final class SnapshotEntry<K, V> {
+
+    private final int queue;
+    private final K key;
+    private final V value;
+
+    public SnapshotEntry(int queue, K key, V value) {
+        this.queue = queue;
+        this.key = key;
+        this.value = value;
+    }
+
+    /**
+     * Engine specific queue number, 0 for caches with a single queue.
+     */
+    public int getQueue() {
+        return queue;
+    }
+
+    public K getKey() {
+        return key;
+    }
+
+    public V getValue() {
+        return value;
+    }
+}
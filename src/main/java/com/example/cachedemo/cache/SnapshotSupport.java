@@ -0,0 +1,35 @@
+package com.example.cachedemo.cache;
+
+import java.util.List;
+
+/**
+ * Implemented by caches that can export and rebuild their content together with the queue order.
+ */
+public interface SnapshotSupport<K, V> {
+
+    /**
+     * Returns true if the cache implements this interface and its snapshots can be used.
+     */
+    static boolean supports(Object cache) {
+        return cache instanceof SnapshotSupport && ((SnapshotSupport<?, ?>) cache).supportsSnapshot();
+    }
+
+    /**
+     * Returns false if {@link #snapshot()} and {@link #restore(List)} cannot be used.
+     * Decorators implement this interface for every delegate and support snapshots only if their delegate does.
+     */
+    default boolean supportsSnapshot() {
+        return true;
+    }
+
+    /**
+     * Returns all entries, every queue from its eldest entry to its newest one.
+     */
+    List<SnapshotEntry<K, V>> snapshot();
+
+    /**
+     * Replaces the content with the entries of a snapshot, keeping their queues and order.
+     * Entries that do not fit into the current max size are evicted.
+     */
+    void restore(List<SnapshotEntry<K, V>> entries);
+}
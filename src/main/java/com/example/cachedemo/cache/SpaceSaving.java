@@ -0,0 +1,124 @@
+package com.example.cachedemo.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Space-Saving heavy hitters: keeps counters for a fixed number of keys in a min-heap by count.
+ * An untracked key replaces the key with the smallest count and inherits its count, so every key
+ * accessed more often than 1/capacity of all accesses is tracked, with a count that is never too low.
+ * Not thread safe, the owning cache guards it with its own lock.
+ */
+final class SpaceSaving<K> {
+
+    private final HashMap<K, Counter<K>> counters;
+    // min-heap by count
+    private final Counter<K>[] heap;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    SpaceSaving(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity <= 0");
+        }
+        this.counters = new HashMap<>(capacity * 2);
+        this.heap = new Counter[capacity];
+    }
+
+    void record(K key) {
+        Counter<K> counter = counters.get(key);
+        if (counter != null) {
+            counter.count++;
+            siftDown(counter.index);
+            return;
+        }
+        if (size < heap.length) {
+            counter = new Counter<>(key, 1);
+            counter.index = size;
+            heap[size++] = counter;
+            counters.put(key, counter);
+            siftUp(counter.index);
+            return;
+        }
+        // the key with the smallest count makes room, its count is the error bound of the new key
+        counter = heap[0];
+        counters.remove(counter.key);
+        counter.key = key;
+        counter.count++;
+        counters.put(key, counter);
+        siftDown(0);
+    }
+
+    /**
+     * Returns up to k keys with the highest counts, the most frequent first.
+     */
+    List<K> top(int k) {
+        Counter<K>[] sorted = Arrays.copyOf(heap, size);
+        Arrays.sort(sorted, (a, b) -> Long.compare(b.count, a.count));
+        List<K> result = new ArrayList<>(Math.min(k, size));
+        for (int i = 0; i < k && i < size; i++) {
+            result.add(sorted[i].key);
+        }
+        return result;
+    }
+
+    /**
+     * Halves all counts, so that keys that are not hot anymore are replaced.
+     * Halving keeps the heap order.
+     */
+    void age() {
+        for (int i = 0; i < size; i++) {
+            heap[i].count >>>= 1;
+        }
+    }
+
+    private void siftUp(int index) {
+        Counter<K> counter = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap[parent].count <= counter.count) {
+                break;
+            }
+            place(heap[parent], index);
+            index = parent;
+        }
+        place(counter, index);
+    }
+
+    private void siftDown(int index) {
+        Counter<K> counter = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1].count < heap[child].count) {
+                child++;
+            }
+            if (counter.count <= heap[child].count) {
+                break;
+            }
+            place(heap[child], index);
+            index = child;
+        }
+        place(counter, index);
+    }
+
+    private void place(Counter<K> counter, int index) {
+        heap[index] = counter;
+        counter.index = index;
+    }
+
+    private static final class Counter<K> {
+        private K key;
+        private long count;
+        private int index;
+
+        private Counter(K key, long count) {
+            this.key = key;
+            this.count = count;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.cachedemo.cache;
+
+import com.example.cachedemo.cache.stats.CacheStats;
+import com.example.cachedemo.cache.stats.StatsCounter;
+
+/**
+ * Cache that records its statistics into a pluggable {@link StatsCounter}.
+ */
+public interface StatsSupport {
+
+    /**
+     * Replaces the counter, {@link StatsCounter#disabled()} turns the recording off.
+     */
+    void setStatsCounter(StatsCounter statsCounter);
+
+    CacheStats stats();
+}
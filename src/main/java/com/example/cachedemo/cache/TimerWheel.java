@@ -0,0 +1,146 @@
+package com.example.cachedemo.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel.
+ * A node is put into a bucket of the coarsest level whose span still fits the delay, so scheduling
+ * and descheduling are O(1). Advancing the time visits only the buckets whose ticks passed; nodes of a
+ * coarse bucket that are not due yet fall down to a finer level.
+ * Time is in nanoseconds and must not be negative. Not thread safe, the owner guards it with its lock.
+ */
+final class TimerWheel<N extends TimerWheel.Node> {
+
+    // bucket counts per level, powers of two
+    private static final int[] BUCKETS = {64, 64, 32, 4, 1};
+    // bucket spans per level: ~1.07s, ~1.14m, ~1.22h, ~1.63d, ~6.5d
+    private static final long[] SPANS = {1L << 30, 1L << 36, 1L << 42, 1L << 47, 1L << 49};
+    private static final int[] SHIFT = {30, 36, 42, 47, 49};
+
+    private final Node[][] wheel;
+    private long nanos;
+
+    TimerWheel(long nanos) {
+        this.nanos = nanos;
+        wheel = new Node[BUCKETS.length][];
+        for (int i = 0; i < BUCKETS.length; i++) {
+            wheel[i] = new Node[BUCKETS[i]];
+            for (int j = 0; j < BUCKETS[i]; j++) {
+                Node sentinel = new Node();
+                sentinel.prev = sentinel;
+                sentinel.next = sentinel;
+                wheel[i][j] = sentinel;
+            }
+        }
+    }
+
+    /**
+     * Schedules the node to fire at the time, a scheduled node is moved.
+     */
+    void schedule(N node, long time) {
+        if (node.next != null) {
+            unlink(node);
+        }
+        node.time = time;
+        link(bucketFor(time), node);
+    }
+
+    void deschedule(N node) {
+        if (node.next != null) {
+            unlink(node);
+        }
+    }
+
+    /**
+     * Moves the time forward and passes every node that is due to the consumer.
+     * The consumer may schedule the node again.
+     */
+    @SuppressWarnings("unchecked")
+    void advance(long now, Consumer<N> expired) {
+        long previous = nanos;
+        if (now <= previous) {
+            return;
+        }
+        nanos = now;
+        for (int i = 0; i < SHIFT.length; i++) {
+            long previousTicks = previous >>> SHIFT[i];
+            long currentTicks = now >>> SHIFT[i];
+            if (currentTicks == previousTicks) {
+                // coarser levels did not move either
+                break;
+            }
+            Node[] buckets = wheel[i];
+            int mask = buckets.length - 1;
+            long ticks = Math.min(currentTicks - previousTicks + 1, buckets.length);
+            for (long tick = 0; tick < ticks; tick++) {
+                Node sentinel = buckets[(int) ((previousTicks + tick) & mask)];
+                Node node = sentinel.next;
+                // detach the whole bucket, the nodes are either due or rescheduled
+                sentinel.next = sentinel;
+                sentinel.prev = sentinel;
+                while (node != sentinel) {
+                    Node next = node.next;
+                    node.next = null;
+                    node.prev = null;
+                    if (node.time <= now) {
+                        expired.accept((N) node);
+                    } else {
+                        link(bucketFor(node.time), node);
+                    }
+                    node = next;
+                }
+            }
+        }
+    }
+
+    void clear() {
+        for (Node[] buckets : wheel) {
+            for (Node sentinel : buckets) {
+                Node node = sentinel.next;
+                while (node != sentinel) {
+                    Node next = node.next;
+                    node.next = null;
+                    node.prev = null;
+                    node = next;
+                }
+                sentinel.next = sentinel;
+                sentinel.prev = sentinel;
+            }
+        }
+    }
+
+    private Node bucketFor(long time) {
+        long delay = Math.max(0, time - nanos);
+        for (int i = 0; i < BUCKETS.length - 1; i++) {
+            if (delay < SPANS[i + 1]) {
+                // an overdue node goes to the current bucket and fires with the next tick
+                long ticks = Math.max(time, nanos) >>> SHIFT[i];
+                return wheel[i][(int) (ticks & (BUCKETS[i] - 1))];
+            }
+        }
+        return wheel[BUCKETS.length - 1][0];
+    }
+
+    private static void link(Node sentinel, Node node) {
+        node.prev = sentinel.prev;
+        node.next = sentinel;
+        sentinel.prev.next = node;
+        sentinel.prev = node;
+    }
+
+    private static void unlink(Node node) {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.next = null;
+        node.prev = null;
+    }
+
+    /**
+     * Entry of the wheel, a node is scheduled while it is linked into a bucket.
+     */
+    static class Node {
+        long time;
+        Node prev;
+        Node next;
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.cachedemo.cache.stats;
+
+/**
+ * Immutable snapshot of the statistics of a cache.
+ * Load times are kept in a histogram with power of two buckets, from under ~1us up to ~34s and more.
+ */
+public final class CacheStats {
+
+    // queues of 2Q: in, out, hot, the other engines number their queues within the same range
+    public static final int QUEUES = 3;
+    static final int LOAD_TIME_BUCKETS = 26;
+    // the first bucket holds loads under 2^10 ns
+    private static final int LOAD_TIME_SHIFT = 10;
+
+    private final long hitCount;
+    private final long missCount;
+    private final long loadSuccessCount;
+    private final long loadFailureCount;
+    private final long totalLoadTime;
+    private final long[] evictionCounts;
+    private final long[] evictionWeights;
+    private final long[] loadTimes;
+
+    CacheStats(long hitCount, long missCount, long loadSuccessCount, long loadFailureCount, long totalLoadTime,
+               long[] evictionCounts, long[] evictionWeights, long[] loadTimes) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.loadSuccessCount = loadSuccessCount;
+        this.loadFailureCount = loadFailureCount;
+        this.totalLoadTime = totalLoadTime;
+        this.evictionCounts = evictionCounts;
+        this.evictionWeights = evictionWeights;
+        this.loadTimes = loadTimes;
+    }
+
+    public long hitCount() {
+        return hitCount;
+    }
+
+    public long missCount() {
+        return missCount;
+    }
+
+    public long requestCount() {
+        return hitCount + missCount;
+    }
+
+    /**
+     * Returns the ratio of hits to requests, 0 if there were no requests.
+     */
+    public double hitRate() {
+        long requestCount = requestCount();
+        return requestCount == 0 ? 0.0 : (double) hitCount / requestCount;
+    }
+
+    public long loadSuccessCount() {
+        return loadSuccessCount;
+    }
+
+    public long loadFailureCount() {
+        return loadFailureCount;
+    }
+
+    public long loadCount() {
+        return loadSuccessCount + loadFailureCount;
+    }
+
+    /**
+     * Total time spent in loads, in nanoseconds.
+     */
+    public long totalLoadTime() {
+        return totalLoadTime;
+    }
+
+    /**
+     * Average time of a load in nanoseconds.
+     */
+    public double averageLoadPenalty() {
+        long loadCount = loadCount();
+        return loadCount == 0 ? 0.0 : (double) totalLoadTime / loadCount;
+    }
+
+    public long evictionCount() {
+        long result = 0;
+        for (long count : evictionCounts) {
+            result += count;
+        }
+        return result;
+    }
+
+    public long evictionCount(int queue) {
+        return evictionCounts[queue];
+    }
+
+    public long evictionWeight() {
+        long result = 0;
+        for (long weight : evictionWeights) {
+            result += weight;
+        }
+        return result;
+    }
+
+    public long evictionWeight(int queue) {
+        return evictionWeights[queue];
+    }
+
+    /**
+     * Returns the upper bound in nanoseconds of the histogram bucket holding the given quantile of load times,
+     * 0 if there were no loads.
+     */
+    public long loadTimePercentile(double quantile) {
+        long loadCount = 0;
+        for (long count : loadTimes) {
+            loadCount += count;
+        }
+        if (loadCount == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * loadCount);
+        long seen = 0;
+        for (int i = 0; i < loadTimes.length; i++) {
+            seen += loadTimes[i];
+            if (seen >= rank) {
+                return 1L << (i + LOAD_TIME_SHIFT);
+            }
+        }
+        return 1L << (loadTimes.length - 1 + LOAD_TIME_SHIFT);
+    }
+
+    static int loadTimeBucket(long loadTime) {
+        int bucket = 64 - Long.numberOfLeadingZeros(Math.max(loadTime, 0)) - LOAD_TIME_SHIFT;
+        return Math.min(Math.max(bucket, 0), LOAD_TIME_BUCKETS - 1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CacheStats[hits=%d,misses=%d,hitRate=%.3f,loads=%d,loadFailures=%d," +
+                        "averageLoadPenalty=%.0fns,evictions=%d,evictionWeight=%d]",
+                hitCount, missCount, hitRate(), loadCount(), loadFailureCount, averageLoadPenalty(),
+                evictionCount(), evictionWeight());
+    }
+}
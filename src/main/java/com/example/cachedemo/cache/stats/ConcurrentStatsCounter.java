@@ -0,0 +1,74 @@
+package com.example.cachedemo.cache.stats;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stats counter based on striped {@link LongAdder}s, so concurrent readers do not contend on one counter.
+ */
+public final class ConcurrentStatsCounter implements StatsCounter {
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder loadSuccessCount = new LongAdder();
+    private final LongAdder loadFailureCount = new LongAdder();
+    private final LongAdder totalLoadTime = new LongAdder();
+    private final LongAdder[] evictionCounts = adders(CacheStats.QUEUES);
+    private final LongAdder[] evictionWeights = adders(CacheStats.QUEUES);
+    private final LongAdder[] loadTimes = adders(CacheStats.LOAD_TIME_BUCKETS);
+
+    @Override
+    public void recordHits(int count) {
+        hitCount.add(count);
+    }
+
+    @Override
+    public void recordMisses(int count) {
+        missCount.add(count);
+    }
+
+    @Override
+    public void recordLoadSuccess(long loadTime) {
+        loadSuccessCount.increment();
+        recordLoadTime(loadTime);
+    }
+
+    @Override
+    public void recordLoadFailure(long loadTime) {
+        loadFailureCount.increment();
+        recordLoadTime(loadTime);
+    }
+
+    @Override
+    public void recordEviction(int queue, int weight) {
+        int index = Math.min(Math.max(queue, 0), CacheStats.QUEUES - 1);
+        evictionCounts[index].increment();
+        evictionWeights[index].add(weight);
+    }
+
+    @Override
+    public CacheStats snapshot() {
+        return new CacheStats(hitCount.sum(), missCount.sum(), loadSuccessCount.sum(), loadFailureCount.sum(),
+                totalLoadTime.sum(), sums(evictionCounts), sums(evictionWeights), sums(loadTimes));
+    }
+
+    private void recordLoadTime(long loadTime) {
+        totalLoadTime.add(loadTime);
+        loadTimes[CacheStats.loadTimeBucket(loadTime)].increment();
+    }
+
+    private static LongAdder[] adders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    private static long[] sums(LongAdder[] adders) {
+        long[] sums = new long[adders.length];
+        for (int i = 0; i < adders.length; i++) {
+            sums[i] = adders[i].sum();
+        }
+        return sums;
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.cachedemo.cache.stats;
+
+enum DisabledStatsCounter implements StatsCounter {
+    INSTANCE;
+
+    private static final CacheStats EMPTY = new CacheStats(0, 0, 0, 0, 0,
+            new long[CacheStats.QUEUES], new long[CacheStats.QUEUES], new long[CacheStats.LOAD_TIME_BUCKETS]);
+
+    @Override
+    public void recordHits(int count) {
+    }
+
+    @Override
+    public void recordMisses(int count) {
+    }
+
+    @Override
+    public void recordLoadSuccess(long loadTime) {
+    }
+
+    @Override
+    public void recordLoadFailure(long loadTime) {
+    }
+
+    @Override
+    public void recordEviction(int queue, int weight) {
+    }
+
+    @Override
+    public CacheStats snapshot() {
+        return EMPTY;
+    }
+}
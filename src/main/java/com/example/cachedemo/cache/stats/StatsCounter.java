@@ -0,0 +1,34 @@
+package com.example.cachedemo.cache.stats;
+
+/**
+ * Records the statistics of a cache engine.
+ * Engines call it on their hot path, so implementations must be cheap and thread safe.
+ */
+public interface StatsCounter {
+
+    void recordHits(int count);
+
+    void recordMisses(int count);
+
+    /**
+     * Records a load that returned a value or null, the time is in nanoseconds.
+     */
+    void recordLoadSuccess(long loadTime);
+
+    void recordLoadFailure(long loadTime);
+
+    /**
+     * Records a size-based eviction from the queue with the weight of the evicted entry.
+     * Queues are numbered like in snapshots, single queue engines use 0.
+     */
+    void recordEviction(int queue, int weight);
+
+    CacheStats snapshot();
+
+    /**
+     * Returns a counter that records nothing.
+     */
+    static StatsCounter disabled() {
+        return DisabledStatsCounter.INSTANCE;
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.cachedemo.cluster;
+
+import com.example.cachedemo.cache.Cache;
+import com.example.cachedemo.model.Film;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Member of the partitioned film cache. Owns the keys the hash ring assigns to it, keeps them in its
+ * partition and serves them to the other nodes. Keys of other nodes are requested from their owners.
+ */
+public class CacheNode implements Closeable {
+
+    private final String self;
+    private final HashRing<String> ring;
+    private final Cache<Integer, Film> partition;
+    private final PartitionServer server;
+    private final Map<String, PartitionClient> clients = new HashMap<>();
+
+    /**
+     * @param self the host:port of this node, the port the partition is served on
+     * @param nodes the host:port of all nodes including this one, the same list on every node
+     */
+    public CacheNode(String self, List<String> nodes, int virtualNodes, int timeoutMillis,
+                     Cache<Integer, Film> partition) throws IOException {
+        if (!nodes.contains(self)) {
+            throw new IllegalArgumentException("nodes do not contain " + self);
+        }
+        this.self = self;
+        this.ring = new HashRing<>(nodes, virtualNodes);
+        this.partition = partition;
+        Set<InetAddress> peers = new HashSet<>();
+        for (String node : nodes) {
+            if (!node.equals(self)) {
+                clients.put(node, new PartitionClient(address(node), timeoutMillis));
+                peers.addAll(Arrays.asList(InetAddress.getAllByName(host(node))));
+            }
+        }
+        // listens only on the address the others reach this node at
+        this.server = new PartitionServer(address(self), peers, partition);
+    }
+
+    public boolean owns(int key) {
+        return ring.owner(key).equals(self);
+    }
+
+    public Cache<Integer, Film> partition() {
+        return partition;
+    }
+
+    /**
+     * Returns the film cached by the owner of the key, which must be another node.
+     */
+    public Film get(int key) throws IOException {
+        return client(key).get(key);
+    }
+
+    public void put(int key, Film film) throws IOException {
+        client(key).put(key, film);
+    }
+
+    public void remove(int key) throws IOException {
+        client(key).remove(key);
+    }
+
+    @Override
+    public void close() {
+        server.close();
+        for (PartitionClient client : clients.values()) {
+            client.close();
+        }
+    }
+
+    private PartitionClient client(int key) {
+        PartitionClient client = clients.get(ring.owner(key));
+        if (client == null) {
+            throw new IllegalArgumentException("Key " + key + " is owned by this node");
+        }
+        return client;
+    }
+
+    private static InetSocketAddress address(String node) {
+        return new InetSocketAddress(host(node), Integer.parseInt(node.substring(node.lastIndexOf(':') + 1)));
+    }
+
+    private static String host(String node) {
+        int colon = node.lastIndexOf(':');
+        if (colon < 0) {
+            throw new IllegalArgumentException("Node without port: " + node);
+        }
+        return node.substring(0, colon);
+    }
+}
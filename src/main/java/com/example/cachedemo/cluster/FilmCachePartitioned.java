@@ -0,0 +1,178 @@
+package com.example.cachedemo.cluster;
+
+import com.example.cachedemo.cache.Cache;
+import com.example.cachedemo.cache.EvictionListener;
+import com.example.cachedemo.cache.LoadCoalescer;
+import com.example.cachedemo.model.Film;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Film cache partitioned over the nodes of a {@link CacheNode} cluster, every film is cached by one owner node,
+ * so the capacity of the cluster grows with the number of nodes.
+ * Films owned by other nodes are fetched over the network and kept in a small near cache. A near copy may be
+ * stale until it expires or an invalidation removes it. An unreachable owner is a miss, not an error.
+ * A put or remove that does not reach the owner leaves it with a film that may be stale, so the key is
+ * remembered and its removal retried before the owner is read for it again. The key is a miss meanwhile.
+ * Size, max size and resize refer to the partition of this node.
+ */
+@Slf4j
+public class FilmCachePartitioned implements Cache<Integer, Film> {
+
+    private final CacheNode node;
+    private final Cache<Integer, Film> partition;
+    private final Cache<Integer, Film> nearCache;
+    // keys whose owner missed a write, it may still hold an old film, mapped to a token of the last failure,
+    // so a call that succeeded does not forget a failure that happened meanwhile
+    private final ConcurrentHashMap<Integer, Object> failedRemoves = new ConcurrentHashMap<>();
+
+    private final LoadCoalescer<Integer, Film> loads = new LoadCoalescer<>();
+
+    public FilmCachePartitioned(CacheNode node, Cache<Integer, Film> nearCache) {
+        if (node == null || nearCache == null) {
+            throw new NullPointerException("node == null || nearCache == null");
+        }
+        this.node = node;
+        this.partition = node.partition();
+        this.nearCache = nearCache;
+    }
+
+    @Override
+    public Film get(Integer key) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+
+        if (node.owns(key)) {
+            return partition.get(key);
+        }
+        Film film = nearCache.get(key);
+        if (film != null) {
+            return film;
+        }
+        Object failure = failedRemoves.get(key);
+        if (failure != null) {
+            // the owner has no film for the key once the removal reached it
+            retryRemove(key, failure);
+            return null;
+        }
+        try {
+            film = node.get(key);
+        } catch (IOException e) {
+            log.debug("Could not get film {} from its owner", key, e);
+            return null;
+        }
+        if (film != null) {
+            nearCache.put(key, film);
+        }
+        return film;
+    }
+
+    @Override
+    public Film get(Integer key, Function<? super Integer, ? extends Film> loader) {
+        return loads.get(this, key, loader);
+    }
+
+    /**
+     * Returns null for a film of another node, the previous value is not sent back.
+     */
+    @Override
+    public Film put(Integer key, Film film) {
+        if (key == null || film == null) {
+            throw new NullPointerException("key == null || value == null");
+        }
+
+        if (node.owns(key)) {
+            return partition.put(key, film);
+        }
+        nearCache.put(key, film);
+        Object failure = failedRemoves.get(key);
+        try {
+            node.put(key, film);
+            if (failure != null) {
+                failedRemoves.remove(key, failure);
+            }
+        } catch (IOException e) {
+            // the owner may keep the old film, so the near copy must not outlive it
+            nearCache.remove(key);
+            failedRemoves.put(key, new Object());
+            log.debug("Could not put film {} to its owner", key, e);
+        }
+        return null;
+    }
+
+    /**
+     * Returns null for a film of another node, unless it was in the near cache.
+     */
+    @Override
+    public Film remove(Integer key) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+
+        if (node.owns(key)) {
+            return partition.remove(key);
+        }
+        Film previous = nearCache.remove(key);
+        Object failure = failedRemoves.get(key);
+        try {
+            node.remove(key);
+            if (failure != null) {
+                failedRemoves.remove(key, failure);
+            }
+        } catch (IOException e) {
+            failedRemoves.put(key, new Object());
+            log.warn("Could not remove film {} from its owner, retrying before it is read", key, e);
+        }
+        return previous;
+    }
+
+    private void retryRemove(int key, Object failure) {
+        try {
+            node.remove(key);
+            failedRemoves.remove(key, failure);
+        } catch (IOException e) {
+            log.debug("Could not remove film {} from its owner again", key, e);
+        }
+    }
+
+    @Override
+    public int size() {
+        return partition.size();
+    }
+
+    @Override
+    public int maxSize() {
+        return partition.maxSize();
+    }
+
+    @Override
+    public void resize(int maxSize) {
+        partition.resize(maxSize);
+    }
+
+    /**
+     * Clears the partition and the near cache of this node only.
+     */
+    @Override
+    public void evictAll() {
+        partition.evictAll();
+        nearCache.evictAll();
+    }
+
+    /**
+     * The listener is called for evictions from the partition, the near cache evicts silently.
+     */
+    @Override
+    public void setEvictionListener(EvictionListener<Integer, Film> listener) {
+        partition.setEvictionListener(listener);
+    }
+
+    @Override
+    public final String toString() {
+        return "Partitioned Cache partition:" + partition.toString() + " near:" + nearCache.toString();
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.cachedemo.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Consistent hash ring that maps keys to their owner nodes.
+ * Every node is placed on the ring at several virtual points, a key belongs to the node of the first point
+ * at or after the hash of the key. Adding or removing a node moves only the keys of its own points,
+ * and the virtual points spread the keys evenly. All nodes with the same node list agree on the owners.
+ */
+public final class HashRing<N> {
+
+    private final TreeMap<Integer, N> ring = new TreeMap<>();
+
+    /**
+     * @param nodes the nodes, their toString() must be unique and the same on every node
+     */
+    public HashRing(List<N> nodes, int virtualNodes) {
+        if (nodes.isEmpty() || virtualNodes <= 0) {
+            throw new IllegalArgumentException("nodes.isEmpty() || virtualNodes <= 0");
+        }
+        for (N node : nodes) {
+            for (int i = 0; i < virtualNodes; i++) {
+                // on a collision the point keeps its first node, on every node alike
+                ring.putIfAbsent(hash(node + "#" + i), node);
+            }
+        }
+    }
+
+    public N owner(int key) {
+        Map.Entry<Integer, N> entry = ring.ceilingEntry(mix(key));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    /**
+     * FNV-1a of the UTF-8 bytes, hash codes of similar node names would differ in the low bits only.
+     */
+    private static int hash(String s) {
+        int hash = 0x811C9DC5;
+        for (byte b : s.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x01000193;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Finalizer of MurmurHash3, spreads consecutive ids over the whole ring.
+     */
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.cachedemo.cluster;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Batch of invalidated keys sent by one node.
+ * Changed keys were updated in place, structural keys were added or deleted, which also affects listings.
+ * Layout: version (byte), sender (long), then per list the count and the ascending keys,
+ * each as the varint of the difference to the previous key. Dense ids take about one byte each.
+ */
+public final class InvalidationMessage {
+
+    private static final byte VERSION = 1;
+
+    // version, sender and two counts
+    static final int HEADER_SIZE = 1 + 8 + 5 + 5;
+    static final int MAX_KEY_SIZE = 5;
+
+    private final long sender;
+    private final int[] changed;
+    private final int[] structural;
+
+    public InvalidationMessage(long sender, int[] changed, int[] structural) {
+        this.sender = sender;
+        this.changed = changed;
+        this.structural = structural;
+    }
+
+    /**
+     * Returns how many keys always fit into a message of the size.
+     */
+    public static int maxKeys(int maxMessageSize) {
+        return (maxMessageSize - HEADER_SIZE) / MAX_KEY_SIZE;
+    }
+
+    public long getSender() {
+        return sender;
+    }
+
+    public int[] getChanged() {
+        return changed;
+    }
+
+    public int[] getStructural() {
+        return structural;
+    }
+
+    public byte[] encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + (changed.length + structural.length) * MAX_KEY_SIZE);
+        buffer.put(VERSION);
+        buffer.putLong(sender);
+        putKeys(buffer, changed);
+        putKeys(buffer, structural);
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    /**
+     * @throws IllegalArgumentException if the message is not a message of this version
+     */
+    public static InvalidationMessage decode(byte[] message) {
+        ByteBuffer buffer = ByteBuffer.wrap(message);
+        try {
+            if (buffer.get() != VERSION) {
+                throw new IllegalArgumentException("Unknown message version");
+            }
+            long sender = buffer.getLong();
+            int[] changed = getKeys(buffer);
+            int[] structural = getKeys(buffer);
+            return new InvalidationMessage(sender, changed, structural);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Malformed message", e);
+        }
+    }
+
+    private static void putKeys(ByteBuffer buffer, int[] keys) {
+        int[] sorted = keys.clone();
+        Arrays.sort(sorted);
+        putVarint(buffer, sorted.length);
+        int previous = 0;
+        for (int key : sorted) {
+            // the difference of ascending keys is non negative as an unsigned int, even if it overflows
+            putVarint(buffer, key - previous);
+            previous = key;
+        }
+    }
+
+    private static int[] getKeys(ByteBuffer buffer) {
+        int count = getVarint(buffer);
+        if (count < 0 || count > buffer.remaining()) {
+            throw new IllegalArgumentException("count = " + count);
+        }
+        int[] keys = new int[count];
+        int previous = 0;
+        for (int i = 0; i < count; i++) {
+            previous += getVarint(buffer);
+            keys[i] = previous;
+        }
+        return keys;
+    }
+
+    private static void putVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static int getVarint(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+}
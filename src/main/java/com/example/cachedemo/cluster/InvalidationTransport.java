@@ -0,0 +1,26 @@
+package com.example.cachedemo.cluster;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Carries invalidation messages between the nodes of the cluster.
+ * Delivery is best effort: a message may be lost, but it is delivered whole or not at all.
+ * A node does not need to receive its own messages.
+ */
+public interface InvalidationTransport extends Closeable {
+
+    /**
+     * Sends the message to all other nodes.
+     * @param message at most {@link #maxMessageSize()} bytes
+     */
+    void send(byte[] message) throws IOException;
+
+    /**
+     * Sets the consumer of the messages of the other nodes, it may be called from any thread.
+     */
+    void setReceiver(Consumer<byte[]> receiver);
+
+    int maxMessageSize();
+}
@@ -0,0 +1,49 @@
+package com.example.cachedemo.cluster;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Transport between the nodes of one JVM, for tests that start several application contexts.
+ * Every open transport is a node, a message is delivered synchronously to the receivers of the other nodes.
+ */
+public class LoopbackTransport implements InvalidationTransport {
+
+    private static final int MAX_MESSAGE_SIZE = 1400;
+
+    private static final CopyOnWriteArrayList<LoopbackTransport> NODES = new CopyOnWriteArrayList<>();
+
+    private volatile Consumer<byte[]> receiver;
+
+    public LoopbackTransport() {
+        NODES.add(this);
+    }
+
+    @Override
+    public void send(byte[] message) {
+        if (message.length > MAX_MESSAGE_SIZE) {
+            throw new IllegalArgumentException("message.length > " + MAX_MESSAGE_SIZE);
+        }
+        for (LoopbackTransport node : NODES) {
+            Consumer<byte[]> nodeReceiver = node.receiver;
+            if (node != this && nodeReceiver != null) {
+                nodeReceiver.accept(message.clone());
+            }
+        }
+    }
+
+    @Override
+    public void setReceiver(Consumer<byte[]> receiver) {
+        this.receiver = receiver;
+    }
+
+    @Override
+    public int maxMessageSize() {
+        return MAX_MESSAGE_SIZE;
+    }
+
+    @Override
+    public void close() {
+        NODES.remove(this);
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.cachedemo.cluster;
+
+import com.example.cachedemo.cache.FilmCodec;
+import com.example.cachedemo.model.Film;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import static com.example.cachedemo.cluster.PartitionProtocol.*;
+
+/**
+ * Calls the partition server of one other node, see {@link PartitionProtocol}.
+ * Keeps a few idle connections for reuse, a connection that failed is closed and not reused.
+ * A node that cannot be reached is marked down and calls fail at once until its backoff ran out,
+ * so a dead node does not cost a connect timeout per request. The backoff doubles while it stays down.
+ */
+final class PartitionClient implements Closeable {
+
+    private static final int MAX_IDLE_CONNECTIONS = 8;
+    private static final long MIN_BACKOFF_MILLIS = 500;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    private final InetSocketAddress address;
+    private final int timeoutMillis;
+    private final ArrayBlockingQueue<Connection> idle = new ArrayBlockingQueue<>(MAX_IDLE_CONNECTIONS);
+
+    // guarded by this
+    private long downUntil;
+    private long backoffMillis;
+
+    PartitionClient(InetSocketAddress address, int timeoutMillis) {
+        this.address = address;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Returns the cached film or null on a miss.
+     */
+    Film get(int key) throws IOException {
+        return call(OP_GET, key, null);
+    }
+
+    void put(int key, Film film) throws IOException {
+        call(OP_PUT, key, film);
+    }
+
+    void remove(int key) throws IOException {
+        call(OP_REMOVE, key, null);
+    }
+
+    @Override
+    public void close() {
+        Connection connection;
+        while ((connection = idle.poll()) != null) {
+            connection.close();
+        }
+    }
+
+    private Film call(byte operation, int key, Film film) throws IOException {
+        checkUp();
+        Connection connection = idle.poll();
+        // an idle connection may have been closed by a restarted node, which is not a reason to mark it down
+        boolean pooled = connection != null;
+        Film result;
+        try {
+            if (connection == null) {
+                connection = new Connection();
+            }
+            result = connection.call(request(operation, key, film));
+        } catch (IOException | RuntimeException e) {
+            if (connection != null) {
+                connection.close();
+            }
+            if (e instanceof IOException && !pooled && !(e instanceof RequestFailedException)) {
+                markDown();
+            }
+            throw e;
+        }
+        markUp();
+        if (!idle.offer(connection)) {
+            connection.close();
+        }
+        return result;
+    }
+
+    private synchronized void checkUp() throws IOException {
+        if (backoffMillis > 0 && System.currentTimeMillis() < downUntil) {
+            throw new IOException(address + " is marked down");
+        }
+    }
+
+    private synchronized void markDown() {
+        backoffMillis = Math.min(MAX_BACKOFF_MILLIS, Math.max(MIN_BACKOFF_MILLIS, 2 * backoffMillis));
+        downUntil = System.currentTimeMillis() + backoffMillis;
+        close();
+    }
+
+    private synchronized void markUp() {
+        backoffMillis = 0;
+    }
+
+    private final class Connection {
+        private final SocketChannel channel;
+        // the stream of the socket adaptor honors the read timeout, a blocking channel read would not
+        private final DataInputStream in;
+
+        private Connection() throws IOException {
+            channel = SocketChannel.open();
+            try {
+                channel.socket().setTcpNoDelay(true);
+                channel.socket().setSoTimeout(timeoutMillis);
+                channel.socket().connect(address, timeoutMillis);
+                in = new DataInputStream(channel.socket().getInputStream());
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        private Film call(ByteBuffer request) throws IOException {
+            while (request.hasRemaining()) {
+                channel.write(request);
+            }
+            int length = in.readInt();
+            if (length < 1 || length > MAX_FRAME_SIZE) {
+                throw new IOException("Bad frame length " + length);
+            }
+            byte[] response = new byte[length];
+            in.readFully(response);
+            switch (response[0]) {
+                case STATUS_NONE:
+                    return null;
+                case STATUS_VALUE:
+                    return FilmCodec.decode(ByteBuffer.wrap(response, 1, length - 1));
+                default:
+                    throw new RequestFailedException("Request failed on " + address);
+            }
+        }
+
+        private void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // closing anyway
+            }
+        }
+    }
+
+    /**
+     * The node answered with an error, it is up.
+     */
+    private static final class RequestFailedException extends IOException {
+        private RequestFailedException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.cachedemo.cluster;
+
+import com.example.cachedemo.cache.FilmCodec;
+import com.example.cachedemo.model.Film;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Binary protocol between the nodes of the partitioned cache.
+ * Request: length (int, of the rest), operation (byte), key (int), for a put the film in {@link FilmCodec} layout.
+ * Response: length (int, of the rest), status (byte), for a found value the film.
+ * A connection carries one request at a time, the response comes before the next request is sent.
+ */
+final class PartitionProtocol {
+
+    static final byte OP_GET = 1;
+    static final byte OP_PUT = 2;
+    static final byte OP_REMOVE = 3;
+
+    static final byte STATUS_NONE = 0;
+    static final byte STATUS_VALUE = 1;
+    static final byte STATUS_ERROR = 2;
+
+    // bigger frames are a protocol error, the connection is closed
+    static final int MAX_FRAME_SIZE = 1 << 20;
+
+    private PartitionProtocol() {
+    }
+
+    static ByteBuffer request(byte operation, int key, Film film) {
+        int length = 1 + 4 + (film != null ? FilmCodec.encodedSize(film) : 0);
+        ByteBuffer frame = ByteBuffer.allocate(4 + length);
+        frame.putInt(length).put(operation).putInt(key);
+        if (film != null) {
+            FilmCodec.encode(film, frame);
+        }
+        frame.flip();
+        return frame;
+    }
+
+    static ByteBuffer response(byte status, Film film) {
+        int length = 1 + (film != null ? FilmCodec.encodedSize(film) : 0);
+        ByteBuffer frame = ByteBuffer.allocate(4 + length);
+        frame.putInt(length).put(status);
+        if (film != null) {
+            FilmCodec.encode(film, frame);
+        }
+        frame.flip();
+        return frame;
+    }
+}
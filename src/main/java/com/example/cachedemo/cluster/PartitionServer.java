@@ -0,0 +1,217 @@
+package com.example.cachedemo.cluster;
+
+import com.example.cachedemo.cache.Cache;
+import com.example.cachedemo.cache.FilmCodec;
+import com.example.cachedemo.model.Film;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Set;
+
+import static com.example.cachedemo.cluster.PartitionProtocol.*;
+
+/**
+ * Serves the partition of this node to the other nodes, see {@link PartitionProtocol}.
+ * One selector thread handles all connections. The cache operations are in memory, so they run on it too.
+ * Connections are accepted only from the addresses of the other nodes. This keeps out other hosts, but it is
+ * no authentication, so the port must not be reachable from untrusted networks.
+ */
+@Slf4j
+final class PartitionServer implements Closeable {
+
+    private static final int READ_BUFFER_SIZE = 4096;
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+
+    private final Cache<Integer, Film> cache;
+    private final Set<InetAddress> peers;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final Thread thread;
+    private volatile boolean closed;
+
+    /**
+     * @param peers the addresses the other nodes connect from
+     */
+    PartitionServer(InetSocketAddress address, Set<InetAddress> peers, Cache<Integer, Film> cache) throws IOException {
+        this.cache = cache;
+        this.peers = peers;
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.bind(address);
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            serverChannel.close();
+            selector.close();
+            throw e;
+        }
+        this.thread = new Thread(this::serve, "partition-server");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops serving and waits until the selector thread closed the connections and the port.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        selector.wakeup();
+        try {
+            thread.join(CLOSE_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void serve() {
+        try {
+            while (!closed) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else {
+                            Connection connection = (Connection) key.attachment();
+                            if (key.isReadable()) {
+                                connection.read();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                connection.write();
+                            }
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        log.debug("Closed partition connection", e);
+                        key.cancel();
+                        key.channel().close();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.error("Partition server stopped", e);
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                closeQuietly(key.channel());
+            }
+            closeQuietly(selector);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // closing anyway
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        InetAddress remote = ((InetSocketAddress) channel.getRemoteAddress()).getAddress();
+        if (!peers.contains(remote)) {
+            log.warn("Rejected partition connection from {}, not a node of the cluster", remote);
+            channel.close();
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(new Connection(channel, key));
+    }
+
+    private ByteBuffer handle(ByteBuffer request) {
+        byte operation = request.get();
+        int key = request.getInt();
+        try {
+            switch (operation) {
+                case OP_GET:
+                    Film film = cache.get(key);
+                    return film != null ? response(STATUS_VALUE, film) : response(STATUS_NONE, null);
+                case OP_PUT:
+                    cache.put(key, FilmCodec.decode(request));
+                    return response(STATUS_NONE, null);
+                case OP_REMOVE:
+                    cache.remove(key);
+                    return response(STATUS_NONE, null);
+                default:
+                    throw new IllegalArgumentException("Unknown operation " + operation);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Partition request failed", e);
+            return response(STATUS_ERROR, null);
+        }
+    }
+
+    /**
+     * Reads request frames, possibly split over several reads, and queues their responses.
+     */
+    private final class Connection {
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private final ArrayDeque<ByteBuffer> out = new ArrayDeque<>();
+
+        private Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+
+        private void read() throws IOException {
+            if (channel.read(in) < 0) {
+                throw new IOException("Connection closed by peer");
+            }
+            in.flip();
+            while (in.remaining() >= 4) {
+                int length = in.getInt(in.position());
+                if (length < 5 || length > MAX_FRAME_SIZE) {
+                    throw new IOException("Bad frame length " + length);
+                }
+                if (in.remaining() < 4 + length) {
+                    if (in.capacity() < 4 + length) {
+                        in = ByteBuffer.allocate(4 + length).put(in);
+                        in.flip();
+                    }
+                    break;
+                }
+                ByteBuffer request = in.duplicate();
+                request.position(in.position() + 4).limit(in.position() + 4 + length);
+                out.add(handle(request.slice()));
+                in.position(in.position() + 4 + length);
+            }
+            in.compact();
+            if (!out.isEmpty()) {
+                write();
+            }
+        }
+
+        private void write() throws IOException {
+            while (!out.isEmpty()) {
+                ByteBuffer response = out.peek();
+                channel.write(response);
+                if (response.hasRemaining()) {
+                    break;
+                }
+                out.poll();
+            }
+            key.interestOps(out.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+    }
+}
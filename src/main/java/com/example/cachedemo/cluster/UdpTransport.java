@@ -0,0 +1,115 @@
+package com.example.cachedemo.cluster;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Sends every message as one UDP datagram to each configured peer and receives on a local port.
+ * Messages fit into one unfragmented datagram on a usual 1500 byte MTU. Lost datagrams are not resent.
+ * Datagrams from hosts that are not peers are dropped, like the connections the partition server rejects.
+ */
+@Slf4j
+public class UdpTransport implements InvalidationTransport {
+
+    private static final int MAX_MESSAGE_SIZE = 1400;
+
+    private final DatagramChannel channel;
+    private final List<InetSocketAddress> peers;
+    // the addresses the peers send from
+    private final Set<InetAddress> peerAddresses = new HashSet<>();
+
+    private volatile Consumer<byte[]> receiver;
+
+    public UdpTransport(int port, List<InetSocketAddress> peers) throws IOException {
+        this.peers = new ArrayList<>(peers);
+        for (InetSocketAddress peer : peers) {
+            peerAddresses.addAll(Arrays.asList(InetAddress.getAllByName(peer.getHostString())));
+        }
+        this.channel = DatagramChannel.open();
+        this.channel.bind(new InetSocketAddress(port));
+        Thread receiverThread = new Thread(this::receiveLoop, "invalidation-receiver");
+        receiverThread.setDaemon(true);
+        receiverThread.start();
+    }
+
+    /**
+     * Sends to all peers, a peer that cannot be reached does not stop the others.
+     * @throws IOException the failure of the last unreachable peer
+     */
+    @Override
+    public void send(byte[] message) throws IOException {
+        if (message.length > MAX_MESSAGE_SIZE) {
+            throw new IllegalArgumentException("message.length > " + MAX_MESSAGE_SIZE);
+        }
+        IOException failure = null;
+        for (InetSocketAddress peer : peers) {
+            try {
+                channel.send(ByteBuffer.wrap(message), peer);
+            } catch (ClosedChannelException e) {
+                throw e;
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    @Override
+    public void setReceiver(Consumer<byte[]> receiver) {
+        this.receiver = receiver;
+    }
+
+    @Override
+    public int maxMessageSize() {
+        return MAX_MESSAGE_SIZE;
+    }
+
+    @Override
+    public void close() throws IOException {
+        // unblocks the receiver thread
+        channel.close();
+    }
+
+    private void receiveLoop() {
+        ByteBuffer buffer = ByteBuffer.allocate(MAX_MESSAGE_SIZE);
+        while (channel.isOpen()) {
+            try {
+                buffer.clear();
+                SocketAddress source = channel.receive(buffer);
+                if (!(source instanceof InetSocketAddress)
+                        || !peerAddresses.contains(((InetSocketAddress) source).getAddress())) {
+                    // not logged as a warning, anyone can send datagrams
+                    log.debug("Dropped invalidation message from {}, not a peer", source);
+                    continue;
+                }
+                buffer.flip();
+                byte[] message = new byte[buffer.remaining()];
+                buffer.get(message);
+                Consumer<byte[]> messageReceiver = receiver;
+                if (messageReceiver != null) {
+                    messageReceiver.accept(message);
+                }
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException | RuntimeException e) {
+                // a bad message must not stop the node from receiving
+                log.warn("Could not receive invalidation message", e);
+            }
+        }
+    }
+}
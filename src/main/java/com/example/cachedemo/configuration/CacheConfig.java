@@ -1,14 +1,39 @@
 package com.example.cachedemo.configuration;
 
 import com.example.cachedemo.cache.Cache;
-import com.example.cachedemo.cache.Cache2QImpl;
+import com.example.cachedemo.cache.CacheARCImpl;
+import com.example.cachedemo.cache.CacheBufferedImpl;
+import com.example.cachedemo.cache.CacheExpiringImpl;
+import com.example.cachedemo.cache.CacheHotKeyImpl;
 import com.example.cachedemo.cache.CacheLRUImpl;
+import com.example.cachedemo.cache.CacheStatsImpl;
+import com.example.cachedemo.cache.CacheStripedImpl;
+import com.example.cachedemo.cache.CacheTieredImpl;
+import com.example.cachedemo.cache.CacheTinyLfuImpl;
 import com.example.cachedemo.cache.FilmCache2Q;
+import com.example.cachedemo.cache.FilmCacheGhost2Q;
+import com.example.cachedemo.cache.FilmCacheMapped;
+import com.example.cachedemo.cache.FilmCacheOffHeap;
+import com.example.cachedemo.cache.IntCacheAdapter;
+import com.example.cachedemo.cache.IntCacheLRUImpl;
+import com.example.cachedemo.cache.StatsSupport;
+import com.example.cachedemo.cache.stats.ConcurrentStatsCounter;
+import com.example.cachedemo.cache.stats.StatsCounter;
+import com.example.cachedemo.cluster.CacheNode;
+import com.example.cachedemo.cluster.FilmCachePartitioned;
 import com.example.cachedemo.model.Film;
+import com.example.cachedemo.services.FilmLoaderExecutor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
+import org.springframework.util.unit.DataSize;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.time.Duration;
+import java.util.Arrays;
 
 @Configuration
 public class CacheConfig {
@@ -16,15 +41,184 @@ public class CacheConfig {
     @Value("${app.cache.size}")
     private int cacheSize;
 
+    // budget of the engines weighed by the heap footprint of the films
+    @Value("${app.cache.max-bytes:1MB}")
+    private DataSize cacheMaxBytes;
+
+    // budget and file of the memory-mapped L2 of the tiered cache, a temp file if not set
+    @Value("${app.cache.l2.max-bytes:256MB}")
+    private DataSize l2MaxBytes;
+
+    @Value("${app.cache.l2.file:}")
+    private String l2File;
+
+    // budget of the off-heap engine, in bytes of serialized films
+    @Value("${app.cache.offheap.max-bytes:16MB}")
+    private DataSize offHeapMaxBytes;
+
+    @Value("${app.cache.near-size:100}")
+    private int nearCacheSize;
+
+    // bounds how long a node may serve a film another node changed
+    @Value("${app.cache.near-expire-after-write:5s}")
+    private Duration nearExpireAfterWrite;
+
+    @Value("${app.cache.segments:16}")
+    private int cacheSegments;
+
+    @Value("${app.cache.stats.enabled:true}")
+    private boolean statsEnabled;
+
+    // number of the most read films served without locks, 0 disables it
+    @Value("${app.cache.hot-keys:0}")
+    private int hotKeys;
+
+    @Value("${app.cache.expire-after-write:0s}")
+    private Duration expireAfterWrite;
+
+    @Value("${app.cache.expire-after-access:0s}")
+    private Duration expireAfterAccess;
+
+    @Value("${app.cache.refresh-after-write:0s}")
+    private Duration refreshAfterWrite;
+
+    // refreshes are blocking database loads, bounded like the loads of the asynchronous API
+    private final FilmLoaderExecutor refreshExecutor;
+
+    public CacheConfig(FilmLoaderExecutor refreshExecutor) {
+        this.refreshExecutor = refreshExecutor;
+    }
+
     @Bean
     @Profile({"default", "2q"})
     public Cache<Integer, Film> get2QCache() {
-        return new FilmCache2Q(cacheSize);
+        return decorate(new FilmCache2Q(maxBytes()));
     }
 
     @Bean
     @Profile("lru")
     public Cache<Integer, Film> getLruCache() {
-        return new CacheLRUImpl<>(cacheSize);
+        return decorate(new CacheLRUImpl<>(cacheSize));
+    }
+
+    @Bean
+    @Profile("striped")
+    public Cache<Integer, Film> getStripedCache() {
+        return decorate(new CacheStripedImpl<>(cacheSize, cacheSegments));
+    }
+
+    @Bean
+    @Profile("lru-buffered")
+    public Cache<Integer, Film> getBufferedLruCache() {
+        return decorate(new CacheBufferedImpl<>(new CacheLRUImpl<>(cacheSize)));
+    }
+
+    @Bean
+    @Profile("2q-buffered")
+    public Cache<Integer, Film> getBuffered2QCache() {
+        return decorate(new CacheBufferedImpl<>(new FilmCache2Q(maxBytes())));
+    }
+
+    @Bean
+    @Profile("tinylfu")
+    public Cache<Integer, Film> getTinyLfuCache() {
+        return decorate(new CacheTinyLfuImpl<>(cacheSize));
+    }
+
+    @Bean
+    @Profile("arc")
+    public Cache<Integer, Film> getArcCache() {
+        return decorate(new CacheARCImpl<>(cacheSize));
+    }
+
+    @Bean
+    @Profile("2q-ghost")
+    public Cache<Integer, Film> getGhost2QCache() {
+        return decorate(new FilmCacheGhost2Q(maxBytes()));
+    }
+
+    /**
+     * The service reads this cache without boxing the id, unless hot keys or expiration decorate it.
+     */
+    @Bean
+    @Profile("int-lru")
+    public Cache<Integer, Film> getIntLruCache() {
+        return decorate(new IntCacheAdapter<>(new IntCacheLRUImpl<>(cacheSize)));
+    }
+
+    @Bean
+    @Profile("offheap")
+    public Cache<Integer, Film> getOffHeapCache() {
+        return decorate(new FilmCacheOffHeap((int) Math.min(Integer.MAX_VALUE, offHeapMaxBytes.toBytes())));
+    }
+
+    private int maxBytes() {
+        return (int) Math.min(Integer.MAX_VALUE, cacheMaxBytes.toBytes());
+    }
+
+    /**
+     * File of the L2 tier, closed after the cache when the context shuts down.
+     */
+    @Bean(destroyMethod = "close")
+    @Profile("tiered")
+    public FileChannel getTieredL2File() throws IOException {
+        File file;
+        if (l2File.isEmpty()) {
+            file = File.createTempFile("film-cache", ".l2");
+            file.deleteOnExit();
+        } else {
+            file = new File(l2File);
+        }
+        return FilmCacheMapped.open(file.toPath());
+    }
+
+    @Bean
+    @Profile("tiered")
+    public Cache<Integer, Film> getTieredCache(FileChannel tieredL2File) {
+        int l2Size = (int) Math.min(Integer.MAX_VALUE, l2MaxBytes.toBytes());
+        return decorate(new CacheTieredImpl<>(new CacheLRUImpl<>(cacheSize), new FilmCacheMapped(l2Size, tieredL2File)));
+    }
+
+    /**
+     * Member of the partitioned cache, serves its partition of app.cache.size films to the other nodes.
+     * Listens on the address of app.cluster.self and accepts only the hosts of app.cluster.nodes.
+     */
+    @Bean
+    @Profile("partitioned")
+    public CacheNode getCacheNode(@Value("${app.cluster.self}") String self,
+                                  @Value("${app.cluster.nodes}") String[] nodes,
+                                  @Value("${app.cluster.virtual-nodes:256}") int virtualNodes,
+                                  @Value("${app.cluster.timeout:200}") int timeoutMillis) throws IOException {
+        return new CacheNode(self, Arrays.asList(nodes), virtualNodes, timeoutMillis, new CacheLRUImpl<>(cacheSize));
+    }
+
+    @Bean
+    @Profile("partitioned")
+    public Cache<Integer, Film> getPartitionedCache(CacheNode cacheNode) {
+        Cache<Integer, Film> nearCache = new CacheExpiringImpl<>(new CacheLRUImpl<>(nearCacheSize),
+                nearExpireAfterWrite, Duration.ZERO, Duration.ZERO, refreshExecutor);
+        return decorate(new FilmCachePartitioned(cacheNode, nearCache));
+    }
+
+    /**
+     * Adds stats recording to engines without their own, unless stats are disabled, pins the hot keys
+     * if configured and wraps the engine into the expiring decorator if expiration or refresh is configured.
+     * Expiration is outermost, so expired entries are unpinned too.
+     */
+    private Cache<Integer, Film> decorate(Cache<Integer, Film> cache) {
+        if (statsEnabled && !(cache instanceof StatsSupport)) {
+            cache = new CacheStatsImpl<>(cache);
+        }
+        if (hotKeys > 0) {
+            cache = new CacheHotKeyImpl<>(cache, hotKeys);
+        }
+        if (!expireAfterWrite.isZero() || !expireAfterAccess.isZero() || !refreshAfterWrite.isZero()) {
+            cache = new CacheExpiringImpl<>(cache, expireAfterWrite, expireAfterAccess, refreshAfterWrite,
+                    refreshExecutor);
+        }
+        if (cache instanceof StatsSupport) {
+            ((StatsSupport) cache).setStatsCounter(statsEnabled ? new ConcurrentStatsCounter() : StatsCounter.disabled());
+        }
+        return cache;
     }
 }
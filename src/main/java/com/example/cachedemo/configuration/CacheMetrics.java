@@ -0,0 +1,70 @@
+package com.example.cachedemo.configuration;
+
+import com.example.cachedemo.cache.Cache;
+import com.example.cachedemo.cache.StatsSupport;
+import com.example.cachedemo.cache.stats.CacheStats;
+import com.example.cachedemo.model.Film;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Publishes the film cache stats to Micrometer under the usual cache.* meter names.
+ * Meters read the stats when they are scraped, nothing is recorded on the cache hot path.
+ */
+@Component
+public class CacheMetrics implements MeterBinder {
+
+    private static final String[] QUEUE_NAMES = {"in", "out", "hot"};
+
+    private final Cache<Integer, Film> filmCache;
+
+    public CacheMetrics(Cache<Integer, Film> filmCache) {
+        this.filmCache = filmCache;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Tags tags = Tags.of("cache", "film");
+
+        Gauge.builder("cache.size", filmCache, Cache::size)
+                .tags(tags).description("Weight of the cached entries").register(registry);
+        Gauge.builder("cache.max.size", filmCache, Cache::maxSize)
+                .tags(tags).description("Maximum weight of the cached entries").register(registry);
+
+        if (!(filmCache instanceof StatsSupport)) {
+            return;
+        }
+        StatsSupport statsSupport = (StatsSupport) filmCache;
+
+        counter(registry, "cache.gets", tags.and("result", "hit"), statsSupport, CacheStats::hitCount);
+        counter(registry, "cache.gets", tags.and("result", "miss"), statsSupport, CacheStats::missCount);
+        counter(registry, "cache.loads", tags.and("result", "failure"), statsSupport,
+                CacheStats::loadFailureCount);
+        FunctionTimer.builder("cache.load.duration", statsSupport,
+                        s -> s.stats().loadCount(), s -> s.stats().totalLoadTime(), TimeUnit.NANOSECONDS)
+                .tags(tags).description("Time spent in loads").register(registry);
+        Gauge.builder("cache.load.duration.p99", statsSupport, s -> s.stats().loadTimePercentile(0.99))
+                .tags(tags).baseUnit("nanoseconds").register(registry);
+
+        for (int queue = 0; queue < QUEUE_NAMES.length; queue++) {
+            int q = queue;
+            Tags queueTags = tags.and("queue", QUEUE_NAMES[queue]);
+            counter(registry, "cache.evictions", queueTags, statsSupport, stats -> stats.evictionCount(q));
+            counter(registry, "cache.eviction.weight", queueTags, statsSupport, stats -> stats.evictionWeight(q));
+        }
+    }
+
+    private static void counter(MeterRegistry registry, String name, Tags tags, StatsSupport statsSupport,
+                                ToDoubleFunction<CacheStats> value) {
+        FunctionCounter.builder(name, statsSupport, s -> value.applyAsDouble(s.stats()))
+                .tags(tags).register(registry);
+    }
+}
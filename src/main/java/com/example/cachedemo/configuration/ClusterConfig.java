@@ -0,0 +1,47 @@
+package com.example.cachedemo.configuration;
+
+import com.example.cachedemo.cluster.InvalidationTransport;
+import com.example.cachedemo.cluster.LoopbackTransport;
+import com.example.cachedemo.cluster.UdpTransport;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Transport of the cache invalidations between the nodes, chosen by app.cluster.transport.
+ * Without the property the node runs alone and no invalidation bus is created.
+ */
+@Configuration
+public class ClusterConfig {
+
+    @Bean
+    @ConditionalOnProperty(value = "app.cluster.transport", havingValue = "loopback")
+    public InvalidationTransport loopbackTransport() {
+        return new LoopbackTransport();
+    }
+
+    /**
+     * @param peers host:port of the other nodes
+     */
+    @Bean
+    @ConditionalOnProperty(value = "app.cluster.transport", havingValue = "udp")
+    public InvalidationTransport udpTransport(@Value("${app.cluster.port:7410}") int port,
+                                              @Value("${app.cluster.peers}") String[] peers) throws IOException {
+        List<InetSocketAddress> addresses = new ArrayList<>(peers.length);
+        for (String peer : peers) {
+            int colon = peer.lastIndexOf(':');
+            if (colon < 0) {
+                throw new IllegalArgumentException("Peer without port: " + peer);
+            }
+            addresses.add(new InetSocketAddress(peer.substring(0, colon).trim(),
+                    Integer.parseInt(peer.substring(colon + 1).trim())));
+        }
+        return new UdpTransport(port, addresses);
+    }
+}
@@ -2,7 +2,13 @@ package com.example.cachedemo.controllers;
 
 import com.example.cachedemo.model.Film;
 import com.example.cachedemo.services.FilmService;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 public class ApiController {
@@ -18,6 +24,24 @@ public class ApiController {
         return filmService.getById(id);
     }
 
+    /**
+     * Same as {@link #getFilm(int)}, but the request thread is released on a cache miss.
+     * Answers 503 when too many loads are pending.
+     */
+    @GetMapping(value = "/async/films/{id}")
+    public CompletableFuture<Film> getFilmAsync(@PathVariable int id) {
+        try {
+            return filmService.getByIdAsync(id);
+        } catch (RejectedExecutionException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        }
+    }
+
+    @GetMapping(value = "/films", params = "ids")
+    public List<Film> getFilms(@RequestParam List<Integer> ids) {
+        return filmService.getByIds(ids);
+    }
+
     @PostMapping(value = "/films")
     public void getFilm(@RequestBody Film film) {
         filmService.add(film);
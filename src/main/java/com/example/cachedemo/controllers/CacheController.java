@@ -0,0 +1,86 @@
+package com.example.cachedemo.controllers;
+
+import com.example.cachedemo.cache.Cache;
+import com.example.cachedemo.cache.SnapshotEntry;
+import com.example.cachedemo.cache.SnapshotSupport;
+import com.example.cachedemo.cache.StatsSupport;
+import com.example.cachedemo.cache.stats.CacheStats;
+import com.example.cachedemo.model.Film;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+public class CacheController {
+
+    private final Cache<Integer, Film> filmCache;
+
+    public CacheController(Cache<Integer, Film> filmCache) {
+        this.filmCache = filmCache;
+    }
+
+    @GetMapping(value = "/cache/stats")
+    public Map<String, Object> stats() {
+        if (!(filmCache instanceof StatsSupport)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Cache stats are disabled");
+        }
+        CacheStats stats = ((StatsSupport) filmCache).stats();
+
+        long[] evictions = new long[CacheStats.QUEUES];
+        long[] evictionWeights = new long[CacheStats.QUEUES];
+        for (int queue = 0; queue < CacheStats.QUEUES; queue++) {
+            evictions[queue] = stats.evictionCount(queue);
+            evictionWeights[queue] = stats.evictionWeight(queue);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("engine", filmCache.getClass().getSimpleName());
+        result.put("size", filmCache.size());
+        result.put("maxSize", filmCache.maxSize());
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("loads", stats.loadCount());
+        result.put("loadFailures", stats.loadFailureCount());
+        result.put("averageLoadNanos", stats.averageLoadPenalty());
+        result.put("loadNanosP50", stats.loadTimePercentile(0.5));
+        result.put("loadNanosP99", stats.loadTimePercentile(0.99));
+        result.put("evictions", stats.evictionCount());
+        result.put("evictionWeight", stats.evictionWeight());
+        // queue 0 is the only queue of single queue engines, 2Q uses in, out and hot
+        result.put("evictionsPerQueue", evictions);
+        result.put("evictionWeightPerQueue", evictionWeights);
+        return result;
+    }
+
+    /**
+     * Streams the cached entries as lines of queue, key and value, every queue from its eldest entry.
+     * The cache lock is held only to copy the entry references, the entries are formatted while streaming.
+     */
+    @GetMapping(value = "/cache/dump", produces = MediaType.TEXT_PLAIN_VALUE)
+    @SuppressWarnings("unchecked")
+    public StreamingResponseBody dump() {
+        if (!SnapshotSupport.supports(filmCache)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Cache dump is not supported");
+        }
+        List<SnapshotEntry<Integer, Film>> entries = ((SnapshotSupport<Integer, Film>) filmCache).snapshot();
+        return out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            for (SnapshotEntry<Integer, Film> entry : entries) {
+                writer.write(entry.getQueue() + "\t" + entry.getKey() + "\t" + entry.getValue() + "\n");
+            }
+            writer.flush();
+        };
+    }
+}
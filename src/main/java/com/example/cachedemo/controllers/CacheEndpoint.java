@@ -0,0 +1,48 @@
+package com.example.cachedemo.controllers;
+
+import com.example.cachedemo.cache.Cache;
+import com.example.cachedemo.model.Film;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Actuator endpoint to read and change the size of the film cache, served on the management port
+ * at /actuator/filmcache, so it is not reachable by the clients of the API.
+ */
+@Component
+@Endpoint(id = "filmcache")
+public class CacheEndpoint {
+
+    private final Cache<Integer, Film> filmCache;
+
+    public CacheEndpoint(Cache<Integer, Film> filmCache) {
+        this.filmCache = filmCache;
+    }
+
+    @ReadOperation
+    public Map<String, Object> size() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", filmCache.size());
+        result.put("maxSize", filmCache.maxSize());
+        return result;
+    }
+
+    /**
+     * Sets the max size of the cache. LRU and 2Q without ghosts trim a smaller cache step by step in the following
+     * requests, so the returned size is the size right after the first step. The other engines trim at once.
+     */
+    @WriteOperation
+    public Map<String, Object> resize(int maxSize) {
+        if (maxSize <= 0) {
+            throw new InvalidEndpointRequestException("maxSize <= 0", "maxSize <= 0");
+        }
+        filmCache.resize(maxSize);
+        return size();
+    }
+}
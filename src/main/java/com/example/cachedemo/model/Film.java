@@ -1,6 +1,8 @@
 package com.example.cachedemo.model;
 
 import lombok.*;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 
@@ -13,7 +15,12 @@ import javax.persistence.*;
 public class Film {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // ids are allocated in blocks, so inserts can be sent in JDBC batches
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "film_seq")
+    @GenericGenerator(name = "film_seq", strategy = "com.example.cachedemo.model.FilmIdGenerator", parameters = {
+            @Parameter(name = "sequence_name", value = "film_seq"),
+            @Parameter(name = "increment_size", value = "50")
+    })
     private Integer id;
 
     private String title;
@@ -21,5 +28,24 @@ public class Film {
     private String genre;
     private Boolean watched;
 
+    // set only by write-behind, which takes the id from the sequence before the insert
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private boolean idAssigned;
+
+    /**
+     * Sets an id taken from the film sequence, the insert keeps it instead of taking the next one.
+     */
+    public void assignId(Integer id) {
+        this.id = id;
+        this.idAssigned = true;
+    }
+
+    public boolean hasAssignedId() {
+        return idAssigned;
+    }
 }
 
@@ -0,0 +1,20 @@
+package com.example.cachedemo.model;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
+import java.io.Serializable;
+
+/**
+ * Film id sequence that keeps an id assigned from it before the insert.
+ * Write-behind takes the id of a new film from the sequence when it is queued and inserts the film later.
+ * Any other id, such as one sent by a client, is replaced by the next one of the sequence.
+ */
+public class FilmIdGenerator extends SequenceStyleGenerator {
+
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) {
+        Film film = (Film) object;
+        return film.hasAssignedId() ? film.getId() : super.generate(session, object);
+    }
+}
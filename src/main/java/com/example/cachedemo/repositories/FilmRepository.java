@@ -1,7 +1,7 @@
 package com.example.cachedemo.repositories;
 
 import com.example.cachedemo.model.Film;
-import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.jpa.repository.JpaRepository;
 
-public interface FilmRepository extends PagingAndSortingRepository<Film, Integer> {
+public interface FilmRepository extends JpaRepository<Film, Integer> {
 }
@@ -0,0 +1,160 @@
+package com.example.cachedemo.services;
+
+import com.example.cachedemo.cache.Cache;
+import com.example.cachedemo.model.Film;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sizes the film cache by the heap usage left after garbage collections.
+ * A collection usage threshold is set on every heap pool that supports one. When a collection leaves a
+ * pool above it, the JVM notifies this service and the cache is shrunk. A periodic check shrinks the
+ * cache while the pressure lasts and grows it back up to the max size once the usage is low again.
+ * Without collection data, when no pool is monitored or none was collected yet, the cache does not grow.
+ * The sizes are in the units of the engine, bytes for the footprint weighed engines.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(value = "app.cache.auto-size.enabled", havingValue = "true")
+public class CacheAutoSizer implements NotificationListener {
+
+    private final Cache<Integer, Film> filmCache;
+    private final int minSize;
+    private final int maxSize;
+    private final double highUsage;
+    private final double lowUsage;
+    private final double shrinkFactor;
+    private final double growFactor;
+
+    private final List<MemoryPoolMXBean> pools = new ArrayList<>();
+
+    public CacheAutoSizer(Cache<Integer, Film> filmCache,
+                          @Value("${app.cache.auto-size.min-size:0}") int minSize,
+                          @Value("${app.cache.auto-size.max-size:0}") int maxSize,
+                          @Value("${app.cache.auto-size.high-usage:0.8}") double highUsage,
+                          @Value("${app.cache.auto-size.low-usage:0.5}") double lowUsage,
+                          @Value("${app.cache.auto-size.shrink-factor:0.5}") double shrinkFactor,
+                          @Value("${app.cache.auto-size.grow-factor:1.25}") double growFactor) {
+        // by default the cache may shrink to an eighth of the configured size and grow to 16 times of it
+        int size = filmCache.maxSize();
+        this.minSize = minSize > 0 ? minSize : Math.max(1, size / 8);
+        this.maxSize = maxSize > 0 ? maxSize : (int) Math.min(Integer.MAX_VALUE, 16L * size);
+        if (this.minSize > this.maxSize) {
+            throw new IllegalArgumentException("minSize > maxSize");
+        }
+        if (!(0 < lowUsage && lowUsage < highUsage && highUsage < 1)) {
+            throw new IllegalArgumentException("!(0 < lowUsage < highUsage < 1)");
+        }
+        if (!(0 < shrinkFactor && shrinkFactor < 1) || growFactor <= 1) {
+            throw new IllegalArgumentException("!(0 < shrinkFactor < 1) || growFactor <= 1");
+        }
+        this.filmCache = filmCache;
+        this.highUsage = highUsage;
+        this.lowUsage = lowUsage;
+        this.shrinkFactor = shrinkFactor;
+        this.growFactor = growFactor;
+    }
+
+    @PostConstruct
+    public void start() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage usage = pool.getCollectionUsage();
+            if (pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported()
+                    && usage != null && usage.getMax() > 0) {
+                pool.setCollectionUsageThreshold((long) (usage.getMax() * highUsage));
+                pools.add(pool);
+            }
+        }
+        if (pools.isEmpty()) {
+            log.warn("No heap pool supports collection usage thresholds, the cache keeps its size");
+        }
+        ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).addNotificationListener(this,
+                n -> MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(n.getType()), null);
+    }
+
+    @PreDestroy
+    public void stop() {
+        try {
+            ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).removeNotificationListener(this);
+        } catch (ListenerNotFoundException e) {
+            // not registered, nothing to do
+        }
+        for (MemoryPoolMXBean pool : pools) {
+            pool.setCollectionUsageThreshold(0);
+        }
+    }
+
+    /**
+     * Called on the JMX notification thread after a collection that left a pool above the threshold.
+     */
+    @Override
+    public void handleNotification(Notification notification, Object handback) {
+        shrink();
+    }
+
+    @Scheduled(fixedDelayString = "${app.cache.auto-size.check-interval:10000}")
+    public void check() {
+        double usage = collectionUsage();
+        if (usage < 0) {
+            // no data yet, a usage of 0 would grow the cache up to its max size
+            return;
+        }
+        if (usage >= highUsage) {
+            shrink();
+        } else if (usage <= lowUsage) {
+            grow();
+        }
+    }
+
+    /**
+     * Returns the highest usage after the last collection of the monitored pools,
+     * -1 if there is no pool or none was collected yet.
+     */
+    private double collectionUsage() {
+        double result = -1;
+        for (MemoryPoolMXBean pool : pools) {
+            MemoryUsage usage = pool.getCollectionUsage();
+            // a pool that was not collected yet reports nothing used
+            if (usage != null && usage.getMax() > 0 && usage.getUsed() > 0) {
+                result = Math.max(result, (double) usage.getUsed() / usage.getMax());
+            }
+        }
+        return result;
+    }
+
+    private synchronized void shrink() {
+        int size = filmCache.maxSize();
+        int newSize = Math.max(minSize, (int) (size * shrinkFactor));
+        if (newSize < size) {
+            // LRU and 2Q without ghosts trim step by step in the following operations, the others trim here at once
+            filmCache.resize(newSize);
+            log.info("Heap pressure, cache max size {} -> {}", size, newSize);
+        }
+    }
+
+    private synchronized void grow() {
+        int size = filmCache.maxSize();
+        int newSize = (int) Math.min(maxSize, (long) Math.ceil(size * growFactor));
+        if (newSize > size) {
+            filmCache.resize(newSize);
+            log.debug("Heap headroom, cache max size {} -> {}", size, newSize);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.cachedemo.services;
+
+import com.example.cachedemo.cache.Cache;
+import com.example.cachedemo.cache.StatsSupport;
+import com.example.cachedemo.cache.stats.CacheStats;
+import com.example.cachedemo.model.Film;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Logs a one line summary of the film cache on a schedule instead of dumping it on every request.
+ * The summary is built from the stats counters and the size, the cache content is never formatted.
+ */
+@Slf4j
+@Service
+public class CacheDiagnosticsService {
+
+    private final Cache<Integer, Film> filmCache;
+    // stats at the previous summary, to report the activity of the last interval
+    private CacheStats previous;
+
+    public CacheDiagnosticsService(Cache<Integer, Film> filmCache) {
+        this.filmCache = filmCache;
+    }
+
+    @Scheduled(cron = "${app.cache.diagnostics.cron:0 * * * * *}")
+    public synchronized void logSummary() {
+        if (!log.isInfoEnabled()) {
+            return;
+        }
+        if (!(filmCache instanceof StatsSupport)) {
+            log.info("cache size={} maxSize={}", filmCache.size(), filmCache.maxSize());
+            return;
+        }
+
+        CacheStats stats = ((StatsSupport) filmCache).stats();
+        long hits = stats.hitCount() - (previous != null ? previous.hitCount() : 0);
+        long misses = stats.missCount() - (previous != null ? previous.missCount() : 0);
+        long evictions = stats.evictionCount() - (previous != null ? previous.evictionCount() : 0);
+        long requests = hits + misses;
+        previous = stats;
+
+        log.info("cache size={} maxSize={} hits={} misses={} hitRate={} evictions={} totalHitRate={} " +
+                        "loadP99Ms={}",
+                filmCache.size(), filmCache.maxSize(), hits, misses,
+                String.format("%.3f", requests != 0 ? (double) hits / requests : 0.0), evictions,
+                String.format("%.3f", stats.hitRate()), stats.loadTimePercentile(0.99) / 1_000_000.0);
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.cachedemo.services;
+
+import com.example.cachedemo.cache.Cache;
+import com.example.cachedemo.cache.FilmSnapshotFile;
+import com.example.cachedemo.cache.SnapshotEntry;
+import com.example.cachedemo.cache.SnapshotSupport;
+import com.example.cachedemo.model.Film;
+import com.example.cachedemo.repositories.FilmRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Saves the film cache with its queue order to a local file and restores it on startup.
+ * The restore runs while the context is refreshed, before the web server accepts requests.
+ * The database may have changed while the node was down, so the films are restored as they are in the database,
+ * in the order of the snapshot, and the ones deleted meanwhile are dropped.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty("app.cache.snapshot.file")
+public class CacheSnapshotService {
+
+    // ids per query when the snapshot is checked against the database
+    private static final int LOAD_BATCH_SIZE = 1000;
+
+    private final FilmRepository filmRepository;
+    private final Cache<Integer, Film> filmCache;
+    private final Path file;
+    private final int sections;
+
+    public CacheSnapshotService(FilmRepository filmRepository, Cache<Integer, Film> filmCache,
+                                @Value("${app.cache.snapshot.file}") String file,
+                                @Value("${app.cache.snapshot.sections:8}") int sections) {
+        this.filmRepository = filmRepository;
+        this.filmCache = filmCache;
+        this.file = Paths.get(file);
+        this.sections = sections;
+    }
+
+    @PostConstruct
+    public void restore() {
+        SnapshotSupport<Integer, Film> snapshotSupport = snapshotSupport();
+        if (snapshotSupport == null || !Files.exists(file)) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            List<SnapshotEntry<Integer, Film>> saved = FilmSnapshotFile.read(file);
+            List<SnapshotEntry<Integer, Film>> entries = withCurrentFilms(saved);
+            snapshotSupport.restore(entries);
+            log.info("Restored {} of {} cache entries from {} in {} ms",
+                    entries.size(), saved.size(), file, (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException | RuntimeException e) {
+            // a broken snapshot must not prevent the start, the cache just starts cold
+            log.warn("Could not restore cache snapshot from {}", file, e);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void save() {
+        SnapshotSupport<Integer, Film> snapshotSupport = snapshotSupport();
+        if (snapshotSupport == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            List<SnapshotEntry<Integer, Film>> entries = snapshotSupport.snapshot();
+            FilmSnapshotFile.write(file, entries, sections);
+            log.info("Saved {} cache entries to {} in {} ms",
+                    entries.size(), file, (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not save cache snapshot to {}", file, e);
+        }
+    }
+
+    @Scheduled(cron = "${app.cache.snapshot.cron:-}")
+    public void scheduledSave() {
+        save();
+    }
+
+    /**
+     * Replaces the saved films by their rows in the database, keeping their queues and order.
+     * Films that are no longer in the database are dropped.
+     */
+    private List<SnapshotEntry<Integer, Film>> withCurrentFilms(List<SnapshotEntry<Integer, Film>> saved) {
+        Map<Integer, Film> films = new HashMap<>();
+        List<Integer> ids = new ArrayList<>(LOAD_BATCH_SIZE);
+        for (int i = 0; i < saved.size(); i++) {
+            ids.add(saved.get(i).getKey());
+            if (ids.size() == LOAD_BATCH_SIZE || i == saved.size() - 1) {
+                for (Film film : filmRepository.findAllById(ids)) {
+                    films.put(film.getId(), film);
+                }
+                ids.clear();
+            }
+        }
+
+        List<SnapshotEntry<Integer, Film>> entries = new ArrayList<>(films.size());
+        for (SnapshotEntry<Integer, Film> entry : saved) {
+            Film film = films.get(entry.getKey());
+            if (film != null) {
+                entries.add(new SnapshotEntry<>(entry.getQueue(), entry.getKey(), film));
+            }
+        }
+        return entries;
+    }
+
+    @SuppressWarnings("unchecked")
+    private SnapshotSupport<Integer, Film> snapshotSupport() {
+        if (SnapshotSupport.supports(filmCache)) {
+            return (SnapshotSupport<Integer, Film>) filmCache;
+        }
+        log.warn("{} does not support snapshots", filmCache.getClass().getName());
+        return null;
+    }
+}
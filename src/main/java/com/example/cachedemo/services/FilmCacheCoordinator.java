@@ -0,0 +1,112 @@
+package com.example.cachedemo.services;
+
+import com.example.cachedemo.cache.Cache;
+import com.example.cachedemo.model.Film;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Keeps the film cache in line with committed data.
+ * A write drops the film from the cache after its transaction commits, a rolled back transaction leaves
+ * the cache untouched. The committed film is not put: the callbacks of concurrent transactions may run
+ * in another order than their commits, so the next read loads the film from the database instead.
+ * Every applied write bumps the version of its key stripe first.
+ * A load takes the {@link #stamp(int)} before it reads the database and calls {@link #validate(int, long)}
+ * after it cached the film: if a write was applied meanwhile, the loaded film may be older and is dropped.
+ * No lock is held while the database is read.
+ */
+class FilmCacheCoordinator {
+
+    // must be a power of two
+    private static final int STRIPES = 1024;
+
+    private final Cache<Integer, Film> filmCache;
+    private final AtomicLongArray versions = new AtomicLongArray(STRIPES);
+
+    FilmCacheCoordinator(Cache<Integer, Film> filmCache) {
+        this.filmCache = filmCache;
+    }
+
+    void remove(int id) {
+        afterCommit(() -> apply(id));
+    }
+
+    /**
+     * Runs the action after the current transaction commits, or now if there is no transaction.
+     */
+    void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        Writes writes = (Writes) TransactionSynchronizationManager.getResource(this);
+        if (writes == null) {
+            writes = new Writes();
+            TransactionSynchronizationManager.bindResource(this, writes);
+            TransactionSynchronizationManager.registerSynchronization(writes);
+        }
+        writes.actions.add(action);
+    }
+
+    long stamp(int id) {
+        return versions.get(stripe(id));
+    }
+
+    /**
+     * Stamps of all stripes, for a load whose keys are not known before it ran.
+     */
+    long[] stampAll() {
+        long[] stamps = new long[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stamps[i] = versions.get(i);
+        }
+        return stamps;
+    }
+
+    void validate(int id, long[] stamps) {
+        validate(id, stamps[stripe(id)]);
+    }
+
+    /**
+     * Drops the film cached by a load that started at the stamp, if a write was applied since.
+     * This may drop the film of the write too, which costs only a miss.
+     */
+    void validate(int id, long stamp) {
+        if (versions.get(stripe(id)) != stamp) {
+            filmCache.remove(id);
+        }
+    }
+
+    private void apply(int id) {
+        // bumped first, so a load stamped after this reads the committed film
+        versions.incrementAndGet(stripe(id));
+        filmCache.remove(id);
+    }
+
+    private static int stripe(int id) {
+        return id & (STRIPES - 1);
+    }
+
+    /**
+     * Cache writes of one transaction.
+     */
+    private final class Writes extends TransactionSynchronizationAdapter {
+        private final List<Runnable> actions = new ArrayList<>();
+
+        @Override
+        public void afterCommit() {
+            for (Runnable action : actions) {
+                action.run();
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(FilmCacheCoordinator.this);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.cachedemo.services;
+
+import com.example.cachedemo.cluster.InvalidationMessage;
+import com.example.cachedemo.cluster.InvalidationTransport;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Tells the other nodes which films changed, so that they drop them from their caches.
+ * Invalidations published inside a transaction are sent only after it commits, a rolled back
+ * transaction sends nothing. Committed invalidations are collected for a short delay and sent in
+ * batches of compact messages (see {@link InvalidationMessage}).
+ * Messages may be lost, the caches then serve the old film until it is evicted or expires.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty("app.cluster.transport")
+public class FilmInvalidationBus {
+
+    private final InvalidationTransport transport;
+    // tells the own messages apart if the transport echoes them
+    private final long nodeId = new SecureRandom().nextLong();
+
+    // committed, not yet sent, guarded by this
+    private Set<Integer> changed = new HashSet<>();
+    private Set<Integer> structural = new HashSet<>();
+
+    private volatile InvalidationListener listener;
+
+    public FilmInvalidationBus(InvalidationTransport transport) {
+        this.transport = transport;
+        this.transport.setReceiver(this::receive);
+    }
+
+    public void setListener(InvalidationListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * The film was edited.
+     */
+    public void publishChanged(int id) {
+        Batch batch = transactionBatch();
+        if (batch != null) {
+            batch.changed.add(id);
+        } else {
+            synchronized (this) {
+                changed.add(id);
+            }
+        }
+    }
+
+    /**
+     * The film was added or deleted, so the listings changed too.
+     */
+    public void publishStructural(int id) {
+        Batch batch = transactionBatch();
+        if (batch != null) {
+            batch.structural.add(id);
+        } else {
+            synchronized (this) {
+                structural.add(id);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.cluster.flush-delay:20}")
+    public void scheduledFlush() {
+        flush();
+    }
+
+    /**
+     * Sends everything committed so far.
+     */
+    @PreDestroy
+    public void flush() {
+        Set<Integer> changedToSend;
+        Set<Integer> structuralToSend;
+        synchronized (this) {
+            if (changed.isEmpty() && structural.isEmpty()) {
+                return;
+            }
+            changedToSend = changed;
+            structuralToSend = structural;
+            changed = new HashSet<>();
+            structural = new HashSet<>();
+        }
+
+        int[] changedIds = changedToSend.stream().mapToInt(Integer::intValue).toArray();
+        int[] structuralIds = structuralToSend.stream().mapToInt(Integer::intValue).toArray();
+        int maxKeys = InvalidationMessage.maxKeys(transport.maxMessageSize());
+        int changedFrom = 0;
+        int structuralFrom = 0;
+        while (changedFrom < changedIds.length || structuralFrom < structuralIds.length) {
+            int changedTo = Math.min(changedIds.length, changedFrom + maxKeys);
+            int structuralTo = Math.min(structuralIds.length, structuralFrom + maxKeys - (changedTo - changedFrom));
+            InvalidationMessage message = new InvalidationMessage(nodeId,
+                    Arrays.copyOfRange(changedIds, changedFrom, changedTo),
+                    Arrays.copyOfRange(structuralIds, structuralFrom, structuralTo));
+            try {
+                transport.send(message.encode());
+            } catch (IOException e) {
+                log.warn("Lost invalidation of {} films", (changedTo - changedFrom) + (structuralTo - structuralFrom), e);
+            }
+            changedFrom = changedTo;
+            structuralFrom = structuralTo;
+        }
+    }
+
+    private void receive(byte[] bytes) {
+        InvalidationMessage message;
+        try {
+            message = InvalidationMessage.decode(bytes);
+        } catch (IllegalArgumentException e) {
+            log.warn("Dropped invalidation message", e);
+            return;
+        }
+        InvalidationListener invalidationListener = listener;
+        if (message.getSender() != nodeId && invalidationListener != null) {
+            invalidationListener.onInvalidation(message.getChanged(), message.getStructural());
+        }
+    }
+
+    /**
+     * Returns the batch of the current transaction or null if there is no transaction.
+     */
+    private Batch transactionBatch() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        Batch batch = (Batch) TransactionSynchronizationManager.getResource(this);
+        if (batch == null) {
+            batch = new Batch();
+            TransactionSynchronizationManager.bindResource(this, batch);
+            TransactionSynchronizationManager.registerSynchronization(batch);
+        }
+        return batch;
+    }
+
+    /**
+     * Invalidations of one transaction, queued for sending when it commits.
+     */
+    private final class Batch extends TransactionSynchronizationAdapter {
+        private final Set<Integer> changed = new HashSet<>();
+        private final Set<Integer> structural = new HashSet<>();
+
+        @Override
+        public void afterCommit() {
+            synchronized (FilmInvalidationBus.this) {
+                FilmInvalidationBus.this.changed.addAll(changed);
+                FilmInvalidationBus.this.structural.addAll(structural);
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(FilmInvalidationBus.this);
+        }
+    }
+
+    /**
+     * Called with the films invalidated by another node.
+     */
+    public interface InvalidationListener {
+        void onInvalidation(int[] changed, int[] structural);
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.cachedemo.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the blocking film loads of the asynchronous API, apart from the request threads.
+ * Uses a virtual thread per load when the JDK has them (Java 21+) and a fixed pool of platform threads otherwise.
+ * Either way at most max-pending loads are accepted, further loads are rejected instead of queued without bound,
+ * and at most app.loader.threads loads run at once, so the loads cannot take more database connections than that.
+ */
+@Slf4j
+@Component
+public class FilmLoaderExecutor implements Executor {
+
+    private final ExecutorService executor;
+    private final Semaphore pending;
+    // bounds the running loads on virtual threads, null for the pool whose threads bound them
+    private final Semaphore running;
+
+    public FilmLoaderExecutor(@Value("${app.loader.threads:16}") int threads,
+                              @Value("${app.loader.max-pending:1000}") int maxPending) {
+        if (threads <= 0 || maxPending < threads) {
+            throw new IllegalArgumentException("threads <= 0 || maxPending < threads");
+        }
+        this.pending = new Semaphore(maxPending);
+        ExecutorService virtualThreads = newVirtualThreadPerTaskExecutor();
+        if (virtualThreads != null) {
+            this.executor = virtualThreads;
+            this.running = new Semaphore(threads);
+            log.info("Film loads run on virtual threads, at most {} at once", threads);
+        } else {
+            AtomicInteger count = new AtomicInteger();
+            this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(maxPending), runnable -> {
+                        Thread thread = new Thread(runnable, "film-loader-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            this.running = null;
+        }
+    }
+
+    /**
+     * @throws RejectedExecutionException if max-pending loads are already queued or running
+     */
+    @Override
+    public void execute(Runnable command) {
+        if (!pending.tryAcquire()) {
+            throw new RejectedExecutionException("Too many pending film loads");
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    run(command);
+                } finally {
+                    pending.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.release();
+            throw e;
+        }
+    }
+
+    private void run(Runnable command) {
+        if (running == null) {
+            command.run();
+            return;
+        }
+        // a waiting virtual thread is parked and holds no carrier thread
+        running.acquireUninterruptibly();
+        try {
+            command.run();
+        } finally {
+            running.release();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Returns Executors.newVirtualThreadPerTaskExecutor() or null if the JDK has no virtual threads.
+     * Called reflectively, the code is compiled for Java 8.
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // missing before Java 19, disabled preview feature on Java 19 and 20
+            return null;
+        }
+    }
+}
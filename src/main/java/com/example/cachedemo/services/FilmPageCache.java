@@ -0,0 +1,100 @@
+package com.example.cachedemo.services;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Ids of the films shown on the catalogue pages and the number of films.
+ * Pages are ordered by id, so adding or deleting a film can only shift the pages that end
+ * with a bigger id and the pages that are not full. Only those are dropped on a change.
+ * Every change bumps the version, a page or count loaded before the change is not stored.
+ */
+class FilmPageCache {
+
+    private final int pageSize;
+    private final LinkedHashMap<Integer, int[]> pages;
+
+    // -1 when unknown
+    private long count = -1;
+    private long version;
+
+    FilmPageCache(int pageSize, int maxPages) {
+        if (pageSize <= 0 || maxPages <= 0) {
+            throw new IllegalArgumentException("pageSize <= 0 || maxPages <= 0");
+        }
+        this.pageSize = pageSize;
+        this.pages = new LinkedHashMap<Integer, int[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, int[]> eldest) {
+                return size() > maxPages;
+            }
+        };
+    }
+
+    int pageSize() {
+        return pageSize;
+    }
+
+    synchronized long version() {
+        return version;
+    }
+
+    /**
+     * Returns the ids of the films on the page or null if the page is not cached.
+     */
+    synchronized int[] page(int page) {
+        return pages.get(page);
+    }
+
+    synchronized void putPage(int page, int[] ids, long loadedVersion) {
+        if (loadedVersion == version) {
+            pages.put(page, ids);
+        }
+    }
+
+    synchronized long count() {
+        return count;
+    }
+
+    synchronized void putCount(long count, long loadedVersion) {
+        if (loadedVersion == version) {
+            this.count = count;
+        }
+    }
+
+    synchronized void added(int id) {
+        version++;
+        if (count >= 0) {
+            count++;
+        }
+        invalidate(id);
+    }
+
+    synchronized void removed(int id) {
+        version++;
+        if (count > 0) {
+            count--;
+        }
+        invalidate(id);
+    }
+
+    /**
+     * The film was added or deleted elsewhere, the count is not known anymore.
+     */
+    synchronized void changed(int id) {
+        version++;
+        count = -1;
+        invalidate(id);
+    }
+
+    private void invalidate(int id) {
+        Iterator<int[]> it = pages.values().iterator();
+        while (it.hasNext()) {
+            int[] ids = it.next();
+            if (ids.length < pageSize || ids[ids.length - 1] >= id) {
+                it.remove();
+            }
+        }
+    }
+}
@@ -3,7 +3,9 @@ package com.example.cachedemo.services;
 
 import com.example.cachedemo.model.Film;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface FilmService {
 
@@ -18,4 +20,12 @@ public interface FilmService {
     void edit(Film film);
 
     Film getById(int id);
+
+    /**
+     * Completes at once on a cache hit, a miss is loaded on the loader executor.
+     * @throws java.util.concurrent.RejectedExecutionException if the loader executor is full
+     */
+    CompletableFuture<Film> getByIdAsync(int id);
+
+    List<Film> getByIds(Collection<Integer> ids);
 }
@@ -1,82 +1,376 @@
 package com.example.cachedemo.services;
 
 import com.example.cachedemo.cache.Cache;
+import com.example.cachedemo.cache.IntCacheAdapter;
 import com.example.cachedemo.model.Film;
 import com.example.cachedemo.repositories.FilmRepository;
-import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
 
-@Slf4j
 @Service
 public class FilmServiceImpl implements FilmService {
 
     private final FilmRepository filmRepository;
+    // writes run in a transaction only when they reach the database
+    private final TransactionTemplate transactionTemplate;
     private final Cache<Integer, Film> filmCache;
+    // the same cache when it is keyed by primitive ids, null otherwise
+    private final IntCacheAdapter<Film> intFilmCache;
+    private final FilmPageCache filmPages;
+    // applies cache writes after commit and rejects stale loads
+    private final FilmCacheCoordinator cacheWrites;
+    // null unless write-behind is enabled
+    private final FilmWriteBehind writeBehind;
+    private final Executor filmLoader;
+    // misses of the asynchronous API being loaded
+    private final ConcurrentHashMap<Integer, CompletableFuture<Film>> asyncLoads = new ConcurrentHashMap<>();
+    // null unless the node is part of a cluster
+    private final FilmInvalidationBus invalidationBus;
 
-    public FilmServiceImpl(FilmRepository filmRepository, Cache<Integer, Film> filmCache) {
+    public FilmServiceImpl(FilmRepository filmRepository, Cache<Integer, Film> filmCache,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${app.cache.pages:100}") int pagesCacheSize,
+                           ObjectProvider<FilmWriteBehind> writeBehind, FilmLoaderExecutor filmLoader,
+                           ObjectProvider<FilmInvalidationBus> invalidationBus) {
         this.filmRepository = filmRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
         this.filmCache = filmCache;
+        this.intFilmCache = intCache(filmCache);
+        this.filmLoader = filmLoader;
+        this.filmPages = new FilmPageCache(10, pagesCacheSize);
+        this.cacheWrites = new FilmCacheCoordinator(filmCache);
+        this.writeBehind = writeBehind.getIfAvailable();
+        if (this.writeBehind != null) {
+            this.writeBehind.setFlushListener(this::onFlush);
+        }
+        this.invalidationBus = invalidationBus.getIfAvailable();
+        if (this.invalidationBus != null) {
+            this.invalidationBus.setListener(this::onInvalidation);
+        }
     }
     
     @Override
     @Transactional
     public long filmsCount() {
-        return filmRepository.count();
+        long count = filmPages.count();
+        if (count < 0) {
+            long version = filmPages.version();
+            count = filmRepository.count();
+            filmPages.putCount(count, version);
+        }
+        return count;
     }
 
     @Override
     @Transactional
     public List<Film> allFilms(int page) {
-        Pageable pageable = PageRequest.of(page, 10);
+        int[] ids = filmPages.page(page);
+        if (ids != null) {
+            // films of the page are resolved through the film cache
+            return getByIds(Arrays.stream(ids).boxed().collect(Collectors.toList()));
+        }
+
+        long version = filmPages.version();
+        // the ids of the page are not known before the query, so every stripe is stamped
+        long[] stamps = cacheWrites.stampAll();
+        // ordered by id so that a change shifts only the pages after the changed film
+        Pageable pageable = PageRequest.of(page, filmPages.pageSize(), Sort.by("id"));
         Page<Film> films = filmRepository.findAll(pageable);
-        return films.toList();
+        List<Film> result = withPendingWrites(films.toList());
+        filmPages.putPage(page, result.stream().mapToInt(Film::getId).toArray(), version);
+        filmCache.putAll(result.stream().collect(Collectors.toMap(Film::getId, film -> film)));
+        for (Film film : result) {
+            cacheWrites.validate(film.getId(), stamps);
+        }
+        return result;
     }
 
+    /**
+     * Writes are not transactional as a whole: a queued write may wait for the flush,
+     * which needs a connection from the pool, so it must not hold one meanwhile.
+     */
     @Override
-    @Transactional
     public void add(Film film) {
-        Film filmResult = filmRepository.save(film);
-        filmCache.put(filmResult.getId(), filmResult);
-        log.info(filmCache.toString());
+        // a new film takes its id from the sequence, an id sent by the client could overwrite another film
+        film.setId(null);
+        if (writeBehind != null) {
+            // the id is assigned when the insert is queued, the pages change once it is flushed,
+            // a read meanwhile gets the film from the queue
+            writeBehind.add(film);
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            Film filmResult = filmRepository.save(film);
+            cacheWrites.afterCommit(() -> filmPages.added(filmResult.getId()));
+            if (invalidationBus != null) {
+                invalidationBus.publishStructural(filmResult.getId());
+            }
+        });
     }
 
     @Override
-    @Transactional
     public void delete(Film film) {
-        filmRepository.delete(film);
-        filmCache.remove(film.getId());
-        log.info(filmCache.toString());
+        if (writeBehind != null) {
+            // the pages change once the film is really deleted
+            writeBehind.delete(film);
+            cacheWrites.remove(film.getId());
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            filmRepository.delete(film);
+            cacheWrites.remove(film.getId());
+            cacheWrites.afterCommit(() -> filmPages.removed(film.getId()));
+            if (invalidationBus != null) {
+                invalidationBus.publishStructural(film.getId());
+            }
+        });
     }
 
     @Override
-    @Transactional
     public void edit(Film film) {
-        filmRepository.save(film);
-        filmCache.put(film.getId(), film);
-        log.info(filmCache.toString());
+        if (film.getId() == null) {
+            add(film);
+            return;
+        }
+        if (writeBehind != null) {
+            // the other nodes are told once the edit is flushed
+            // dropped once the edit is queued, the next read gets it from the queue
+            writeBehind.edit(film);
+            cacheWrites.remove(film.getId());
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            Film filmResult = filmRepository.save(film);
+            if (invalidationBus != null) {
+                invalidationBus.publishChanged(film.getId());
+            }
+            // the id does not change, so neither do the cached pages
+            cacheWrites.remove(filmResult.getId());
+        });
     }
 
     @Override
     @Transactional
     public Film getById(int id) {
-        Film resultFilm = filmCache.get(id);
-        log.info(filmCache.toString());
-        if (resultFilm != null) {
-            return resultFilm;
+        Film resultFilm;
+        long finished = 0;
+        if (intFilmCache != null) {
+            // a hit neither boxes the id nor creates the loader
+            finished = intFilmCache.finishedLoads();
+            resultFilm = intFilmCache.intCache().get(id);
+            if (resultFilm != null) {
+                return resultFilm;
+            }
         }
-        Optional<Film> filmOptional = filmRepository.findById(id);
-        if (filmOptional.isPresent()) {
-            resultFilm = filmOptional.get();
-            filmCache.put(resultFilm.getId(), resultFilm);
+        // concurrent misses of the same film share one query
+        long[] stamp = {-1};
+        IntFunction<Film> loader = key -> {
+            stamp[0] = cacheWrites.stamp(key);
+            return loadFilm(key);
+        };
+        if (intFilmCache != null) {
+            resultFilm = intFilmCache.load(id, loader, finished);
+        } else {
+            resultFilm = filmCache.get(id, loader::apply);
+        }
+        if (stamp[0] >= 0) {
+            // this thread loaded the film, a write may have raced with the load
+            cacheWrites.validate(id, stamp[0]);
         }
         return resultFilm;
     }
 
+    @Override
+    public CompletableFuture<Film> getByIdAsync(int id) {
+        Film film = intFilmCache != null ? intFilmCache.intCache().get(id) : filmCache.get(id);
+        if (film != null) {
+            return CompletableFuture.completedFuture(film);
+        }
+        // concurrent misses share one load, which does not look the film up again
+        CompletableFuture<Film> load = new CompletableFuture<>();
+        CompletableFuture<Film> inFlight = asyncLoads.putIfAbsent(id, load);
+        if (inFlight == null) {
+            inFlight = load;
+            try {
+                filmLoader.execute(() -> {
+                    // unregistered before it completes, so a later miss does not get a stale result
+                    try {
+                        Film loaded = loadMissed(id);
+                        asyncLoads.remove(id, load);
+                        load.complete(loaded);
+                    } catch (RuntimeException | Error e) {
+                        asyncLoads.remove(id, load);
+                        load.completeExceptionally(e);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                asyncLoads.remove(id, load);
+                throw e;
+            }
+        }
+        // a caller completing its future does not complete the ones of the others
+        return inFlight.thenApply(Function.identity());
+    }
+
+    @Override
+    @Transactional
+    public List<Film> getByIds(Collection<Integer> ids) {
+        Map<Integer, Film> cached = filmCache.getAll(ids);
+
+        List<Integer> missing = new ArrayList<>();
+        for (Integer id : new LinkedHashSet<>(ids)) {
+            if (!cached.containsKey(id)) {
+                missing.add(id);
+            }
+        }
+        Map<Integer, Film> loaded = new HashMap<>();
+        if (!missing.isEmpty()) {
+            long[] stamps = new long[missing.size()];
+            for (int i = 0; i < stamps.length; i++) {
+                stamps[i] = cacheWrites.stamp(missing.get(i));
+            }
+            // one IN query for all misses
+            for (Film film : withPendingWrites(filmRepository.findAllById(missing))) {
+                loaded.put(film.getId(), film);
+            }
+            filmCache.putAll(loaded);
+            for (int i = 0; i < stamps.length; i++) {
+                if (loaded.containsKey(missing.get(i))) {
+                    cacheWrites.validate(missing.get(i), stamps[i]);
+                }
+            }
+        }
+
+        // films in the order of the requested ids, unknown ids are skipped
+        List<Film> result = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            Film film = cached.get(id);
+            if (film == null) {
+                film = loaded.get(id);
+            }
+            if (film != null) {
+                result.add(film);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Loads and caches a film the caller already missed, like a batch miss of {@link #getByIds(Collection)}.
+     */
+    private Film loadMissed(int id) {
+        long stamp = cacheWrites.stamp(id);
+        Film film = loadFilm(id);
+        if (film != null) {
+            filmCache.put(id, film);
+            cacheWrites.validate(id, stamp);
+        }
+        return film;
+    }
+
+    /**
+     * Returns the cache as an {@link IntCacheAdapter} if it is one, so hits can skip boxing the id.
+     * Decorators such as hot keys or expiration hide the adapter.
+     */
+    private static IntCacheAdapter<Film> intCache(Cache<Integer, Film> filmCache) {
+        return filmCache instanceof IntCacheAdapter ? (IntCacheAdapter<Film>) filmCache : null;
+    }
+
+    private Film loadFilm(int id) {
+        Film film = filmRepository.findById(id).orElse(null);
+        if (writeBehind == null) {
+            return film;
+        }
+        FilmWriteBehind.Write write = writeBehind.pendingWrite(id);
+        if (write == null) {
+            return film;
+        }
+        return write.isDelete() ? null : write.getFilm();
+    }
+
+    /**
+     * Replaces loaded films by their pending edits and drops the ones pending delete.
+     */
+    private List<Film> withPendingWrites(List<Film> films) {
+        if (writeBehind == null) {
+            return films;
+        }
+        List<Film> result = new ArrayList<>(films.size());
+        for (Film film : films) {
+            FilmWriteBehind.Write write = writeBehind.pendingWrite(film.getId());
+            if (write == null) {
+                result.add(film);
+            } else if (!write.isDelete()) {
+                result.add(write.getFilm());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Drops the flushed films from the cache, the next read loads them from the database.
+     * A load that read a row before the flush committed may have cached it once the pending write was gone,
+     * the removal drops it and rejects such a load still running. A dropped write is not left in the cache either.
+     */
+    private void onFlush(List<Film> added, List<Film> saved, List<Film> deleted) {
+        for (Film film : added) {
+            cacheWrites.remove(film.getId());
+            filmPages.added(film.getId());
+        }
+        for (Film film : saved) {
+            cacheWrites.remove(film.getId());
+        }
+        for (Film film : deleted) {
+            cacheWrites.remove(film.getId());
+            filmPages.removed(film.getId());
+        }
+        if (invalidationBus != null) {
+            for (Film film : added) {
+                invalidationBus.publishStructural(film.getId());
+            }
+            for (Film film : saved) {
+                invalidationBus.publishChanged(film.getId());
+            }
+            for (Film film : deleted) {
+                invalidationBus.publishStructural(film.getId());
+            }
+        }
+    }
+
+    /**
+     * Drops the films changed by another node, the next read loads them from the database.
+     */
+    private void onInvalidation(int[] changed, int[] structural) {
+        for (int id : changed) {
+            cacheWrites.remove(id);
+        }
+        for (int id : structural) {
+            cacheWrites.remove(id);
+            filmPages.changed(id);
+        }
+    }
+
 }
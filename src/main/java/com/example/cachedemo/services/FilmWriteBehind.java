@@ -0,0 +1,338 @@
+package com.example.cachedemo.services;
+
+import com.example.cachedemo.model.Film;
+import com.example.cachedemo.repositories.FilmRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Queues film writes and flushes them to the repository in batches.
+ * Writes of the same id are coalesced, only the last one reaches the database.
+ * New films get their id from the sequence when they are queued, so they can be cached before the insert.
+ * When the queue is full, writers wait for the next flush, so they must not hold a transaction meanwhile.
+ * A write that fails for another reason than a constraint violation stays queued and is retried
+ * with a growing delay. Pending writes are flushed on shutdown.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(value = "app.write-behind.enabled", havingValue = "true")
+public class FilmWriteBehind {
+
+    private final FilmRepository filmRepository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int capacity;
+    private final long retryDelay;
+
+    // last pending write per id, guarded by this
+    private final LinkedHashMap<Integer, Write> writes = new LinkedHashMap<>();
+
+    private final Object flushLock = new Object();
+    private volatile FlushListener flushListener;
+    // flushes in a row that left failed writes, guarded by flushLock
+    private int failures;
+    // System.nanoTime() before which the scheduled flush is skipped
+    private volatile long retryAt = System.nanoTime();
+
+    public FilmWriteBehind(FilmRepository filmRepository, EntityManager entityManager,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${app.write-behind.batch-size:50}") int batchSize,
+                           @Value("${app.write-behind.capacity:1000}") int capacity,
+                           @Value("${app.write-behind.retry-delay:1000}") long retryDelay) {
+        if (batchSize <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("batchSize <= 0 || capacity <= 0");
+        }
+        if (retryDelay <= 0) {
+            throw new IllegalArgumentException("retryDelay <= 0");
+        }
+        this.filmRepository = filmRepository;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.capacity = capacity;
+        this.retryDelay = retryDelay;
+    }
+
+    public void setFlushListener(FlushListener flushListener) {
+        this.flushListener = flushListener;
+    }
+
+    /**
+     * Queues the insert of a new film and assigns its id.
+     */
+    public void add(Film film) {
+        // outside the lock, the sequence may be read from the database
+        film.assignId(nextId(film));
+        synchronized (this) {
+            awaitCapacity();
+            writes.put(film.getId(), new Write(film, true, false));
+        }
+    }
+
+    /**
+     * Queues the update of a film. An edit of a film whose insert is pending becomes an update too,
+     * the insert may already be in flight. An update of a missing row inserts it with its id.
+     */
+    public synchronized void edit(Film film) {
+        Write pending = writes.get(film.getId());
+        if (pending == null) {
+            awaitCapacity();
+        } else if (pending.insert || pending.film.hasAssignedId()) {
+            // the row may be missing yet, its insert must keep the id
+            film.assignId(film.getId());
+        }
+        // the older write is replaced but keeps its place in the queue
+        writes.put(film.getId(), new Write(film, false, false));
+    }
+
+    public synchronized void delete(Film film) {
+        if (!writes.containsKey(film.getId())) {
+            awaitCapacity();
+        }
+        writes.put(film.getId(), new Write(film, false, true));
+    }
+
+    /**
+     * Returns the pending write of the film or null if there is none.
+     */
+    public synchronized Write pendingWrite(int id) {
+        return writes.get(id);
+    }
+
+    public synchronized int pendingCount() {
+        return writes.size();
+    }
+
+    /**
+     * Flushes unless a failed flush is waiting for its retry.
+     */
+    @Scheduled(fixedDelayString = "${app.write-behind.delay:200}")
+    public void scheduledFlush() {
+        if (System.nanoTime() - retryAt >= 0) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes everything pending, batch by batch. Writes that failed are left in the queue.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            List<Film> saves = new ArrayList<>();
+            List<Film> deletes = new ArrayList<>();
+            List<Film> added = new ArrayList<>();
+            Map<Integer, Write> batch = new LinkedHashMap<>();
+            // writes that failed in this flush, skipped until it is over
+            Map<Integer, Write> failed = new HashMap<>();
+            while (takeBatch(batch, failed)) {
+                for (Write write : batch.values()) {
+                    (write.insert ? added : write.delete ? deletes : saves).add(write.film);
+                }
+                for (Film film : write(saves, added, deletes)) {
+                    failed.put(film.getId(), batch.get(film.getId()));
+                }
+                completeBatch(batch, failed);
+
+                // a failed write is still pending, the listener hears of it once it is written
+                added.removeIf(film -> failed.containsKey(film.getId()));
+                saves.removeIf(film -> failed.containsKey(film.getId()));
+                deletes.removeIf(film -> failed.containsKey(film.getId()));
+                FlushListener listener = flushListener;
+                if (listener != null) {
+                    listener.onFlush(added, saves, deletes);
+                }
+                saves.clear();
+                deletes.clear();
+                added.clear();
+                batch.clear();
+            }
+            if (failed.isEmpty()) {
+                failures = 0;
+            } else {
+                // doubled up to 32 times the retry delay
+                long delay = retryDelay << Math.min(failures, 5);
+                failures++;
+                retryAt = System.nanoTime() + delay * 1_000_000;
+                log.warn("{} writes failed, retrying in {} ms", failed.size(), delay);
+            }
+        }
+    }
+
+    /**
+     * Flushes the pending writes before the application stops, retrying the failed ones a few times.
+     */
+    @PreDestroy
+    public void shutdown() {
+        for (int attempt = 0; attempt < 5; attempt++) {
+            flush();
+            if (pendingCount() == 0) {
+                return;
+            }
+            try {
+                Thread.sleep(retryDelay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        log.error("Lost {} pending writes on shutdown", pendingCount());
+    }
+
+    private synchronized boolean takeBatch(Map<Integer, Write> batch, Map<Integer, Write> failed) {
+        Iterator<Map.Entry<Integer, Write>> it = writes.entrySet().iterator();
+        while (batch.size() < batchSize && it.hasNext()) {
+            Map.Entry<Integer, Write> entry = it.next();
+            // a failed film written again meanwhile is tried with its new write
+            if (failed.get(entry.getKey()) != entry.getValue()) {
+                batch.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return !batch.isEmpty();
+    }
+
+    /**
+     * Drops the written entries from the queue, entries written again meanwhile stay for the next batch,
+     * failed entries stay for the next flush.
+     */
+    private synchronized void completeBatch(Map<Integer, Write> batch, Map<Integer, Write> failed) {
+        for (Map.Entry<Integer, Write> entry : batch.entrySet()) {
+            if (failed.get(entry.getKey()) != entry.getValue()) {
+                writes.remove(entry.getKey(), entry.getValue());
+            }
+        }
+        notifyAll();
+    }
+
+    /**
+     * Returns the films whose writes failed and stay queued.
+     */
+    private List<Film> write(List<Film> saves, List<Film> added, List<Film> deletes) {
+        try {
+            transactionTemplate.execute(status -> {
+                filmRepository.saveAll(saves);
+                added.forEach(this::insert);
+                if (!deletes.isEmpty()) {
+                    filmRepository.deleteInBatch(deletes);
+                }
+                return null;
+            });
+            return Collections.emptyList();
+        } catch (RuntimeException e) {
+            // retry one by one so that a single bad row does not lose the whole batch
+            log.warn("Batch of {} writes failed, retrying one by one",
+                    saves.size() + added.size() + deletes.size(), e);
+            List<Film> failed = new ArrayList<>();
+            for (Film film : saves) {
+                writeOne(film, "save", filmRepository::save, failed);
+            }
+            for (Film film : added) {
+                // the ids come from the sequence, so they stay valid after the rollback
+                writeOne(film, "insert", this::insert, failed);
+            }
+            for (Film film : deletes) {
+                writeOne(film, "delete", f -> filmRepository.deleteInBatch(Collections.singletonList(f)), failed);
+            }
+            return failed;
+        }
+    }
+
+    /**
+     * Writes a single film. A write the database rejects is dropped, it would fail again.
+     * Any other failure, such as a lost connection, may pass, so the film is added to the failed ones and retried.
+     */
+    private void writeOne(Film film, String operation, Consumer<Film> write, List<Film> failed) {
+        try {
+            transactionTemplate.execute(status -> {
+                write.accept(film);
+                return null;
+            });
+        } catch (DataIntegrityViolationException e) {
+            log.error("Dropped {} of {}", operation, film, e);
+        } catch (RuntimeException e) {
+            log.warn("Failed {} of {}, keeping it queued", operation, film, e);
+            failed.add(film);
+        }
+    }
+
+    /**
+     * Inserts the film with the id it got when it was queued.
+     * Session.save() does not look up the row first, unlike the merge of the repository for a film with an id.
+     */
+    private void insert(Film film) {
+        entityManager.unwrap(Session.class).save(film);
+    }
+
+    private Integer nextId(Film film) {
+        return transactionTemplate.execute(status -> {
+            SharedSessionContractImplementor session = entityManager.unwrap(SharedSessionContractImplementor.class);
+            return (Integer) session.getEntityPersister(Film.class.getName(), film)
+                    .getIdentifierGenerator().generate(session, film);
+        });
+    }
+
+    private void awaitCapacity() {
+        boolean interrupted = false;
+        while (writes.size() >= capacity) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                // the write must not be lost, keep waiting and restore the flag afterwards
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Pending write of a film, an insert or an update of the film or a delete.
+     */
+    public static final class Write {
+        private final Film film;
+        private final boolean insert;
+        private final boolean delete;
+
+        private Write(Film film, boolean insert, boolean delete) {
+            this.film = film;
+            this.insert = insert;
+            this.delete = delete;
+        }
+
+        public Film getFilm() {
+            return film;
+        }
+
+        public boolean isDelete() {
+            return delete;
+        }
+    }
+
+    /**
+     * Called after each flushed batch with the inserted, the updated and the deleted films.
+     * A write dropped after an error is passed as well, so the listener must not assume it reached the database.
+     */
+    public interface FlushListener {
+        void onFlush(List<Film> added, List<Film> saved, List<Film> deleted);
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.cachedemo.simulator;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Belady's optimal policy: on overflow evict the entry whose next access is furthest in the future.
+ * It is the upper bound of the hit ratio any online policy can reach (exact for unit weights,
+ * the usual furthest-next-use heuristic for weighted traces).
+ */
+final class BeladyPolicy {
+
+    private static final long NEVER = Long.MAX_VALUE;
+    // next access indexes are mapped in windows of this many events
+    private static final int WINDOW = 1 << 24;
+
+    private BeladyPolicy() {
+    }
+
+    /**
+     * Writes, for every event, the index of the next event with the same key (or {@link #NEVER}).
+     * The trace is walked backwards window by window through memory mapping.
+     */
+    static void buildNextAccess(Path trace, Path nextAccess) throws IOException {
+        long events = TraceFile.events(trace);
+        IntLongMap lastSeen = new IntLongMap(1024, NEVER);
+        try (FileChannel in = FileChannel.open(trace, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(nextAccess, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (long end = events; end > 0; end -= WINDOW) {
+                long start = Math.max(0, end - WINDOW);
+                int length = (int) (end - start);
+                MappedByteBuffer keys = in.map(FileChannel.MapMode.READ_ONLY,
+                        start * TraceFile.EVENT_SIZE, (long) length * TraceFile.EVENT_SIZE);
+                keys.order(ByteOrder.LITTLE_ENDIAN);
+                LongBuffer next = out.map(FileChannel.MapMode.READ_WRITE, start * 8, (long) length * 8)
+                        .order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+                for (int i = length - 1; i >= 0; i--) {
+                    int key = keys.getInt(i * TraceFile.EVENT_SIZE);
+                    next.put(i, lastSeen.put(key, start + i));
+                }
+            }
+        }
+    }
+
+    static long simulate(Path trace, Path nextAccess, long maxSize) throws IOException {
+        Simulation simulation = new Simulation(maxSize);
+        try (FileChannel next = FileChannel.open(nextAccess, StandardOpenOption.READ)) {
+            long events = TraceFile.events(trace);
+            long[] position = new long[1];
+            LongBuffer[] window = new LongBuffer[1];
+            TraceFile.forEach(trace, (key, weight) -> {
+                long index = position[0]++;
+                if (index % WINDOW == 0) {
+                    try {
+                        long length = Math.min(WINDOW, events - index);
+                        window[0] = next.map(FileChannel.MapMode.READ_ONLY, index * 8, length * 8)
+                                .order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+                simulation.access(key, weight, window[0].get((int) (index % WINDOW)));
+            });
+        }
+        return simulation.hits;
+    }
+
+    private static final class Simulation {
+        private final long maxSize;
+        private final Map<Integer, Resident> residents = new HashMap<>();
+        // furthest next access first, stale items are skipped lazily
+        private final PriorityQueue<Resident> queue = new PriorityQueue<>((a, b) -> Long.compare(b.next, a.next));
+        private long size;
+        private long hits;
+
+        private Simulation(long maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        private void access(int key, int weight, long next) {
+            Resident resident = residents.get(key);
+            if (resident != null) {
+                hits++;
+                resident.stale = true;
+                resident = new Resident(key, resident.weight, next);
+                residents.put(key, resident);
+                queue.add(resident);
+                compactIfNeeded();
+                return;
+            }
+            if (weight > maxSize || next == NEVER) {
+                // would be the first victim anyway
+                return;
+            }
+            resident = new Resident(key, weight, next);
+            residents.put(key, resident);
+            queue.add(resident);
+            size += weight;
+            while (size > maxSize) {
+                Resident victim = queue.poll();
+                if (!victim.stale) {
+                    residents.remove(victim.key);
+                    size -= victim.weight;
+                }
+            }
+        }
+
+        private void compactIfNeeded() {
+            if (queue.size() > 4 * residents.size() + 1024) {
+                queue.removeIf(resident -> resident.stale);
+            }
+        }
+    }
+
+    private static final class Resident {
+        private final int key;
+        private final int weight;
+        private final long next;
+        private boolean stale;
+
+        private Resident(int key, int weight, long next) {
+            this.key = key;
+            this.weight = weight;
+            this.next = next;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.cachedemo.simulator;
+
+import com.example.cachedemo.cache.Cache;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Replays an access trace through the cache engines and Belady's optimum and prints hit ratio per cache size as CSV.
+ * <p>
+ * Usage: HitRatioSimulator trace sizes [policies] [output.csv]
+ * <ul>
+ * <li>trace - text file with "key" or "key weight" per line, or a binary trace ending with .bin</li>
+ * <li>sizes - comma separated max sizes, in weight units</li>
+ * <li>policies - comma separated engine profile names, all engines and opt by default</li>
+ * </ul>
+ * Every policy and size runs as its own task on all cores, each task streams the trace from disk.
+ * <p>
+ * mvn -P simulator compile exec:java -Dexec.args="trace.txt 100,1000"
+ */
+public class HitRatioSimulator {
+
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+        if (args.length < 2) {
+            System.err.println("Usage: HitRatioSimulator trace sizes [policies] [output.csv]");
+            System.exit(1);
+        }
+        Path trace = Paths.get(args[0]);
+        long[] sizes = Arrays.stream(args[1].split(",")).mapToLong(size -> Long.parseLong(size.trim())).toArray();
+        List<String> policies = args.length > 2 ? Arrays.asList(args[2].split(",")) : Policies.names();
+
+        List<Path> temporary = new ArrayList<>();
+        try (PrintStream out = args.length > 3 ? new PrintStream(Files.newOutputStream(Paths.get(args[3]))) : System.out) {
+            Path binary = binaryTrace(trace, temporary);
+            Path nextAccess = policies.contains(Policies.OPT) ? nextAccess(binary, temporary) : null;
+
+            long events = TraceFile.events(binary);
+            ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+            try {
+                List<Future<Long>> results = new ArrayList<>();
+                for (String policy : policies) {
+                    for (long size : sizes) {
+                        results.add(executor.submit(() -> simulate(policy.trim(), size, binary, nextAccess)));
+                    }
+                }
+
+                out.println("policy,cacheSize,events,hits,hitRatio");
+                int task = 0;
+                for (String policy : policies) {
+                    for (long size : sizes) {
+                        long hits = results.get(task++).get();
+                        out.println(String.format(Locale.ROOT, "%s,%d,%d,%d,%.4f",
+                                policy.trim(), size, events, hits, events != 0 ? (double) hits / events : 0));
+                    }
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        } finally {
+            for (Path path : temporary) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private static Path binaryTrace(Path trace, List<Path> temporary) throws IOException {
+        if (trace.getFileName().toString().endsWith(".bin")) {
+            return trace;
+        }
+        Path binary = Files.createTempFile("trace", ".bin");
+        temporary.add(binary);
+        TraceFile.convert(trace, binary);
+        return binary;
+    }
+
+    private static Path nextAccess(Path binary, List<Path> temporary) throws IOException {
+        Path nextAccess = Files.createTempFile("trace", ".next");
+        temporary.add(nextAccess);
+        BeladyPolicy.buildNextAccess(binary, nextAccess);
+        return nextAccess;
+    }
+
+    private static long simulate(String policy, long size, Path trace, Path nextAccess) throws IOException {
+        if (Policies.OPT.equals(policy)) {
+            return BeladyPolicy.simulate(trace, nextAccess, size);
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Cache size " + size + " is too large for " + policy);
+        }
+        Cache<Integer, Integer> cache = Policies.create(policy, (int) size);
+        long[] hits = new long[1];
+        TraceFile.forEach(trace, (key, weight) -> {
+            if (cache.get(key) != null) {
+                hits[0]++;
+            } else {
+                cache.put(key, weight);
+            }
+        });
+        return hits[0];
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.cachedemo.simulator;
+
+/**
+ * Primitive int to long map with open addressing, so a trace of millions of keys is not boxed.
+ * Entries are never removed. Not thread safe.
+ */
+final class IntLongMap {
+
+    private int[] keys;
+    private long[] values;
+    private boolean[] used;
+    private int mask;
+    private int size;
+    private final long missing;
+
+    /**
+     * @param missing returned for keys that are not in the map
+     */
+    IntLongMap(int initialCapacity, long missing) {
+        this.missing = missing;
+        allocate(Integer.highestOneBit(Math.max(8, initialCapacity)) << 1);
+    }
+
+    /**
+     * Maps the key to the value and returns the previous value or the missing value.
+     */
+    long put(int key, long value) {
+        int index = indexOf(key);
+        if (used[index]) {
+            long previous = values[index];
+            values[index] = value;
+            return previous;
+        }
+        used[index] = true;
+        keys[index] = key;
+        values[index] = value;
+        // keep the load factor at or below 0.5
+        if (++size > keys.length >>> 1) {
+            grow();
+        }
+        return missing;
+    }
+
+    long get(int key) {
+        int index = indexOf(key);
+        return used[index] ? values[index] : missing;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private int indexOf(int key) {
+        int index = hash(key) & mask;
+        while (used[index] && keys[index] != key) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        long[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(oldKeys.length << 1);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                int index = indexOf(oldKeys[i]);
+                used[index] = true;
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new long[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
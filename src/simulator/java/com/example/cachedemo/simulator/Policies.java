@@ -0,0 +1,100 @@
+package com.example.cachedemo.simulator;
+
+import com.example.cachedemo.cache.Cache;
+import com.example.cachedemo.cache.Cache2QImpl;
+import com.example.cachedemo.cache.CacheARCImpl;
+import com.example.cachedemo.cache.CacheBufferedImpl;
+import com.example.cachedemo.cache.CacheGhost2QImpl;
+import com.example.cachedemo.cache.CacheLRUImpl;
+import com.example.cachedemo.cache.CacheStripedImpl;
+import com.example.cachedemo.cache.CacheTinyLfuImpl;
+import com.example.cachedemo.cache.IntCacheAdapter;
+import com.example.cachedemo.cache.IntCacheLRUImpl;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * Cache engines under simulation, by profile name.
+ * The cached value is the weight of the event, so every engine is weighed by the trace.
+ */
+final class Policies {
+
+    static final String OPT = "opt";
+
+    private static final Map<String, IntFunction<Cache<Integer, Integer>>> ENGINES = new LinkedHashMap<>();
+
+    static {
+        ENGINES.put("lru", maxSize -> new CacheLRUImpl<Integer, Integer>(maxSize) {
+            @Override
+            protected int sizeOf(Integer key, Integer weight) {
+                return weight;
+            }
+        });
+        ENGINES.put("2q", Policies::weighted2Q);
+        ENGINES.put("striped", maxSize -> new CacheStripedImpl<Integer, Integer>(maxSize) {
+            @Override
+            protected int sizeOf(Integer key, Integer weight) {
+                return weight;
+            }
+        });
+        ENGINES.put("2q-buffered", maxSize -> new CacheBufferedImpl<>(weighted2Q(maxSize)));
+        ENGINES.put("tinylfu", maxSize -> new CacheTinyLfuImpl<Integer, Integer>(maxSize) {
+            @Override
+            protected int sizeOf(Integer key, Integer weight) {
+                return weight;
+            }
+        });
+        ENGINES.put("arc", maxSize -> new CacheARCImpl<Integer, Integer>(maxSize) {
+            @Override
+            protected int sizeOf(Integer key, Integer weight) {
+                return weight;
+            }
+        });
+        ENGINES.put("2q-ghost", maxSize -> new CacheGhost2QImpl<Integer, Integer>(maxSize) {
+            @Override
+            protected int sizeOf(Integer key, Integer weight) {
+                return weight;
+            }
+        });
+        ENGINES.put("int-lru", maxSize -> new IntCacheAdapter<>(new IntCacheLRUImpl<Integer>(maxSize) {
+            @Override
+            protected int sizeOf(int key, Integer weight) {
+                return weight;
+            }
+        }));
+    }
+
+    private Policies() {
+    }
+
+    /**
+     * All engine names followed by {@link #OPT}.
+     * lru-buffered and offheap are left out, they evict exactly like lru.
+     */
+    static List<String> names() {
+        String[] names = ENGINES.keySet().toArray(new String[ENGINES.size() + 1]);
+        names[names.length - 1] = OPT;
+        return Arrays.asList(names);
+    }
+
+    static Cache<Integer, Integer> create(String name, int maxSize) {
+        IntFunction<Cache<Integer, Integer>> factory = ENGINES.get(name);
+        if (factory == null) {
+            throw new IllegalArgumentException("Unknown policy " + name);
+        }
+        return factory.apply(maxSize);
+    }
+
+    private static Cache<Integer, Integer> weighted2Q(int maxSize) {
+        return new Cache2QImpl<Integer, Integer>(maxSize) {
+            @Override
+            protected int sizeOf(Integer key, Integer weight) {
+                return weight;
+            }
+        };
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.cachedemo.simulator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Access trace in binary form: one event is a key (int) and a weight (int), little endian.
+ * Text traces (one "key" or "key weight" per line) are converted once, so every policy
+ * streams the compact binary file instead of parsing text again.
+ */
+final class TraceFile {
+
+    static final int EVENT_SIZE = 8;
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    @FunctionalInterface
+    interface EventConsumer {
+        void accept(int key, int weight);
+    }
+
+    private TraceFile() {
+    }
+
+    static long events(Path binary) throws IOException {
+        return Files.size(binary) / EVENT_SIZE;
+    }
+
+    /**
+     * Parses a text trace into a binary one without creating a String per line.
+     */
+    static void convert(Path text, Path binary) throws IOException {
+        try (InputStream in = Files.newInputStream(text);
+             FileChannel out = FileChannel.open(binary, StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            TextParser parser = new TextParser(out);
+            byte[] chunk = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                for (int i = 0; i < read; i++) {
+                    parser.feed(chunk[i]);
+                }
+            }
+            parser.feed('\n');
+            flush(parser.buffer, out);
+        }
+    }
+
+    /**
+     * Streams the events of a binary trace in order.
+     */
+    static void forEach(Path binary, EventConsumer consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(binary, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (true) {
+                int read = channel.read(buffer);
+                buffer.flip();
+                while (buffer.remaining() >= EVENT_SIZE) {
+                    consumer.accept(buffer.getInt(), buffer.getInt());
+                }
+                buffer.compact();
+                if (read == -1) {
+                    if (buffer.position() > 0) {
+                        throw new IOException("Truncated trace " + binary);
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
+    private static void flush(ByteBuffer buffer, FileChannel out) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static final class TextParser {
+        private final FileChannel out;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private final long[] numbers = new long[2];
+        private int count;
+        private long number;
+        private boolean inNumber;
+        private boolean negative;
+        private long line = 1;
+
+        private TextParser(FileChannel out) {
+            this.out = out;
+        }
+
+        private void feed(int c) throws IOException {
+            if (c >= '0' && c <= '9') {
+                number = number * 10 + (c - '0');
+                inNumber = true;
+                return;
+            }
+            if (c == '-' && !inNumber) {
+                negative = true;
+                return;
+            }
+            if (inNumber) {
+                if (count == numbers.length) {
+                    throw new IOException("More than two numbers at line " + line);
+                }
+                numbers[count++] = negative ? -number : number;
+                number = 0;
+                inNumber = false;
+                negative = false;
+            }
+            if (c == '\n') {
+                if (count > 0) {
+                    if (buffer.remaining() < EVENT_SIZE) {
+                        flush(buffer, out);
+                    }
+                    buffer.putInt((int) numbers[0]);
+                    buffer.putInt(count > 1 ? (int) numbers[1] : 1);
+                    count = 0;
+                }
+                line++;
+            }
+        }
+    }
+}
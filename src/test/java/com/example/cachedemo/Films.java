@@ -0,0 +1,16 @@
+package com.example.cachedemo;
+
+import com.example.cachedemo.model.Film;
+
+/**
+ * Films for the tests, which differ only in their id and title.
+ */
+public final class Films {
+
+    private Films() {
+    }
+
+    public static Film film(int id, String title) {
+        return Film.builder().id(id).title(title).year(1972).genre("drama").watched(true).build();
+    }
+}
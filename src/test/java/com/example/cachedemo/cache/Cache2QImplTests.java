@@ -0,0 +1,82 @@
+package com.example.cachedemo.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class Cache2QImplTests {
+
+    @Test
+    void shrinkingEvictsAtMostAStepPerOperation() {
+        Cache2QImpl<Integer, Integer> cache = filled(100);
+        List<Integer> evicted = new ArrayList<>();
+        cache.setEvictionListener((key, value) -> evicted.add(key));
+        int size = cache.size();
+
+        cache.resize(8);
+        assertEquals(8, cache.maxSize());
+        assertTrue(evicted.size() <= Cache2QImpl.RESIZE_STEP);
+        int operations = 1;
+        while (cache.size() > cache.maxSize()) {
+            int before = evicted.size();
+            cache.get(-1);
+            assertTrue(evicted.size() - before <= Cache2QImpl.RESIZE_STEP);
+            operations++;
+        }
+
+        assertEquals(size - cache.size(), evicted.size());
+        assertTrue(operations >= (size - 8) / Cache2QImpl.RESIZE_STEP, "operations " + operations);
+    }
+
+    @Test
+    void hotEntriesSurviveTheShrink() {
+        Cache2QImpl<Integer, Integer> cache = filled(100);
+
+        cache.resize(8);
+        for (int i = 0; i < 100; i++) {
+            cache.get(-1);
+        }
+
+        // Am gives up its least recently used entries
+        assertNotNull(cache.get(74));
+        assertNull(cache.get(50));
+        assertTrue(cache.size() <= 8);
+    }
+
+    @Test
+    void growingTakesEffectAtOnce() {
+        Cache2QImpl<Integer, Integer> cache = filled(100);
+        List<Integer> evicted = new ArrayList<>();
+        cache.setEvictionListener((key, value) -> evicted.add(key));
+        int size = cache.size();
+
+        cache.resize(200);
+        for (int key = 1000; key < 1000 + size; key++) {
+            cache.put(key, key);
+        }
+
+        assertTrue(evicted.isEmpty());
+        assertEquals(2 * size, cache.size());
+        assertEquals(200, cache.maxSize());
+    }
+
+    /**
+     * Every key from 0 to max size written and then read once, which leaves entries in A1in and Am.
+     */
+    private static Cache2QImpl<Integer, Integer> filled(int maxSize) {
+        Cache2QImpl<Integer, Integer> cache = new Cache2QImpl<>(maxSize);
+        for (int key = 0; key < maxSize; key++) {
+            cache.put(key, key);
+        }
+        for (int key = 0; key < maxSize; key++) {
+            cache.get(key);
+        }
+        return cache;
+    }
+}
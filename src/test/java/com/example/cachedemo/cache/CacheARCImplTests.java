@@ -0,0 +1,191 @@
+package com.example.cachedemo.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CacheARCImplTests {
+
+    @Test
+    void secondAccessMovesEntryToFrequencyQueue() {
+        CacheARCImpl<Integer, String> cache = new CacheARCImpl<>(4);
+        for (int i = 0; i < 4; i++) {
+            cache.put(i, "value" + i);
+        }
+        assertEquals("value0", cache.get(0));
+
+        assertEquals(3, cache.recentSize());
+        assertEquals(1, cache.frequentSize());
+    }
+
+    @Test
+    void updateMovesEntryToFrequencyQueue() {
+        CacheARCImpl<Integer, String> cache = new CacheARCImpl<>(4);
+        for (int i = 0; i < 4; i++) {
+            cache.put(i, "value" + i);
+        }
+        assertEquals("value0", cache.put(0, "value0 updated"));
+
+        assertEquals(3, cache.recentSize());
+        assertEquals(1, cache.frequentSize());
+    }
+
+    @Test
+    void newEntryIsNotEvictedByItsOwnInsert() {
+        CacheARCImpl<Integer, String> cache = new CacheARCImpl<>(4);
+        for (int i = 0; i < 4; i++) {
+            cache.put(i, "value" + i);
+        }
+        for (int i = 0; i < 4; i++) {
+            cache.get(i);
+        }
+        assertEquals(0, cache.targetRecentSize());
+
+        cache.put(100, "value100");
+        assertEquals("value100", cache.get(100));
+        assertEquals(4, cache.size());
+    }
+
+    @Test
+    void recentGhostHitGrowsRecencyTarget() {
+        CacheARCImpl<Integer, String> cache = frequentAndRecent();
+        // T1 is over its target of 0, so 2 is evicted into the recent ghost queue
+        cache.put(4, "value4");
+        assertNull(cache.get(2));
+
+        cache.put(2, "value2");
+        assertEquals(1, cache.targetRecentSize());
+        assertEquals("value2", cache.get(2));
+        assertEquals(3, cache.frequentSize());
+    }
+
+    @Test
+    void frequentGhostHitShrinksRecencyTarget() {
+        CacheARCImpl<Integer, String> cache = frequentAndRecent();
+        cache.put(4, "value4");
+        // target 1, 3 is evicted to make room in T1
+        cache.put(2, "value2");
+        // T1 is at its target, so the LRU entry of T2 is evicted
+        cache.put(5, "value5");
+        assertNull(cache.get(0));
+
+        cache.put(0, "value0");
+        assertEquals(0, cache.targetRecentSize());
+        assertEquals("value0", cache.get(0));
+    }
+
+    /**
+     * Max size 4 with 0 and 1 in T2, 2 and 3 in T1 and a target of 0 for T1.
+     */
+    private CacheARCImpl<Integer, String> frequentAndRecent() {
+        CacheARCImpl<Integer, String> cache = new CacheARCImpl<>(4);
+        for (int i = 0; i < 4; i++) {
+            cache.put(i, "value" + i);
+        }
+        cache.get(0);
+        cache.get(1);
+        return cache;
+    }
+
+    @Test
+    void frequentEntriesSurviveAScan() {
+        CacheARCImpl<Integer, String> cache = new CacheARCImpl<>(10);
+        for (int i = 0; i < 5; i++) {
+            cache.put(i, "hot" + i);
+            cache.get(i);
+        }
+        for (int i = 100; i < 1000; i++) {
+            cache.put(i, "scan" + i);
+        }
+
+        for (int i = 0; i < 5; i++) {
+            assertNotNull(cache.get(i), "hot key " + i);
+        }
+    }
+
+    @Test
+    void evictionsAreReportedAndSizeStaysWithinMax() {
+        CacheARCImpl<Integer, String> cache = new CacheARCImpl<>(50);
+        List<Integer> evicted = new ArrayList<>();
+        cache.setEvictionListener((key, value) -> evicted.add(key));
+        Random random = new Random(7);
+        int puts = 0;
+        for (int i = 0; i < 20_000; i++) {
+            int key = (int) Math.abs(random.nextGaussian() * 60);
+            switch (random.nextInt(4)) {
+                case 0:
+                    if (cache.put(key, "value" + key) == null) {
+                        puts++;
+                    }
+                    break;
+                case 1:
+                    if (cache.remove(key) != null) {
+                        puts--;
+                    }
+                    break;
+                default:
+                    cache.get(key);
+            }
+            assertTrue(cache.size() <= 50, "size " + cache.size());
+            assertTrue(cache.targetRecentSize() >= 0 && cache.targetRecentSize() <= 50);
+        }
+        assertEquals(puts - evicted.size(), cache.size());
+    }
+
+    @Test
+    void resizeEvictsDownToTheNewMaxSize() {
+        CacheARCImpl<Integer, String> cache = new CacheARCImpl<>(10);
+        for (int i = 0; i < 10; i++) {
+            cache.put(i, "value" + i);
+        }
+        cache.resize(4);
+
+        assertEquals(4, cache.size());
+        assertEquals(4, cache.maxSize());
+        assertNotNull(cache.get(9));
+        assertThrows(IllegalArgumentException.class, () -> cache.resize(0));
+    }
+
+    @Test
+    void hitsMissesAndEvictionsAreCounted() {
+        CacheARCImpl<Integer, String> cache = frequentAndRecent();
+        cache.put(4, "value4");
+        cache.get(2);
+
+        assertEquals(2, cache.hitCount());
+        assertEquals(1, cache.missCount());
+        assertEquals(1, cache.stats().evictionCount(CacheARCImpl.QUEUE_RECENT));
+        assertEquals(0, cache.stats().evictionCount(CacheARCImpl.QUEUE_FREQUENT));
+    }
+
+    @Test
+    void restoredSnapshotKeepsTheQueues() {
+        CacheARCImpl<Integer, String> cache = frequentAndRecent();
+        List<SnapshotEntry<Integer, String>> snapshot = cache.snapshot();
+        assertEquals(CacheARCImpl.QUEUE_RECENT, snapshot.get(0).getQueue());
+        assertEquals(2, (int) snapshot.get(0).getKey());
+
+        CacheARCImpl<Integer, String> restored = new CacheARCImpl<>(4);
+        restored.restore(snapshot);
+
+        assertEquals(2, restored.recentSize());
+        assertEquals(2, restored.frequentSize());
+        assertEquals("value0", restored.get(0));
+    }
+
+    @Test
+    void nullKeysAndValuesAreRejected() {
+        CacheARCImpl<Integer, String> cache = new CacheARCImpl<>(10);
+        assertThrows(NullPointerException.class, () -> cache.get(null));
+        assertThrows(NullPointerException.class, () -> cache.put(1, null));
+        assertThrows(NullPointerException.class, () -> cache.remove(null));
+    }
+}
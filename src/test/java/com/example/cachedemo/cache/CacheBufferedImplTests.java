@@ -0,0 +1,142 @@
+package com.example.cachedemo.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CacheBufferedImplTests {
+
+    @Test
+    void recordedReadsReorderThePolicyBeforeTheNextWrite() {
+        CacheBufferedImpl<Integer, String> cache = new CacheBufferedImpl<>(new CacheLRUImpl<>(3));
+        cache.put(1, "one");
+        cache.put(2, "two");
+        cache.put(3, "three");
+        assertEquals("one", cache.get(1));
+
+        cache.put(4, "four");
+
+        assertNull(cache.get(2));
+        assertEquals("one", cache.get(1));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    void policyEvictionsLeaveTheDataMapAndAreReported() {
+        CacheBufferedImpl<Integer, Integer> cache = new CacheBufferedImpl<>(new CacheLRUImpl<>(10));
+        List<Integer> evicted = new ArrayList<>();
+        cache.setEvictionListener((key, value) -> evicted.add(key));
+
+        for (int i = 0; i < 15; i++) {
+            cache.put(i, i);
+        }
+
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), evicted);
+        assertEquals(5, cache.stats().evictionCount());
+        for (int i = 0; i < 5; i++) {
+            assertNull(cache.get(i));
+        }
+    }
+
+    @Test
+    void replayedReadsAreNotCountedAsHits() {
+        CacheBufferedImpl<Integer, Integer> cache = new CacheBufferedImpl<>(new CacheLRUImpl<>(10));
+        cache.put(1, 1);
+        for (int i = 0; i < 1000; i++) {
+            cache.get(1);
+        }
+        cache.get(2);
+        // drains the buffers into the policy
+        cache.put(3, 3);
+
+        assertEquals(1000, cache.stats().hitCount());
+        assertEquals(1, cache.stats().missCount());
+    }
+
+    @Test
+    void removeAndEvictAllClearBothMaps() {
+        CacheBufferedImpl<Integer, Integer> cache = new CacheBufferedImpl<>(new CacheLRUImpl<>(10));
+        cache.put(1, 1);
+        cache.put(2, 2);
+
+        assertEquals(Integer.valueOf(1), cache.remove(1));
+        assertNull(cache.get(1));
+        assertEquals(1, cache.size());
+
+        cache.evictAll();
+        assertNull(cache.get(2));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void snapshotIsSupportedIfThePolicySupportsIt() {
+        assertTrue(SnapshotSupport.supports(new CacheBufferedImpl<>(new CacheLRUImpl<>(10))));
+        assertFalse(SnapshotSupport.supports(new CacheBufferedImpl<>(new CacheStripedImpl<>(10))));
+    }
+
+    @Test
+    void restoreKeepsWhatFitsIntoThePolicy() {
+        CacheBufferedImpl<Integer, Integer> source = new CacheBufferedImpl<>(new CacheLRUImpl<>(10));
+        for (int i = 0; i < 10; i++) {
+            source.put(i, i);
+        }
+        CacheBufferedImpl<Integer, Integer> target = new CacheBufferedImpl<>(new CacheLRUImpl<>(5));
+
+        target.restore(source.snapshot());
+
+        assertEquals(5, target.size());
+        for (int i = 0; i < 5; i++) {
+            assertNull(target.get(i));
+        }
+        for (int i = 5; i < 10; i++) {
+            assertEquals(Integer.valueOf(i), target.get(i));
+        }
+    }
+
+    @Test
+    void dataMapAndPolicyAgreeAfterConcurrentAccess() throws InterruptedException {
+        CacheBufferedImpl<Integer, Integer> cache = new CacheBufferedImpl<>(new CacheLRUImpl<>(50));
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 50_000; i++) {
+                    int key = random.nextInt(200);
+                    int operation = random.nextInt(10);
+                    if (operation == 0) {
+                        cache.remove(key);
+                    } else if (operation < 4) {
+                        cache.put(key, key);
+                    } else {
+                        cache.get(key);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(20));
+            assertFalse(thread.isAlive());
+        }
+
+        // replayed reads do not evict from an LRU policy, so counting does not change the content
+        int cached = 0;
+        for (int i = 0; i < 200; i++) {
+            if (cache.get(i) != null) {
+                cached++;
+            }
+        }
+        assertEquals(cache.size(), cached);
+        assertTrue(cache.size() <= 50);
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.cachedemo.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CacheExpiringImplTests {
+
+    private final AtomicLong nanos = new AtomicLong();
+
+    @Test
+    void entryExpiresAfterWrite() {
+        Cache<Integer, String> cache = expiring(new CacheLRUImpl<>(10), Duration.ofSeconds(10), Duration.ZERO);
+        cache.put(1, "one");
+
+        advance(Duration.ofSeconds(9));
+        assertEquals("one", cache.get(1));
+        advance(Duration.ofSeconds(1));
+        assertNull(cache.get(1));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void readsExtendExpireAfterAccess() {
+        Cache<Integer, String> cache = expiring(new CacheLRUImpl<>(10), Duration.ZERO, Duration.ofSeconds(10));
+        cache.put(1, "one");
+
+        for (int i = 0; i < 5; i++) {
+            advance(Duration.ofSeconds(6));
+            assertEquals("one", cache.get(1));
+        }
+        advance(Duration.ofSeconds(10));
+        assertNull(cache.get(1));
+    }
+
+    @Test
+    void writeRestartsExpiration() {
+        Cache<Integer, String> cache = expiring(new CacheLRUImpl<>(10), Duration.ofSeconds(10), Duration.ZERO);
+        cache.put(1, "one");
+        advance(Duration.ofSeconds(8));
+        cache.put(1, "uno");
+
+        advance(Duration.ofSeconds(8));
+        assertEquals("uno", cache.get(1));
+        advance(Duration.ofSeconds(2));
+        assertNull(cache.get(1));
+    }
+
+    @Test
+    void wheelRemovesExpiredEntriesWithoutReads() {
+        Cache<Integer, String> cache = expiring(new CacheLRUImpl<>(100), Duration.ofSeconds(10), Duration.ZERO);
+        for (int i = 0; i < 50; i++) {
+            cache.put(i, "value" + i);
+        }
+
+        advance(Duration.ofSeconds(20));
+        // a write advances the wheel
+        cache.put(100, "value100");
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void keyWrittenAgainAfterEvictionStillExpires() {
+        Cache<Integer, String> cache = expiring(new CacheLRUImpl<>(2), Duration.ofSeconds(10), Duration.ZERO);
+        cache.put(1, "one");
+        cache.put(2, "two");
+        // evicts 1, then 2
+        cache.put(3, "three");
+        cache.put(1, "uno");
+
+        advance(Duration.ofSeconds(11));
+        assertNull(cache.get(1));
+        assertNull(cache.get(3));
+    }
+
+    @Test
+    void refreshReloadsInTheBackgroundAndReturnsTheOldValue() {
+        List<Runnable> refreshes = new ArrayList<>();
+        Cache<Integer, String> cache = new CacheExpiringImpl<>(new CacheLRUImpl<>(10), Duration.ZERO, Duration.ZERO,
+                Duration.ofSeconds(10), refreshes::add, nanos::get);
+        AtomicInteger loads = new AtomicInteger();
+        cache.put(1, "one");
+
+        advance(Duration.ofSeconds(11));
+        assertEquals("one", cache.get(1, key -> "loaded" + loads.incrementAndGet()));
+        // one refresh at a time
+        assertEquals("one", cache.get(1, key -> "loaded" + loads.incrementAndGet()));
+        assertEquals(1, refreshes.size());
+
+        refreshes.get(0).run();
+        assertEquals("loaded1", cache.get(1));
+    }
+
+    @Test
+    void refreshRacingWithWriteIsDropped() {
+        List<Runnable> refreshes = new ArrayList<>();
+        Cache<Integer, String> cache = new CacheExpiringImpl<>(new CacheLRUImpl<>(10), Duration.ZERO, Duration.ZERO,
+                Duration.ofSeconds(10), refreshes::add, nanos::get);
+        cache.put(1, "one");
+        advance(Duration.ofSeconds(11));
+        cache.get(1, key -> "loaded");
+
+        cache.put(1, "written");
+        refreshes.get(0).run();
+        assertEquals("written", cache.get(1));
+    }
+
+    /**
+     * 2Q evicts while promoting an entry on a read, so the eviction listener runs under the engine lock
+     * while writers hold the write lock of the decorator.
+     */
+    @Test
+    void concurrentReadsAndWritesDoNotDeadlock() throws InterruptedException {
+        assertNoDeadlock(new CacheExpiringImpl<>(new Cache2QImpl<>(40), Duration.ofMillis(5), Duration.ZERO,
+                Duration.ZERO, Runnable::run));
+        assertNoDeadlock(new CacheExpiringImpl<>(new CacheBufferedImpl<>(new Cache2QImpl<>(40)), Duration.ofMillis(5),
+                Duration.ZERO, Duration.ZERO, Runnable::run));
+    }
+
+    @Test
+    void snapshotsAreSupportedOnlyIfTheDelegateSupportsThem() {
+        Cache<Integer, String> supported = expiring(new CacheStatsImpl<>(new CacheLRUImpl<>(10)),
+                Duration.ofSeconds(10), Duration.ZERO);
+        Cache<Integer, String> unsupported = expiring(new CacheStatsImpl<>(new CacheStripedImpl<>(10)),
+                Duration.ofSeconds(10), Duration.ZERO);
+
+        assertTrue(SnapshotSupport.supports(supported));
+        assertFalse(SnapshotSupport.supports(unsupported));
+        assertFalse(SnapshotSupport.supports(new CacheStripedImpl<>(10)));
+        assertThrows(IllegalStateException.class, () -> ((SnapshotSupport<?, ?>) unsupported).snapshot());
+    }
+
+    private void assertNoDeadlock(Cache<Integer, Integer> cache) throws InterruptedException {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < end) {
+                    int key = random.nextInt(200);
+                    if (random.nextBoolean()) {
+                        cache.get(key);
+                    } else {
+                        cache.put(key, key);
+                    }
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(20));
+            assertFalse(thread.isAlive(), "deadlocked");
+        }
+    }
+
+    private Cache<Integer, String> expiring(Cache<Integer, String> delegate, Duration expireAfterWrite,
+                                            Duration expireAfterAccess) {
+        return new CacheExpiringImpl<>(delegate, expireAfterWrite, expireAfterAccess, Duration.ZERO, Runnable::run,
+                nanos::get);
+    }
+
+    private void advance(Duration duration) {
+        nanos.addAndGet(duration.toNanos());
+    }
+}
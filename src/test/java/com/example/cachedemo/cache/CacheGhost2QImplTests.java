@@ -0,0 +1,195 @@
+package com.example.cachedemo.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CacheGhost2QImplTests {
+
+    @Test
+    void newEntriesLeaveInFifoOrder() {
+        CacheGhost2QImpl<Integer, Integer> cache = new CacheGhost2QImpl<>(4);
+        List<Integer> evicted = new ArrayList<>();
+        cache.setEvictionListener((key, value) -> evicted.add(key));
+        for (int key = 0; key < 4; key++) {
+            cache.put(key, key);
+        }
+        // a hit in A1in does not change the order
+        cache.get(0);
+
+        cache.put(4, 4);
+        cache.put(5, 5);
+
+        assertEquals(Arrays.asList(0, 1), evicted);
+        assertEquals(4, cache.size());
+    }
+
+    @Test
+    void keyReturningWhileRememberedIsHotAndSurvivesAScan() {
+        CacheGhost2QImpl<Integer, Integer> cache = new CacheGhost2QImpl<>(8);
+        for (int key = 0; key < 9; key++) {
+            cache.put(key, key);
+        }
+        assertNull(cache.get(0));
+
+        cache.put(0, 0);
+        for (int key = 100; key < 200; key++) {
+            cache.put(key, key);
+        }
+
+        assertEquals(Integer.valueOf(0), cache.get(0));
+        for (int key = 1; key < 9; key++) {
+            assertNull(cache.get(key));
+        }
+        assertEquals(8, cache.size());
+    }
+
+    @Test
+    void promotedKeyIsNoLongerAGhost() {
+        CacheGhost2QImpl<Integer, Integer> cache = new CacheGhost2QImpl<>(8);
+        for (int key = 0; key < 9; key++) {
+            cache.put(key, key);
+        }
+        cache.put(0, 0);
+        cache.remove(0);
+
+        // back in A1in, so a scan evicts it
+        cache.put(0, 0);
+        for (int key = 100; key < 200; key++) {
+            cache.put(key, key);
+        }
+
+        assertNull(cache.get(0));
+    }
+
+    @Test
+    void evictAllForgetsTheGhosts() {
+        CacheGhost2QImpl<Integer, Integer> cache = new CacheGhost2QImpl<>(8);
+        for (int key = 0; key < 9; key++) {
+            cache.put(key, key);
+        }
+        cache.evictAll();
+        assertEquals(0, cache.size());
+
+        cache.put(0, 0);
+        for (int key = 100; key < 200; key++) {
+            cache.put(key, key);
+        }
+
+        assertNull(cache.get(0));
+    }
+
+    @Test
+    void inGivesUpEntriesOverItsShareBeforeHotEvictsByLru() {
+        CacheGhost2QImpl<Integer, Integer> cache = new CacheGhost2QImpl<>(4);
+        for (int key = 0; key < 8; key++) {
+            cache.put(key, key);
+        }
+        // 0 to 3 are remembered and come back hot, 0 makes room for 3 since A1in is at its share
+        for (int key = 0; key < 4; key++) {
+            cache.put(key, key);
+        }
+        cache.get(1);
+        List<Integer> evicted = new ArrayList<>();
+        cache.setEvictionListener((key, value) -> evicted.add(key));
+
+        cache.put(50, 50);
+        cache.put(51, 51);
+        cache.put(4, 4);
+
+        assertEquals(Arrays.asList(7, 50, 2), evicted);
+        assertEquals(Integer.valueOf(1), cache.get(1));
+        assertEquals(Integer.valueOf(4), cache.get(4));
+        assertEquals(4, cache.size());
+    }
+
+    @Test
+    void weightsAreTracked() {
+        CacheGhost2QImpl<Integer, Integer> cache = new CacheGhost2QImpl<Integer, Integer>(100) {
+            @Override
+            protected int sizeOf(Integer key, Integer value) {
+                return value;
+            }
+        };
+        cache.put(1, 10);
+        cache.put(2, 20);
+        cache.put(1, 5);
+        assertEquals(25, cache.size());
+
+        assertEquals(Integer.valueOf(20), cache.remove(2));
+        assertEquals(5, cache.size());
+
+        cache.put(3, 200);
+        assertNull(cache.get(3));
+        assertTrue(cache.size() <= 100);
+    }
+
+    @Test
+    void shrinkingEvictsDownToTheNewSize() {
+        CacheGhost2QImpl<Integer, Integer> cache = new CacheGhost2QImpl<>(100);
+        for (int key = 0; key < 100; key++) {
+            cache.put(key, key);
+        }
+
+        cache.resize(10);
+
+        assertEquals(10, cache.maxSize());
+        assertEquals(10, cache.size());
+        assertThrows(IllegalArgumentException.class, () -> cache.resize(0));
+    }
+
+    @Test
+    void countsHitsAndMisses() {
+        CacheGhost2QImpl<Integer, String> cache = new CacheGhost2QImpl<>(10);
+        cache.put(1, "one");
+        cache.get(1);
+        cache.get(2);
+
+        assertEquals(1, cache.hitCount());
+        assertEquals(1, cache.missCount());
+    }
+
+    @Test
+    void evictionsAreCountedByQueue() {
+        CacheGhost2QImpl<Integer, Integer> cache = new CacheGhost2QImpl<>(8);
+        for (int key = 0; key < 9; key++) {
+            cache.put(key, key);
+        }
+        // 0 comes back as a ghost and goes to Am, A1in is over its share and keeps giving up entries
+        cache.put(0, 0);
+        cache.put(100, 100);
+
+        assertEquals(3, cache.stats().evictionCount(CacheGhost2QImpl.QUEUE_IN));
+        assertEquals(0, cache.stats().evictionCount(CacheGhost2QImpl.QUEUE_HOT));
+        assertEquals(Integer.valueOf(0), cache.get(0));
+    }
+
+    @Test
+    void restoredSnapshotKeepsTheQueues() {
+        CacheGhost2QImpl<Integer, Integer> cache = new CacheGhost2QImpl<>(8);
+        for (int key = 0; key < 9; key++) {
+            cache.put(key, key);
+        }
+        cache.put(0, 0);
+        List<SnapshotEntry<Integer, Integer>> snapshot = cache.snapshot();
+        SnapshotEntry<Integer, Integer> hot = snapshot.get(snapshot.size() - 1);
+        assertEquals(CacheGhost2QImpl.QUEUE_HOT, hot.getQueue());
+        assertEquals(Integer.valueOf(0), hot.getKey());
+
+        CacheGhost2QImpl<Integer, Integer> restored = new CacheGhost2QImpl<>(8);
+        restored.restore(snapshot);
+
+        assertEquals(8, restored.size());
+        for (int key = 100; key < 200; key++) {
+            restored.put(key, key);
+        }
+        assertEquals(Integer.valueOf(0), restored.get(0));
+    }
+}
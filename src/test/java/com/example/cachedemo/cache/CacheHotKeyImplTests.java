@@ -0,0 +1,140 @@
+package com.example.cachedemo.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CacheHotKeyImplTests {
+
+    // enough reads for a few refreshes, every 16th read is sampled and every 4096th sample refreshes
+    private static final int READS = 200_000;
+
+    @Test
+    void mostReadKeysArePinned() {
+        CacheHotKeyImpl<Integer, String> cache = new CacheHotKeyImpl<>(new CacheLRUImpl<>(100), 2);
+        for (int key = 0; key < 100; key++) {
+            cache.put(key, "v" + key);
+        }
+
+        for (int i = 0; i < READS; i++) {
+            cache.get(i % 3 == 0 ? 7 : i % 3 == 1 ? 8 : i % 100);
+        }
+
+        assertEquals(2, cache.hotEntries().size());
+        assertEquals("v7", cache.hotEntries().get(7));
+        assertEquals("v8", cache.hotEntries().get(8));
+    }
+
+    @Test
+    void refreshDoesNotReadTheDelegate() {
+        AtomicInteger delegateReads = new AtomicInteger();
+        CacheHotKeyImpl<Integer, String> cache = new CacheHotKeyImpl<>(new CacheLRUImpl<Integer, String>(10) {
+            @Override
+            public String get(Integer key) {
+                delegateReads.incrementAndGet();
+                return super.get(key);
+            }
+        }, 1);
+        cache.put(1, "one");
+        readUntilPinned(cache, 1);
+
+        delegateReads.set(0);
+        for (int i = 0; i < READS; i++) {
+            assertEquals("one", cache.get(1));
+        }
+        // the refreshes meanwhile pinned the key again from the sampled reads
+        assertEquals(0, delegateReads.get());
+        assertEquals("one", cache.hotEntries().get(1));
+    }
+
+    @Test
+    void writesUnpinTheKey() {
+        CacheHotKeyImpl<Integer, String> cache = new CacheHotKeyImpl<>(new CacheLRUImpl<>(10), 1);
+        cache.put(1, "one");
+        readUntilPinned(cache, 1);
+
+        cache.put(1, "uno");
+        assertFalse(cache.hotEntries().containsKey(1));
+        assertEquals("uno", cache.get(1));
+        // pinned again with the written value
+        readUntilPinned(cache, 1);
+        assertEquals("uno", cache.hotEntries().get(1));
+
+        cache.remove(1);
+        assertFalse(cache.hotEntries().containsKey(1));
+        assertNull(cache.get(1));
+    }
+
+    @Test
+    void pinnedKeyEvictedByTheDelegateIsUnpinned() {
+        List<Integer> evicted = new ArrayList<>();
+        CacheHotKeyImpl<Integer, String> cache = new CacheHotKeyImpl<>(new CacheLRUImpl<>(2), 1);
+        cache.setEvictionListener((key, value) -> evicted.add(key));
+        cache.put(1, "one");
+        readUntilPinned(cache, 1);
+
+        // the reads of the pinned key do not reach the delegate, so it is its eldest entry
+        cache.put(2, "two");
+        cache.put(3, "three");
+
+        assertEquals(1, evicted.size());
+        assertEquals(1, evicted.get(0).intValue());
+        assertFalse(cache.hotEntries().containsKey(1));
+        assertNull(cache.get(1));
+    }
+
+    @Test
+    void pinnedValueIsNeverOlderThanTheLastWrite() throws InterruptedException {
+        CacheHotKeyImpl<Integer, Integer> cache = new CacheHotKeyImpl<>(new CacheLRUImpl<>(10), 1);
+        cache.put(1, 0);
+        AtomicInteger written = new AtomicInteger();
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicBoolean stale = new AtomicBoolean();
+        List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread reader = new Thread(() -> {
+                while (!stop.get()) {
+                    // read after the write count, so the value must be at least that write
+                    int minimum = written.get();
+                    Integer value = cache.get(1);
+                    if (value == null || value < minimum) {
+                        stale.set(true);
+                    }
+                }
+            });
+            reader.setDaemon(true);
+            reader.start();
+            readers.add(reader);
+        }
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        for (int value = 1; System.nanoTime() < end; value++) {
+            cache.put(1, value);
+            written.set(value);
+        }
+        stop.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        assertFalse(stale.get());
+        for (int i = 0; i < READS; i++) {
+            assertEquals(written.get(), cache.get(1).intValue());
+        }
+    }
+
+    private static <V> void readUntilPinned(CacheHotKeyImpl<Integer, V> cache, int key) {
+        for (int i = 0; i < READS && !cache.hotEntries().containsKey(key); i++) {
+            cache.get(key);
+        }
+        assertTrue(cache.hotEntries().containsKey(key));
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.cachedemo.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CacheLRUImplTests {
+
+    @Test
+    void shrinkingEvictsAStepPerOperation() {
+        CacheLRUImpl<Integer, Integer> cache = new CacheLRUImpl<>(100);
+        List<Integer> evicted = new ArrayList<>();
+        cache.setEvictionListener((key, value) -> evicted.add(key));
+        for (int key = 0; key < 100; key++) {
+            cache.put(key, key);
+        }
+
+        cache.resize(10);
+        assertEquals(10, cache.maxSize());
+        assertEquals(CacheLRUImpl.RESIZE_STEP, evicted.size());
+        int operations = 1;
+        while (cache.size() > 10) {
+            int before = evicted.size();
+            assertNotNull(cache.get(99));
+            assertTrue(evicted.size() - before <= CacheLRUImpl.RESIZE_STEP);
+            operations++;
+        }
+
+        // 90 evictions take 6 steps, the eldest entries go first
+        assertEquals(6, operations);
+        assertEquals(90, evicted.size());
+        assertEquals(Integer.valueOf(0), evicted.get(0));
+        cache.put(100, 100);
+        assertEquals(10, cache.size());
+        assertEquals(91, evicted.size());
+    }
+
+    @Test
+    void growingTakesEffectAtOnce() {
+        CacheLRUImpl<Integer, Integer> cache = new CacheLRUImpl<>(10);
+        List<Integer> evicted = new ArrayList<>();
+        cache.setEvictionListener((key, value) -> evicted.add(key));
+        for (int key = 0; key < 10; key++) {
+            cache.put(key, key);
+        }
+
+        cache.resize(20);
+        for (int key = 10; key < 20; key++) {
+            cache.put(key, key);
+        }
+
+        assertTrue(evicted.isEmpty());
+        assertEquals(20, cache.size());
+        assertEquals(20, cache.maxSize());
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.cachedemo.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CacheStripedImplTests {
+
+    @Test
+    void segmentCountIsRoundedUpToAPowerOfTwo() {
+        assertEquals(1, new CacheStripedImpl<>(10, 1).segments());
+        assertEquals(8, new CacheStripedImpl<>(10, 5).segments());
+        assertEquals(16, new CacheStripedImpl<>(10).segments());
+        assertThrows(IllegalArgumentException.class, () -> new CacheStripedImpl<>(0));
+        assertThrows(IllegalArgumentException.class, () -> new CacheStripedImpl<>(10, 0));
+    }
+
+    @Test
+    void singleSegmentEvictsLeastRecentlyUsed() {
+        CacheStripedImpl<Integer, String> cache = new CacheStripedImpl<>(3, 1);
+        cache.put(1, "one");
+        cache.put(2, "two");
+        cache.put(3, "three");
+        cache.get(1);
+
+        cache.put(4, "four");
+
+        assertNull(cache.get(2));
+        assertEquals("one", cache.get(1));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    void budgetIsSharedBySegments() {
+        CacheStripedImpl<Integer, Integer> cache = new CacheStripedImpl<>(10, 4);
+        AtomicInteger evictions = new AtomicInteger();
+        cache.setEvictionListener((key, value) -> evictions.incrementAndGet());
+
+        for (int i = 0; i < 100; i++) {
+            cache.put(i, i);
+            assertTrue(cache.size() <= 10);
+        }
+
+        assertEquals(10, cache.size());
+        assertEquals(90, evictions.get());
+        assertEquals(10, countCached(cache, 100));
+    }
+
+    @Test
+    void writeReclaimsBudgetFromOtherSegments() {
+        CacheStripedImpl<Integer, Integer> cache = weighted(10, 4);
+        for (int i = 0; i < 10; i++) {
+            cache.put(i, 1);
+        }
+
+        // the segment of the key may hold too little to make room on its own
+        cache.put(100, 6);
+
+        assertTrue(cache.size() <= 10);
+        assertEquals(Integer.valueOf(6), cache.get(100));
+    }
+
+    @Test
+    void entryLargerThanMaxSizeIsEvicted() {
+        CacheStripedImpl<Integer, Integer> cache = weighted(10, 4);
+        cache.put(1, 1);
+
+        cache.put(2, 11);
+
+        assertNull(cache.get(2));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void removeAndReplaceUpdateTheSize() {
+        CacheStripedImpl<Integer, Integer> cache = weighted(100, 4);
+        cache.put(1, 10);
+        cache.put(2, 20);
+        cache.put(1, 5);
+        assertEquals(25, cache.size());
+
+        assertEquals(Integer.valueOf(20), cache.remove(2));
+        assertEquals(5, cache.size());
+        assertNull(cache.remove(2));
+
+        cache.evictAll();
+        assertEquals(0, cache.size());
+        assertNull(cache.get(1));
+    }
+
+    @Test
+    void shrinkingEvictsAcrossSegments() {
+        CacheStripedImpl<Integer, Integer> cache = new CacheStripedImpl<>(100, 8);
+        for (int i = 0; i < 100; i++) {
+            cache.put(i, i);
+        }
+
+        cache.resize(10);
+
+        assertEquals(10, cache.maxSize());
+        assertEquals(10, cache.size());
+        assertEquals(10, countCached(cache, 100));
+    }
+
+    @Test
+    void countsHitsAndMisses() {
+        CacheStripedImpl<Integer, String> cache = new CacheStripedImpl<>(10, 4);
+        cache.put(1, "one");
+        cache.get(1);
+        cache.get(1);
+        cache.get(2);
+
+        assertEquals(2, cache.hitCount());
+        assertEquals(1, cache.missCount());
+    }
+
+    @Test
+    void concurrentWritesStayWithinBudget() throws InterruptedException {
+        CacheStripedImpl<Integer, Integer> cache = new CacheStripedImpl<>(64, 8);
+        AtomicInteger evictions = new AtomicInteger();
+        AtomicInteger inserts = new AtomicInteger();
+        cache.setEvictionListener((key, value) -> evictions.incrementAndGet());
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 20_000; i++) {
+                    int key = random.nextInt(1000);
+                    if (cache.put(key, key) == null) {
+                        inserts.incrementAndGet();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(20));
+            assertFalse(thread.isAlive());
+        }
+
+        assertTrue(cache.size() <= 64);
+        assertEquals(cache.size(), countCached(cache, 1000));
+        assertEquals(inserts.get() - evictions.get(), cache.size());
+    }
+
+    private static int countCached(Cache<Integer, Integer> cache, int keys) {
+        int result = 0;
+        for (int i = 0; i < keys; i++) {
+            if (cache.get(i) != null) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Cache whose entries weigh their value.
+     */
+    private static CacheStripedImpl<Integer, Integer> weighted(int maxSize, int concurrencyLevel) {
+        return new CacheStripedImpl<Integer, Integer>(maxSize, concurrencyLevel) {
+            @Override
+            protected int sizeOf(Integer key, Integer value) {
+                return value;
+            }
+        };
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.cachedemo.cache;
+
+import com.example.cachedemo.model.Film;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.cachedemo.Films.film;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CacheTieredImplTests {
+
+    @Test
+    void entriesEvictedFromL1AreDemotedToL2() {
+        CacheTieredImpl<Integer, String> cache = new CacheTieredImpl<>(new CacheLRUImpl<>(2), new CacheLRUImpl<>(10));
+        cache.put(1, "one");
+        cache.put(2, "two");
+        cache.put(3, "three");
+
+        assertNull(cache.l1().get(1));
+        assertEquals("one", cache.l2().get(1));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void l2HitIsPromotedAndTheTiersStayExclusive() {
+        CacheTieredImpl<Integer, String> cache = new CacheTieredImpl<>(new CacheLRUImpl<>(2), new CacheLRUImpl<>(10));
+        cache.put(1, "one");
+        cache.put(2, "two");
+        cache.put(3, "three");
+
+        assertEquals("one", cache.get(1));
+        assertEquals("one", cache.l1().get(1));
+        assertNull(cache.l2().get(1));
+        // 2 made room for 1
+        assertEquals("two", cache.l2().get(2));
+        assertNull(cache.l1().get(2));
+    }
+
+    @Test
+    void putReplacesADemotedEntry() {
+        CacheTieredImpl<Integer, String> cache = new CacheTieredImpl<>(new CacheLRUImpl<>(1), new CacheLRUImpl<>(10));
+        cache.put(1, "one");
+        cache.put(2, "two");
+
+        cache.put(1, "uno");
+        assertEquals("uno", cache.l1().get(1));
+        assertNull(cache.l2().get(1));
+        assertEquals("two", cache.l2().get(2));
+        assertEquals("uno", cache.remove(1));
+        assertNull(cache.get(1));
+    }
+
+    @Test
+    void writesDropEntriesWhoseDemotionIsPending() {
+        CacheLRUImpl<Integer, String> l1 = new CacheLRUImpl<>(40);
+        CacheTieredImpl<Integer, String> cache = new CacheTieredImpl<>(l1, new CacheLRUImpl<>(100));
+        for (int i = 0; i < 40; i++) {
+            cache.put(i, "v" + i);
+        }
+        // L1 shrinks step by step, the next reads evict the entries still over the new size
+        cache.resize(1);
+        // a read of L1 that did not demote what it evicted yet
+        assertEquals("v39", l1.get(39));
+        assertNull(l1.get(16));
+
+        assertEquals("v16", cache.remove(16));
+        cache.put(17, "new");
+        assertNull(cache.l2().get(17));
+        assertEquals("v18", cache.l2().get(18));
+
+        assertNull(cache.get(16));
+        assertEquals("new", cache.get(17));
+    }
+
+    @Test
+    void onlyEntriesEvictedFromL2ReachTheListener() {
+        CacheTieredImpl<Integer, String> cache = new CacheTieredImpl<>(new CacheLRUImpl<>(1), new CacheLRUImpl<>(1));
+        List<Integer> evicted = new ArrayList<>();
+        cache.setEvictionListener((key, value) -> evicted.add(key));
+        cache.put(1, "one");
+        cache.put(2, "two");
+        assertEquals(0, evicted.size());
+
+        cache.put(3, "three");
+        assertEquals(1, evicted.size());
+        assertEquals(1, evicted.get(0).intValue());
+    }
+
+    @Test
+    void resizeDemotesTheEntriesOverTheNewSize() {
+        CacheTieredImpl<Integer, String> cache = new CacheTieredImpl<>(new CacheLRUImpl<>(3), new CacheLRUImpl<>(10));
+        cache.put(1, "one");
+        cache.put(2, "two");
+        cache.put(3, "three");
+
+        cache.resize(1);
+        assertEquals("one", cache.l2().get(1));
+        assertEquals("two", cache.l2().get(2));
+        assertEquals("three", cache.get(3));
+    }
+
+    @Test
+    void mappedL2KeepsTheDemotedFilms() throws IOException {
+        Path file = Files.createTempFile("film-cache", ".l2");
+        try (FileChannel channel = FilmCacheMapped.open(file)) {
+            CacheTieredImpl<Integer, Film> cache = new CacheTieredImpl<>(new CacheLRUImpl<>(1),
+                    new FilmCacheMapped(1 << 16, channel));
+            Film solaris = film(1, "Solaris");
+            Film stalker = film(2, "Stalker");
+            cache.put(1, solaris);
+            cache.put(2, stalker);
+
+            assertEquals(solaris, cache.l2().get(1));
+            assertEquals(solaris, cache.get(1));
+            assertEquals(stalker, cache.get(2));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void concurrentReadsAndWritesDoNotDeadlock() throws InterruptedException {
+        Cache<Integer, Integer> cache = new CacheExpiringImpl<>(
+                new CacheTieredImpl<>(new CacheLRUImpl<>(20), new Cache2QImpl<>(40)),
+                Duration.ofMillis(5), Duration.ZERO, Duration.ZERO, Runnable::run);
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < end) {
+                    int key = random.nextInt(200);
+                    if (random.nextBoolean()) {
+                        cache.get(key);
+                    } else {
+                        cache.put(key, key);
+                    }
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(20));
+            assertFalse(thread.isAlive(), "deadlocked");
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.cachedemo.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CacheTinyLfuImplTests {
+
+    @Test
+    void frequentEntriesSurviveAScan() {
+        CacheTinyLfuImpl<Integer, Integer> cache = new CacheTinyLfuImpl<>(100);
+        for (int round = 0; round < 5; round++) {
+            for (int key = 0; key < 50; key++) {
+                if (cache.get(key) == null) {
+                    cache.put(key, key);
+                }
+            }
+        }
+
+        for (int key = 1000; key < 2000; key++) {
+            cache.get(key);
+            cache.put(key, key);
+        }
+
+        int survivors = 0;
+        for (int key = 0; key < 50; key++) {
+            if (cache.get(key) != null) {
+                survivors++;
+            }
+        }
+        // only the entry in the window at the start of the scan may lose its tie
+        assertTrue(survivors >= 49);
+        assertEquals(100, cache.size());
+    }
+
+    @Test
+    void candidateIsAdmittedOnlyIfMoreFrequentThanTheVictim() {
+        CacheTinyLfuImpl<Integer, Integer> cache = new CacheTinyLfuImpl<>(10);
+        List<Integer> evicted = new ArrayList<>();
+        cache.setEvictionListener((key, value) -> evicted.add(key));
+        for (int key = 0; key < 10; key++) {
+            cache.put(key, key);
+        }
+        for (int round = 0; round < 2; round++) {
+            for (int key = 0; key < 10; key++) {
+                cache.get(key);
+            }
+        }
+
+        // 9 leaves the window and loses the tie, 10 leaves it as the rarer entry
+        cache.put(10, 10);
+        cache.put(11, 11);
+        assertEquals(Arrays.asList(9, 10), evicted);
+
+        // misses count too, so 20 leaves the window more frequent than the victim and replaces it
+        for (int i = 0; i < 5; i++) {
+            cache.get(20);
+        }
+        cache.put(20, 20);
+        cache.put(21, 21);
+        assertEquals(Integer.valueOf(20), cache.get(20));
+        assertEquals(4, evicted.size());
+        assertEquals(Integer.valueOf(11), evicted.get(2));
+        assertTrue(evicted.get(3) < 9);
+        assertEquals(10, cache.size());
+    }
+
+    @Test
+    void sizeStaysWithinMaxSize() {
+        CacheTinyLfuImpl<Integer, Integer> cache = new CacheTinyLfuImpl<>(50);
+        int[] evictions = new int[1];
+        cache.setEvictionListener((key, value) -> evictions[0]++);
+
+        for (int key = 0; key < 1000; key++) {
+            cache.put(key, key);
+            assertTrue(cache.size() <= 50);
+        }
+
+        assertEquals(950, evictions[0]);
+    }
+
+    @Test
+    void shrinkingEvictsDownToTheNewSize() {
+        CacheTinyLfuImpl<Integer, Integer> cache = new CacheTinyLfuImpl<>(100);
+        for (int key = 0; key < 100; key++) {
+            cache.put(key, key);
+        }
+
+        cache.resize(10);
+
+        assertEquals(10, cache.maxSize());
+        assertEquals(10, cache.size());
+        assertThrows(IllegalArgumentException.class, () -> cache.resize(0));
+    }
+
+    @Test
+    void removeAndReplaceUpdateTheSize() {
+        CacheTinyLfuImpl<Integer, Integer> cache = new CacheTinyLfuImpl<Integer, Integer>(100) {
+            @Override
+            protected int sizeOf(Integer key, Integer value) {
+                return value;
+            }
+        };
+        cache.put(1, 10);
+        cache.put(2, 20);
+        cache.put(1, 5);
+        assertEquals(25, cache.size());
+
+        assertEquals(Integer.valueOf(20), cache.remove(2));
+        assertEquals(5, cache.size());
+
+        cache.evictAll();
+        assertEquals(0, cache.size());
+        assertNull(cache.get(1));
+    }
+
+    @Test
+    void countsHitsAndMisses() {
+        CacheTinyLfuImpl<Integer, String> cache = new CacheTinyLfuImpl<>(10);
+        cache.put(1, "one");
+        cache.get(1);
+        cache.get(2);
+
+        assertEquals(1, cache.hitCount());
+        assertEquals(1, cache.missCount());
+        assertEquals(1, cache.stats().hitCount());
+    }
+
+    @Test
+    void evictionsAreCountedByQueue() {
+        CacheTinyLfuImpl<Integer, String> cache = new CacheTinyLfuImpl<>(10);
+        for (int key = 0; key < 11; key++) {
+            cache.put(key, "value" + key);
+        }
+
+        assertEquals(1, cache.stats().evictionCount());
+        assertEquals(1, cache.stats().evictionCount(CacheTinyLfuImpl.QUEUE_PROBATION));
+    }
+
+    @Test
+    void restoredSnapshotKeepsTheQueues() {
+        CacheTinyLfuImpl<Integer, String> cache = new CacheTinyLfuImpl<>(10);
+        for (int key = 0; key < 5; key++) {
+            cache.put(key, "value" + key);
+        }
+        cache.get(1);
+        List<SnapshotEntry<Integer, String>> snapshot = cache.snapshot();
+
+        CacheTinyLfuImpl<Integer, String> restored = new CacheTinyLfuImpl<>(10);
+        restored.restore(snapshot);
+
+        assertEquals(5, restored.size());
+        assertEquals(snapshot.size(), restored.snapshot().size());
+        for (int i = 0; i < snapshot.size(); i++) {
+            assertEquals(snapshot.get(i).getQueue(), restored.snapshot().get(i).getQueue());
+            assertEquals(snapshot.get(i).getKey(), restored.snapshot().get(i).getKey());
+        }
+        assertEquals(CacheTinyLfuImpl.QUEUE_PROTECTED, snapshot.get(snapshot.size() - 1).getQueue());
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.cachedemo.cache;
+
+import com.example.cachedemo.model.Film;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.example.cachedemo.Films.film;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FilmCacheOffHeapTests {
+
+    @Test
+    void hitReturnsACopyOfTheFilm() {
+        FilmCacheOffHeap cache = new FilmCacheOffHeap(1 << 16);
+        Film film = film(1, "Solaris");
+        cache.put(1, film);
+
+        Film cached = cache.get(1);
+        assertEquals(film, cached);
+        assertNotSame(film, cached);
+        assertEquals(1, cache.hitCount());
+        assertNull(cache.get(2));
+        assertEquals(1, cache.missCount());
+    }
+
+    @Test
+    void leastRecentlyUsedFilmsAreEvictedToTheListener() {
+        FilmCacheOffHeap cache = new FilmCacheOffHeap(3 * SlabStore.MIN_SLOT_SIZE);
+        List<Integer> evicted = new ArrayList<>();
+        cache.setEvictionListener((key, film) -> evicted.add(key));
+        for (int id = 1; id <= 3; id++) {
+            cache.put(id, film(id, "F" + id));
+        }
+        cache.get(1);
+
+        cache.put(4, film(4, "F4"));
+        assertEquals(Arrays.asList(2), evicted);
+        assertTrue(cache.size() <= cache.maxSize());
+        assertEquals(film(1, "F1"), cache.get(1));
+        assertEquals(1, cache.stats().evictionCount());
+        assertEquals(SlabStore.MIN_SLOT_SIZE, cache.stats().evictionWeight());
+    }
+
+    @Test
+    void restoredSnapshotKeepsTheLruOrder() {
+        FilmCacheOffHeap cache = new FilmCacheOffHeap(3 * SlabStore.MIN_SLOT_SIZE);
+        for (int id = 1; id <= 3; id++) {
+            cache.put(id, film(id, "F" + id));
+        }
+        cache.get(1);
+        List<SnapshotEntry<Integer, Film>> snapshot = cache.snapshot();
+        assertEquals(Arrays.asList(2, 3, 1), Arrays.asList(snapshot.get(0).getKey(), snapshot.get(1).getKey(),
+                snapshot.get(2).getKey()));
+
+        FilmCacheOffHeap restored = new FilmCacheOffHeap(3 * SlabStore.MIN_SLOT_SIZE);
+        restored.restore(snapshot);
+        restored.put(4, film(4, "F4"));
+
+        assertNull(restored.get(2));
+        assertEquals(film(1, "F1"), restored.get(1));
+    }
+
+    @Test
+    void filmTooLargeForASlotEvictsThePreviousValue() {
+        FilmCacheOffHeap cache = new FilmCacheOffHeap(1 << 16);
+        List<Film> evicted = new ArrayList<>();
+        cache.setEvictionListener((key, film) -> evicted.add(film));
+        Film film = film(1, "Solaris");
+        cache.put(1, film);
+
+        char[] title = new char[SlabStore.MAX_SLOT_SIZE];
+        Arrays.fill(title, 'x');
+        assertNull(cache.put(1, film(1, new String(title))));
+
+        assertNull(cache.get(1));
+        assertEquals(Arrays.asList(film), evicted);
+        assertEquals(0, cache.size());
+    }
+}
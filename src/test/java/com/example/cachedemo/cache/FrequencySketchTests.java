@@ -0,0 +1,73 @@
+package com.example.cachedemo.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrequencySketchTests {
+
+    @Test
+    void countsIncrementsOfAKey() {
+        FrequencySketch<Integer> sketch = new FrequencySketch<>(512);
+        assertEquals(0, sketch.frequency(1));
+
+        for (int i = 0; i < 5; i++) {
+            sketch.increment(1);
+        }
+
+        assertEquals(5, sketch.frequency(1));
+    }
+
+    @Test
+    void countersSaturateAtFifteen() {
+        FrequencySketch<Integer> sketch = new FrequencySketch<>(512);
+        for (int i = 0; i < 100; i++) {
+            sketch.increment(1);
+        }
+
+        assertEquals(15, sketch.frequency(1));
+    }
+
+    @Test
+    void neverUnderestimatesBeforeAging() {
+        FrequencySketch<Integer> sketch = new FrequencySketch<>(1024);
+        for (int i = 0; i < 10; i++) {
+            sketch.increment(-1);
+        }
+        for (int key = 0; key < 500; key++) {
+            sketch.increment(key);
+        }
+
+        assertTrue(sketch.frequency(-1) >= 10);
+        for (int key = 0; key < 500; key++) {
+            assertTrue(sketch.frequency(key) >= 1);
+        }
+    }
+
+    @Test
+    void fullSampleHalvesTheCounters() {
+        // a sample of 10 increments
+        FrequencySketch<Integer> sketch = new FrequencySketch<>(1);
+        for (int i = 0; i < 9; i++) {
+            sketch.increment(1);
+        }
+        assertEquals(9, sketch.frequency(1));
+
+        sketch.increment(1);
+
+        assertEquals(5, sketch.frequency(1));
+    }
+
+    @Test
+    void newWidthDropsTheFrequencies() {
+        FrequencySketch<Integer> sketch = new FrequencySketch<>(512);
+        sketch.increment(1);
+
+        sketch.ensureCapacity(512);
+        assertEquals(1, sketch.frequency(1));
+
+        sketch.ensureCapacity(4096);
+        assertEquals(0, sketch.frequency(1));
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.cachedemo.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GhostQueueTests {
+
+    @Test
+    void oldestFingerprintIsDroppedWhenFull() {
+        GhostQueue queue = new GhostQueue(2);
+        queue.add(1);
+        queue.add(2);
+        queue.add(3);
+
+        assertFalse(queue.contains(1));
+        assertTrue(queue.contains(2));
+        assertTrue(queue.contains(3));
+        assertEquals(2, queue.size());
+    }
+
+    @Test
+    void duplicateFingerprintStaysUntilItsLastOccurrenceIsDropped() {
+        GhostQueue queue = new GhostQueue(2);
+        queue.add(1);
+        queue.add(1);
+
+        queue.add(2);
+        assertTrue(queue.contains(1));
+
+        queue.add(3);
+        assertFalse(queue.contains(1));
+    }
+
+    @Test
+    void removedFingerprintIsForgottenUntilAddedAgain() {
+        GhostQueue queue = new GhostQueue(2);
+        queue.add(1);
+        queue.remove(1);
+        assertFalse(queue.contains(1));
+
+        queue.add(1);
+        // dropping the slot of the removed occurrence keeps the new one
+        queue.add(2);
+        assertTrue(queue.contains(1));
+
+        queue.add(3);
+        assertFalse(queue.contains(1));
+        assertTrue(queue.contains(2));
+    }
+
+    @Test
+    void fingerprintIsNeverZero() {
+        assertEquals(1, GhostQueue.fingerprint(0));
+    }
+
+    @Test
+    void containsMatchesTheLastFingerprintsAdded() {
+        GhostQueue queue = new GhostQueue(64);
+        ArrayDeque<Integer> expected = new ArrayDeque<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            int fingerprint = GhostQueue.fingerprint(random.nextInt(200));
+            queue.add(fingerprint);
+            expected.addLast(fingerprint);
+            if (expected.size() > 64) {
+                expected.removeFirst();
+            }
+            if (i % 100 == 0) {
+                for (int key = 0; key < 200; key++) {
+                    int candidate = GhostQueue.fingerprint(key);
+                    assertEquals(expected.contains(candidate), queue.contains(candidate));
+                }
+            }
+        }
+    }
+
+    @Test
+    void clearForgetsEverything() {
+        GhostQueue queue = new GhostQueue(4);
+        queue.add(1);
+        queue.clear();
+
+        assertFalse(queue.contains(1));
+        assertEquals(0, queue.size());
+        assertThrows(IllegalArgumentException.class, () -> new GhostQueue(0));
+    }
+}
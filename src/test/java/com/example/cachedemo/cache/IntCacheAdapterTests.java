@@ -0,0 +1,80 @@
+package com.example.cachedemo.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IntCacheAdapterTests {
+
+    private final IntCacheAdapter<String> cache = new IntCacheAdapter<>(new IntCacheLRUImpl<>(10));
+
+    @Test
+    void primitiveGetLoadsOnceAndHitsAfterwards() {
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals("1", cache.get(1, key -> String.valueOf(loads.incrementAndGet())));
+        assertEquals("1", cache.get(1, key -> String.valueOf(loads.incrementAndGet())));
+
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.stats().missCount());
+        assertEquals(1, cache.stats().hitCount());
+        assertEquals(1, cache.stats().loadSuccessCount());
+    }
+
+    @Test
+    void nullLoadIsNotCached() {
+        assertNull(cache.get(1, key -> null));
+
+        assertEquals(0, cache.size());
+        assertNull(cache.intCache().get(1));
+    }
+
+    @Test
+    void concurrentPrimitiveMissesShareOneLoad() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> cache.get(1, key -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            await(release);
+            return "one";
+        }));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> second = CompletableFuture.supplyAsync(() -> cache.get(1, key -> {
+            loads.incrementAndGet();
+            return "other";
+        }));
+        release.countDown();
+
+        assertEquals("one", first.get(5, TimeUnit.SECONDS));
+        assertEquals("one", second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void statsCounterIsSharedWithTheIntCache() {
+        cache.put(1, "one");
+        cache.intCache().get(1);
+        cache.get(2);
+
+        assertEquals(1, cache.stats().hitCount());
+        assertEquals(1, cache.stats().missCount());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
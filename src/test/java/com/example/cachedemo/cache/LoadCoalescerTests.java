@@ -0,0 +1,120 @@
+package com.example.cachedemo.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LoadCoalescerTests {
+
+    private final LoadCoalescer<Integer, String> loads = new LoadCoalescer<>();
+
+    @Test
+    void loadedValueIsCached() {
+        Cache<Integer, String> cache = new CacheLRUImpl<>(10);
+        AtomicInteger calls = new AtomicInteger();
+
+        assertEquals("1", loads.get(cache, 1, counting(calls)));
+        assertEquals("1", loads.get(cache, 1, counting(calls)));
+        assertEquals(1, calls.get());
+        assertEquals("1", cache.get(1));
+    }
+
+    @Test
+    void concurrentMissesShareOneLoad() throws Exception {
+        Cache<Integer, String> cache = new CacheLRUImpl<>(10);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            results.add(executor.submit(() -> loads.get(cache, 1, key -> {
+                calls.incrementAndGet();
+                loading.countDown();
+                await(release);
+                return "1";
+            })));
+            await(loading);
+            for (int i = 0; i < 3; i++) {
+                results.add(executor.submit(() -> loads.get(cache, 1, counting(calls))));
+            }
+            // the waiters are blocked on the first load
+            Thread.sleep(50);
+            release.countDown();
+            for (Future<String> result : results) {
+                assertEquals("1", result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, calls.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void missRacingTheEndOfALoadReadsTheCacheAgain() {
+        AtomicInteger calls = new AtomicInteger();
+        Cache<Integer, String> cache = new CacheLRUImpl<Integer, String>(10) {
+            private boolean raced;
+
+            @Override
+            public String get(Integer key) {
+                String value = super.get(key);
+                if (value == null && !raced) {
+                    raced = true;
+                    // another caller loads and caches the key after this miss, before this caller registers
+                    Thread other = new Thread(() -> loads.get(this, key, counting(calls)));
+                    other.start();
+                    join(other);
+                }
+                return value;
+            }
+        };
+
+        assertEquals("1", loads.get(cache, 1, counting(calls)));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void failedLoadIsNotCachedAndRethrown() {
+        Cache<Integer, String> cache = new CacheLRUImpl<>(10);
+
+        assertThrows(IllegalStateException.class, () -> loads.get(cache, 1, key -> {
+            throw new IllegalStateException("down");
+        }));
+        assertEquals("1", loads.get(cache, 1, String::valueOf));
+    }
+
+    private static Function<Integer, String> counting(AtomicInteger calls) {
+        return key -> {
+            calls.incrementAndGet();
+            return String.valueOf(key);
+        };
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void join(Thread thread) {
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.cachedemo.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpaceSavingTests {
+
+    @Test
+    void keysUnderCapacityAreCountedExactly() {
+        SpaceSaving<String> tracker = new SpaceSaving<>(4);
+        record(tracker, "a", 3);
+        record(tracker, "b", 5);
+        record(tracker, "c", 1);
+
+        assertEquals(Arrays.asList("b", "a", "c"), tracker.top(10));
+        assertEquals(Arrays.asList("b", "a"), tracker.top(2));
+    }
+
+    @Test
+    void newKeyReplacesTheLeastCountedOne() {
+        SpaceSaving<String> tracker = new SpaceSaving<>(2);
+        record(tracker, "a", 5);
+        record(tracker, "b", 1);
+
+        // c inherits the count of b, which is never too low
+        record(tracker, "c", 1);
+        assertEquals(Arrays.asList("a", "c"), tracker.top(2));
+    }
+
+    @Test
+    void heavyHittersAreTrackedAmongManyRareKeys() {
+        SpaceSaving<Integer> tracker = new SpaceSaving<>(16);
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            int r = random.nextInt(100);
+            if (r < 20) {
+                tracker.record(-1);
+            } else if (r < 30) {
+                tracker.record(-2);
+            } else {
+                tracker.record(random.nextInt(10_000));
+            }
+        }
+
+        // keys read more often than 1/capacity of all reads are always tracked
+        assertEquals(Arrays.asList(-1, -2), tracker.top(2));
+    }
+
+    @Test
+    void agingLetsNewHotKeysOvertakeOldOnes() {
+        SpaceSaving<String> tracker = new SpaceSaving<>(4);
+        record(tracker, "old", 100);
+        for (int i = 0; i < 5; i++) {
+            tracker.age();
+        }
+        // 100 halved five times is 3
+        record(tracker, "new", 4);
+
+        assertEquals(Collections.singletonList("new"), tracker.top(1));
+    }
+
+    @Test
+    void topOfEmptyTrackerIsEmpty() {
+        List<String> top = new SpaceSaving<String>(4).top(3);
+
+        assertTrue(top.isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> new SpaceSaving<String>(0));
+    }
+
+    private static void record(SpaceSaving<String> tracker, String key, int times) {
+        for (int i = 0; i < times; i++) {
+            tracker.record(key);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.cachedemo.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimerWheelTests {
+
+    // a node fires at the latest with the first tick of the finest level after its time
+    private static final long TICK = 1L << 30;
+
+    private final TimerWheel<Timer> wheel = new TimerWheel<>(0);
+    private final List<Timer> fired = new ArrayList<>();
+
+    @Test
+    void firesNodesOfEveryLevelWhenDue() {
+        Timer second = schedule(TimeUnit.SECONDS.toNanos(1));
+        Timer minutes = schedule(TimeUnit.MINUTES.toNanos(2));
+        Timer hours = schedule(TimeUnit.HOURS.toNanos(3));
+        Timer days = schedule(TimeUnit.DAYS.toNanos(10));
+
+        advance(TimeUnit.MILLISECONDS.toNanos(1500));
+        assertEquals(1, fired.size());
+        assertTrue(fired.contains(second));
+
+        advance(TimeUnit.MINUTES.toNanos(2) - 1);
+        assertEquals(1, fired.size());
+        advance(TimeUnit.MINUTES.toNanos(2) + TICK);
+        assertTrue(fired.contains(minutes));
+
+        advance(TimeUnit.HOURS.toNanos(4));
+        assertTrue(fired.contains(hours));
+        assertEquals(3, fired.size());
+
+        advance(TimeUnit.DAYS.toNanos(11));
+        assertTrue(fired.contains(days));
+    }
+
+    @Test
+    void overdueNodeFiresWithTheNextAdvance() {
+        advance(TimeUnit.SECONDS.toNanos(5));
+        Timer overdue = schedule(TimeUnit.SECONDS.toNanos(1));
+
+        advance(TimeUnit.SECONDS.toNanos(5) + TICK);
+        assertEquals(1, fired.size());
+        assertTrue(fired.contains(overdue));
+    }
+
+    @Test
+    void descheduledNodeDoesNotFire() {
+        Timer timer = schedule(TimeUnit.SECONDS.toNanos(1));
+        wheel.deschedule(timer);
+        wheel.deschedule(timer);
+
+        advance(TimeUnit.SECONDS.toNanos(2));
+        assertEquals(0, fired.size());
+    }
+
+    @Test
+    void scheduledNodeIsMoved() {
+        Timer timer = schedule(TimeUnit.SECONDS.toNanos(1));
+        wheel.schedule(timer, TimeUnit.MINUTES.toNanos(5));
+
+        advance(TimeUnit.MINUTES.toNanos(1));
+        assertEquals(0, fired.size());
+        advance(TimeUnit.MINUTES.toNanos(5) + TICK);
+        assertEquals(1, fired.size());
+    }
+
+    @Test
+    void consumerMayScheduleTheNodeAgain() {
+        Timer timer = schedule(TimeUnit.SECONDS.toNanos(1));
+        long now = TimeUnit.SECONDS.toNanos(2);
+        wheel.advance(now, node -> wheel.schedule(node, now + TimeUnit.SECONDS.toNanos(3)));
+        assertEquals(0, fired.size());
+
+        advance(TimeUnit.SECONDS.toNanos(5) + TICK);
+        assertEquals(1, fired.size());
+        assertTrue(fired.contains(timer));
+    }
+
+    @Test
+    void clearedNodesDoNotFire() {
+        schedule(TimeUnit.SECONDS.toNanos(1));
+        schedule(TimeUnit.HOURS.toNanos(1));
+        wheel.clear();
+
+        advance(TimeUnit.DAYS.toNanos(1));
+        assertEquals(0, fired.size());
+    }
+
+    @Test
+    void everyNodeFiresOnceNeitherEarlyNorLaterThanOneTick() {
+        Random random = new Random(42);
+        List<Timer> timers = new ArrayList<>();
+        long now = 0;
+        for (int round = 0; round < 2000; round++) {
+            for (int i = 0; i < 5; i++) {
+                // delays from nanoseconds up to about two weeks
+                long delay = (long) Math.pow(2, 10 + random.nextDouble() * 40);
+                timers.add(schedule(now + delay));
+            }
+            now += (long) Math.pow(2, 20 + random.nextDouble() * 30);
+            fired.clear();
+            advance(now);
+
+            for (Timer timer : fired) {
+                assertTrue(timer.time <= now, "fired early");
+                timer.firings++;
+            }
+            for (Timer timer : timers) {
+                assertTrue(timer.firings <= 1, "fired twice");
+                if (now / TICK > timer.time / TICK) {
+                    assertEquals(1, timer.firings, "firings of the timer at " + timer.time + " at " + now);
+                }
+            }
+            timers.removeIf(timer -> timer.firings > 0);
+        }
+    }
+
+    private Timer schedule(long time) {
+        Timer timer = new Timer();
+        wheel.schedule(timer, time);
+        return timer;
+    }
+
+    private void advance(long now) {
+        wheel.advance(now, fired::add);
+    }
+
+    private static final class Timer extends TimerWheel.Node {
+        private int firings;
+    }
+}
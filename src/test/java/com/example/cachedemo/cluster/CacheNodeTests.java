@@ -0,0 +1,201 @@
+package com.example.cachedemo.cluster;
+
+import com.example.cachedemo.cache.Cache;
+import com.example.cachedemo.cache.CacheLRUImpl;
+import com.example.cachedemo.model.Film;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.example.cachedemo.Films.film;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Two nodes of the partitioned cache on localhost.
+ */
+class CacheNodeTests {
+
+    private String addressA;
+    private String addressB;
+    private CacheNode nodeA;
+    private CacheNode nodeB;
+    private FilmCachePartitioned cacheA;
+    private FilmCachePartitioned cacheB;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        addressA = "127.0.0.1:" + freePort();
+        addressB = "127.0.0.1:" + freePort();
+        List<String> nodes = Arrays.asList(addressA, addressB);
+        nodeA = new CacheNode(addressA, nodes, 256, 1000, new CacheLRUImpl<>(100));
+        nodeB = new CacheNode(addressB, nodes, 256, 1000, new CacheLRUImpl<>(100));
+        cacheA = new FilmCachePartitioned(nodeA, new CacheLRUImpl<>(10));
+        cacheB = new FilmCachePartitioned(nodeB, new CacheLRUImpl<>(10));
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodeA.close();
+        nodeB.close();
+    }
+
+    @Test
+    void everyKeyHasOneOwner() {
+        int ownedByA = 0;
+        for (int key = 0; key < 1000; key++) {
+            assertNotEquals(nodeA.owns(key), nodeB.owns(key));
+            if (nodeA.owns(key)) {
+                ownedByA++;
+            }
+        }
+        // 256 virtual nodes per node keep the split close to even
+        assertTrue(ownedByA > 350 && ownedByA < 650, "keys owned by A: " + ownedByA);
+    }
+
+    @Test
+    void filmsOfTheOtherNodeAreStoredByTheOwner() {
+        int key = keyOwnedBy(nodeB);
+        Film film = film(key, "Solaris");
+
+        cacheA.put(key, film);
+        assertEquals(film, nodeB.partition().get(key));
+        assertNull(nodeA.partition().get(key));
+        // a node without a near copy gets the film from the owner
+        assertEquals(film, new FilmCachePartitioned(nodeA, new CacheLRUImpl<>(10)).get(key));
+        assertEquals(film, cacheB.get(key));
+    }
+
+    @Test
+    void removeReachesTheOwner() {
+        int key = keyOwnedBy(nodeB);
+        cacheA.put(key, film(key, "Stalker"));
+
+        cacheA.remove(key);
+        assertNull(nodeB.partition().get(key));
+        assertNull(cacheA.get(key));
+        assertNull(cacheB.get(key));
+    }
+
+    @Test
+    void nearCopyIsServedUntilInvalidated() {
+        int key = keyOwnedBy(nodeB);
+        cacheB.put(key, film(key, "Mirror"));
+        assertEquals("Mirror", cacheA.get(key).getTitle());
+
+        cacheB.put(key, film(key, "Mirror, restored"));
+        // the near copy of A is stale until it expires or an invalidation arrives
+        assertEquals("Mirror", cacheA.get(key).getTitle());
+
+        // what the invalidation bus does on A
+        cacheA.remove(key);
+        assertNull(cacheA.get(key));
+        cacheB.put(key, film(key, "Mirror, restored"));
+        assertEquals("Mirror, restored", cacheA.get(key).getTitle());
+    }
+
+    @Test
+    void unreachableOwnerIsAMiss() {
+        int key = keyOwnedBy(nodeB);
+        cacheA.put(key, film(key, "Nostalghia"));
+        nodeB.close();
+        Cache<Integer, Film> withoutNearCopy = new FilmCachePartitioned(nodeA, new CacheLRUImpl<>(10));
+
+        assertNull(withoutNearCopy.get(key));
+        // the put fails, so no near copy is kept either
+        withoutNearCopy.put(key, film(key, "Nostalghia"));
+        assertNull(withoutNearCopy.get(key));
+    }
+
+    @Test
+    void removeThatMissedTheOwnerIsRetriedBeforeItIsReadAgain() throws Exception {
+        int key = keyOwnedBy(nodeB);
+        cacheA.put(key, film(key, "Solaris"));
+        nodeB.close();
+
+        cacheA.remove(key);
+        // the owner may still hold the film, so it is a miss
+        assertNull(cacheA.get(key));
+
+        // restarted with the partition it had
+        nodeB = new CacheNode(addressB, Arrays.asList(addressA, addressB), 256, 1000, nodeB.partition());
+        assertEquals("Solaris", nodeB.partition().get(key).getTitle());
+        // the failed retry marked B down
+        Thread.sleep(700);
+        assertNull(cacheA.get(key));
+        assertNull(nodeB.partition().get(key));
+
+        cacheA.put(key, film(key, "Solaris, restored"));
+        assertEquals("Solaris, restored", nodeB.partition().get(key).getTitle());
+    }
+
+    @Test
+    void unreachableNodeIsMarkedDown() throws Exception {
+        InetSocketAddress address = new InetSocketAddress("127.0.0.1", freePort());
+        PartitionClient client = new PartitionClient(address, 1000);
+        assertThrows(IOException.class, () -> client.get(1));
+
+        PartitionServer server = new PartitionServer(address,
+                Collections.singleton(InetAddress.getByName("127.0.0.1")), new CacheLRUImpl<>(10));
+        try {
+            IOException e = assertThrows(IOException.class, () -> client.get(1));
+            assertTrue(e.getMessage().contains("marked down"), e.getMessage());
+
+            Thread.sleep(700);
+            assertNull(client.get(1));
+        } finally {
+            server.close();
+            client.close();
+        }
+    }
+
+    @Test
+    void connectionsFromOutsideTheClusterAreRejected() throws IOException {
+        String self = "127.0.0.1:" + freePort();
+        // the only other node is on another address, so a client on 127.0.0.1 is not a node
+        CacheNode node = new CacheNode(self, Arrays.asList(self, "127.0.0.2:" + freePort()), 256, 1000,
+                new CacheLRUImpl<>(10));
+        try (Socket socket = new Socket("127.0.0.1", Integer.parseInt(self.substring(self.indexOf(':') + 1)))) {
+            socket.setSoTimeout(2000);
+            ByteBuffer put = PartitionProtocol.request(PartitionProtocol.OP_PUT, 1, film(1, "Injected"));
+            InputStream in = socket.getInputStream();
+            try {
+                socket.getOutputStream().write(put.array(), 0, put.limit());
+                assertEquals(-1, in.read());
+            } catch (IOException e) {
+                // reset by the server, rejected as well
+            }
+        } finally {
+            node.close();
+        }
+        assertEquals(0, node.partition().size());
+    }
+
+    private static int keyOwnedBy(CacheNode node) {
+        for (int key = 0; ; key++) {
+            if (node.owns(key)) {
+                return key;
+            }
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.cachedemo.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InvalidationMessageTests {
+
+    @Test
+    void keysSurviveEncodeAndDecode() {
+        int[] changed = {42, -1, Integer.MAX_VALUE, 0, Integer.MIN_VALUE, 7};
+        int[] structural = {-100, 100};
+
+        InvalidationMessage decoded = InvalidationMessage.decode(
+                new InvalidationMessage(-5L, changed, structural).encode());
+
+        assertEquals(-5L, decoded.getSender());
+        // keys come back in ascending order
+        assertArrayEquals(new int[]{Integer.MIN_VALUE, -1, 0, 7, 42, Integer.MAX_VALUE}, decoded.getChanged());
+        assertArrayEquals(new int[]{-100, 100}, decoded.getStructural());
+    }
+
+    @Test
+    void emptyListsSurviveEncodeAndDecode() {
+        InvalidationMessage decoded = InvalidationMessage.decode(
+                new InvalidationMessage(1L, new int[0], new int[0]).encode());
+
+        assertEquals(0, decoded.getChanged().length);
+        assertEquals(0, decoded.getStructural().length);
+    }
+
+    @Test
+    void denseKeysTakeAboutOneByteEach() {
+        int[] changed = new int[1000];
+        Arrays.setAll(changed, i -> 5000 + i);
+
+        byte[] encoded = new InvalidationMessage(1L, changed, new int[0]).encode();
+
+        assertTrue(encoded.length < 1000 + InvalidationMessage.HEADER_SIZE + 2, "length " + encoded.length);
+    }
+
+    @Test
+    void maxKeysAlwaysFitIntoTheMessageSize() {
+        Random random = new Random(7);
+        int maxKeys = InvalidationMessage.maxKeys(1400);
+        for (int run = 0; run < 100; run++) {
+            int[] changed = new int[random.nextInt(maxKeys + 1)];
+            int[] structural = new int[maxKeys - changed.length];
+            Arrays.setAll(changed, i -> random.nextInt());
+            Arrays.setAll(structural, i -> random.nextInt());
+
+            byte[] encoded = new InvalidationMessage(random.nextLong(), changed, structural).encode();
+
+            assertTrue(encoded.length <= 1400, "length " + encoded.length);
+            InvalidationMessage decoded = InvalidationMessage.decode(encoded);
+            Arrays.sort(changed);
+            Arrays.sort(structural);
+            assertArrayEquals(changed, decoded.getChanged());
+            assertArrayEquals(structural, decoded.getStructural());
+        }
+    }
+
+    @Test
+    void malformedMessagesAreRejected() {
+        byte[] encoded = new InvalidationMessage(1L, new int[]{1, 2, 3}, new int[]{4}).encode();
+
+        assertThrows(IllegalArgumentException.class, () -> InvalidationMessage.decode(new byte[0]));
+        assertThrows(IllegalArgumentException.class,
+                () -> InvalidationMessage.decode(Arrays.copyOf(encoded, encoded.length - 1)));
+        byte[] otherVersion = encoded.clone();
+        otherVersion[0] = 2;
+        assertThrows(IllegalArgumentException.class, () -> InvalidationMessage.decode(otherVersion));
+        byte[] hugeCount = Arrays.copyOf(encoded, 1 + 8 + 5);
+        Arrays.fill(hugeCount, 9, hugeCount.length - 1, (byte) 0xFF);
+        hugeCount[hugeCount.length - 1] = 0x07;
+        assertThrows(IllegalArgumentException.class, () -> InvalidationMessage.decode(hugeCount));
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.cachedemo.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class UdpTransportTests {
+
+    @Test
+    void onlyDatagramsOfPeersAreReceived() throws Exception {
+        int port = freePort();
+        // the only peer is on another loopback address
+        InetSocketAddress peer = new InetSocketAddress("127.0.0.2", freePort());
+        BlockingQueue<byte[]> received = new LinkedBlockingQueue<>();
+        try (UdpTransport transport = new UdpTransport(port, Collections.singletonList(peer));
+             DatagramChannel outsider = DatagramChannel.open();
+             DatagramChannel member = DatagramChannel.open()) {
+            transport.setReceiver(received::add);
+            InetSocketAddress target = new InetSocketAddress("127.0.0.1", port);
+
+            outsider.bind(new InetSocketAddress("127.0.0.1", 0));
+            outsider.send(ByteBuffer.wrap(new byte[]{1}), target);
+            assertNull(received.poll(200, TimeUnit.MILLISECONDS));
+
+            member.bind(peer);
+            member.send(ByteBuffer.wrap(new byte[]{2}), target);
+            assertArrayEquals(new byte[]{2}, received.poll(5, TimeUnit.SECONDS));
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (DatagramSocket socket = new DatagramSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
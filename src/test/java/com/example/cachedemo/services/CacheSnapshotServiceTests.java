@@ -0,0 +1,63 @@
+package com.example.cachedemo.services;
+
+import com.example.cachedemo.cache.Cache2QImpl;
+import com.example.cachedemo.cache.FilmSnapshotFile;
+import com.example.cachedemo.cache.SnapshotEntry;
+import com.example.cachedemo.model.Film;
+import com.example.cachedemo.repositories.FilmRepository;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.example.cachedemo.Films.film;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CacheSnapshotServiceTests {
+
+    private final FilmRepository filmRepository = mock(FilmRepository.class);
+
+    @Test
+    void restoredFilmsAreTheOnesStillInTheDatabase() throws IOException {
+        Path file = Files.createTempFile("film-cache", ".snapshot");
+        try {
+            FilmSnapshotFile.write(file, Arrays.asList(
+                    new SnapshotEntry<>(Cache2QImpl.QUEUE_IN, 1, film(1, "Solaris")),
+                    new SnapshotEntry<>(Cache2QImpl.QUEUE_IN, 2, film(2, "Stalker")),
+                    new SnapshotEntry<>(Cache2QImpl.QUEUE_HOT, 3, film(3, "Mirror"))), 2);
+            // 2 was deleted and 3 edited while the node was down
+            Film mirror = film(3, "Mirror (restored)");
+            when(filmRepository.findAllById(any())).thenAnswer(invocation -> {
+                List<Film> films = new ArrayList<>();
+                for (Object id : (Iterable<?>) invocation.getArguments()[0]) {
+                    if (id.equals(1)) {
+                        films.add(film(1, "Solaris"));
+                    } else if (id.equals(3)) {
+                        films.add(mirror);
+                    }
+                }
+                return films;
+            });
+            Cache2QImpl<Integer, Film> filmCache = new Cache2QImpl<>(100);
+
+            new CacheSnapshotService(filmRepository, filmCache, file.toString(), 2).restore();
+
+            assertEquals(2, filmCache.size());
+            assertEquals(film(1, "Solaris"), filmCache.get(1));
+            assertNull(filmCache.get(2));
+            assertEquals(mirror, filmCache.get(3));
+            List<SnapshotEntry<Integer, Film>> restored = filmCache.snapshot();
+            assertEquals(Cache2QImpl.QUEUE_HOT, restored.get(restored.size() - 1).getQueue());
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.cachedemo.services;
+
+import com.example.cachedemo.cache.Cache;
+import com.example.cachedemo.cache.CacheLRUImpl;
+import com.example.cachedemo.model.Film;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static com.example.cachedemo.Films.film;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class FilmCacheCoordinatorTests {
+
+    private final TransactionTemplate transactionTemplate = new TransactionTemplate(new NoOpTransactionManager());
+    private final Cache<Integer, Film> filmCache = new CacheLRUImpl<>(100);
+    private final FilmCacheCoordinator coordinator = new FilmCacheCoordinator(filmCache);
+
+    private final Film original = film(1, "Solaris");
+    private final Film edited = film(1, "Solaris (director's cut)");
+
+    @Test
+    void writeWithoutTransactionIsAppliedAtOnce() {
+        filmCache.put(1, original);
+
+        coordinator.remove(1);
+        assertNull(filmCache.get(1));
+    }
+
+    @Test
+    void writesAreAppliedAfterCommit() {
+        filmCache.put(1, original);
+
+        transactionTemplate.execute(status -> {
+            coordinator.remove(1);
+            assertEquals(original, filmCache.get(1));
+            return null;
+        });
+
+        assertNull(filmCache.get(1));
+    }
+
+    @Test
+    void rolledBackWritesAreNotApplied() {
+        filmCache.put(1, original);
+        filmCache.put(2, film(2, "Stalker"));
+
+        transactionTemplate.execute(status -> {
+            coordinator.remove(1);
+            coordinator.remove(2);
+            status.setRollbackOnly();
+            return null;
+        });
+
+        assertEquals(original, filmCache.get(1));
+        assertEquals("Stalker", filmCache.get(2).getTitle());
+    }
+
+    @Test
+    void callbacksRunningOutOfCommitOrderLeaveNoStaleFilm() {
+        // the edit committed second is applied first and a read caches it
+        transactionTemplate.execute(status -> {
+            coordinator.remove(1);
+            return null;
+        });
+        filmCache.put(1, edited);
+        // the callback of the edit committed first runs last
+        transactionTemplate.execute(status -> {
+            coordinator.remove(1);
+            return null;
+        });
+
+        assertNull(filmCache.get(1));
+    }
+
+    @Test
+    void loadWithoutWriteIsKept() {
+        long stamp = coordinator.stamp(1);
+        filmCache.put(1, original);
+        coordinator.validate(1, stamp);
+
+        assertEquals(original, filmCache.get(1));
+    }
+
+    @Test
+    void loadRacingACommittedEditIsDropped() {
+        // the load read the original film before the edit committed and caches it afterwards
+        long stamp = coordinator.stamp(1);
+        transactionTemplate.execute(status -> {
+            coordinator.remove(1);
+            return null;
+        });
+        filmCache.put(1, original);
+        coordinator.validate(1, stamp);
+
+        assertNull(filmCache.get(1));
+    }
+
+    @Test
+    void loadRacingARolledBackEditIsKept() {
+        long stamp = coordinator.stamp(1);
+        transactionTemplate.execute(status -> {
+            coordinator.remove(1);
+            status.setRollbackOnly();
+            return null;
+        });
+        filmCache.put(1, original);
+        coordinator.validate(1, stamp);
+
+        assertEquals(original, filmCache.get(1));
+    }
+
+    @Test
+    void loadStampedAfterTheCommitIsKept() {
+        transactionTemplate.execute(status -> {
+            coordinator.remove(1);
+            return null;
+        });
+        long stamp = coordinator.stamp(1);
+        filmCache.put(1, edited);
+        coordinator.validate(1, stamp);
+
+        assertEquals(edited, filmCache.get(1));
+    }
+
+    @Test
+    void batchLoadDropsOnlyTheEditedFilm() {
+        long[] stamps = coordinator.stampAll();
+        transactionTemplate.execute(status -> {
+            coordinator.remove(1);
+            return null;
+        });
+        filmCache.put(1, original);
+        filmCache.put(2, film(2, "Stalker"));
+        coordinator.validate(1, stamps);
+        coordinator.validate(2, stamps);
+
+        assertNull(filmCache.get(1));
+        assertEquals("Stalker", filmCache.get(2).getTitle());
+    }
+
+    private static final class NoOpTransactionManager extends AbstractPlatformTransactionManager {
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.cachedemo.services;
+
+import com.example.cachedemo.cluster.InvalidationMessage;
+import com.example.cachedemo.cluster.LoopbackTransport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Two nodes of one JVM connected by the loopback transport.
+ */
+class FilmInvalidationBusTests {
+
+    private final TransactionTemplate transactionTemplate = new TransactionTemplate(new NoOpTransactionManager());
+
+    private LoopbackTransport transportA;
+    private LoopbackTransport transportB;
+    private FilmInvalidationBus busA;
+    private FilmInvalidationBus busB;
+    private final List<int[][]> receivedByA = new ArrayList<>();
+    private final List<int[][]> receivedByB = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        transportA = new LoopbackTransport();
+        transportB = new LoopbackTransport();
+        busA = new FilmInvalidationBus(transportA);
+        busB = new FilmInvalidationBus(transportB);
+        busA.setListener((changed, structural) -> receivedByA.add(new int[][]{changed, structural}));
+        busB.setListener((changed, structural) -> receivedByB.add(new int[][]{changed, structural}));
+    }
+
+    @AfterEach
+    void tearDown() {
+        transportA.close();
+        transportB.close();
+    }
+
+    @Test
+    void invalidationsOfATransactionAreSentAfterCommit() {
+        transactionTemplate.execute(status -> {
+            busA.publishChanged(1);
+            busA.publishStructural(2);
+            busA.flush();
+            // nothing is committed yet
+            assertTrue(receivedByB.isEmpty());
+            return null;
+        });
+        assertTrue(receivedByB.isEmpty());
+
+        busA.flush();
+        assertEquals(1, receivedByB.size());
+        assertEquals(1, receivedByB.get(0)[0].length);
+        assertEquals(1, receivedByB.get(0)[0][0]);
+        assertEquals(1, receivedByB.get(0)[1].length);
+        assertEquals(2, receivedByB.get(0)[1][0]);
+        // the sender does not hear its own message
+        assertTrue(receivedByA.isEmpty());
+    }
+
+    @Test
+    void rolledBackTransactionSendsNothing() {
+        transactionTemplate.execute(status -> {
+            busA.publishChanged(1);
+            busA.publishStructural(2);
+            status.setRollbackOnly();
+            return null;
+        });
+        assertThrows(IllegalStateException.class, () -> transactionTemplate.execute(status -> {
+            busA.publishChanged(3);
+            throw new IllegalStateException("rollback");
+        }));
+
+        busA.flush();
+        assertTrue(receivedByB.isEmpty());
+
+        // the next transaction starts with an empty batch
+        transactionTemplate.execute(status -> {
+            busA.publishChanged(4);
+            return null;
+        });
+        busA.flush();
+        assertEquals(1, receivedByB.size());
+        assertEquals(4, receivedByB.get(0)[0][0]);
+        assertEquals(1, receivedByB.get(0)[0].length);
+    }
+
+    @Test
+    void invalidationsOutsideATransactionAreSentWithTheNextFlush() {
+        busB.publishChanged(-7);
+        busB.publishChanged(-7);
+        assertTrue(receivedByA.isEmpty());
+
+        busB.flush();
+        assertEquals(1, receivedByA.size());
+        assertEquals(1, receivedByA.get(0)[0].length);
+        assertEquals(-7, receivedByA.get(0)[0][0]);
+
+        // nothing left to send
+        busB.flush();
+        assertEquals(1, receivedByA.size());
+    }
+
+    @Test
+    void largeBatchIsSplitIntoMessagesOfMaxKeys() {
+        int maxKeys = InvalidationMessage.maxKeys(transportA.maxMessageSize());
+        Set<Integer> changed = new TreeSet<>();
+        Set<Integer> structural = new TreeSet<>();
+        for (int i = 0; i < 2 * maxKeys; i++) {
+            // spread over the whole int range, so that the keys take the most bytes
+            changed.add(i * 1_000_003 * 2_003);
+        }
+        for (int i = 0; i < maxKeys / 2; i++) {
+            structural.add(-i);
+        }
+        changed.forEach(busA::publishChanged);
+        structural.forEach(busA::publishStructural);
+
+        // the loopback transport rejects messages over its max size
+        busA.flush();
+        int expectedMessages = (changed.size() + structural.size() + maxKeys - 1) / maxKeys;
+        assertEquals(expectedMessages, receivedByB.size());
+
+        Set<Integer> receivedChanged = new TreeSet<>();
+        Set<Integer> receivedStructural = new TreeSet<>();
+        for (int[][] message : receivedByB) {
+            assertTrue(message[0].length + message[1].length <= maxKeys);
+            for (int key : message[0]) {
+                receivedChanged.add(key);
+            }
+            for (int key : message[1]) {
+                receivedStructural.add(key);
+            }
+        }
+        assertEquals(changed, receivedChanged);
+        assertEquals(structural, receivedStructural);
+    }
+
+    /**
+     * Runs the transaction synchronizations without a resource.
+     */
+    private static final class NoOpTransactionManager extends AbstractPlatformTransactionManager {
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
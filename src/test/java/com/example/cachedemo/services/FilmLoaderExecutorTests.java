@@ -0,0 +1,87 @@
+package com.example.cachedemo.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs on virtual threads on Java 21+ and on the pool otherwise, the limits are the same.
+ */
+class FilmLoaderExecutorTests {
+
+    private final FilmLoaderExecutor executor = new FilmLoaderExecutor(2, 10);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void atMostThreadsLoadsRunAtOnce() throws InterruptedException {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(10);
+        for (int i = 0; i < 10; i++) {
+            executor.execute(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleep(20);
+                running.decrementAndGet();
+                done.countDown();
+            });
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(2, maxRunning.get());
+    }
+
+    @Test
+    void loadsOverMaxPendingAreRejected() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(10);
+        for (int i = 0; i < 10; i++) {
+            executor.execute(() -> {
+                await(release);
+                done.countDown();
+            });
+        }
+
+        assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> {
+        }));
+        release.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        // the finished loads made room again
+        CountDownLatch accepted = new CountDownLatch(1);
+        executor.execute(accepted::countDown);
+        assertTrue(accepted.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void invalidLimitsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new FilmLoaderExecutor(0, 10));
+        assertThrows(IllegalArgumentException.class, () -> new FilmLoaderExecutor(4, 2));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
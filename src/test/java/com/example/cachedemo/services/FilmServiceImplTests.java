@@ -0,0 +1,128 @@
+package com.example.cachedemo.services;
+
+import com.example.cachedemo.cache.CacheLRUImpl;
+import com.example.cachedemo.cache.CacheStatsImpl;
+import com.example.cachedemo.cache.IntCacheAdapter;
+import com.example.cachedemo.cache.IntCacheLRUImpl;
+import com.example.cachedemo.model.Film;
+import com.example.cachedemo.repositories.FilmRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.cachedemo.Films.film;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FilmServiceImplTests {
+
+    private final FilmRepository filmRepository = mock(FilmRepository.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final CacheStatsImpl<Integer, Film> filmCache = new CacheStatsImpl<>(new CacheLRUImpl<>(100));
+    private final FilmLoaderExecutor filmLoader = new FilmLoaderExecutor(2, 10);
+    private final FilmServiceImpl filmService = new FilmServiceImpl(filmRepository, filmCache,
+            transactionManager, 100, absent(), filmLoader, absent());
+
+    @AfterEach
+    void tearDown() {
+        filmLoader.shutdown();
+    }
+
+    @Test
+    void asyncMissIsRecordedOnceAndCached() throws Exception {
+        Film film = film(1, "Solaris");
+        when(filmRepository.findById(1)).thenReturn(Optional.of(film));
+
+        assertEquals(film, filmService.getByIdAsync(1).get(5, TimeUnit.SECONDS));
+        assertEquals(1, filmCache.stats().missCount());
+        assertEquals(0, filmCache.stats().hitCount());
+
+        CompletableFuture<Film> hit = filmService.getByIdAsync(1);
+        assertTrue(hit.isDone());
+        assertEquals(film, hit.get());
+        assertEquals(1, filmCache.stats().hitCount());
+        verify(filmRepository, times(1)).findById(1);
+    }
+
+    @Test
+    void concurrentAsyncMissesShareOneLoad() throws Exception {
+        Film film = film(1, "Solaris");
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(filmRepository.findById(1)).thenAnswer(invocation -> {
+            loading.countDown();
+            release.await();
+            return Optional.of(film);
+        });
+
+        CompletableFuture<Film> first = filmService.getByIdAsync(1);
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Film> second = filmService.getByIdAsync(1);
+        release.countDown();
+
+        assertEquals(film, first.get(5, TimeUnit.SECONDS));
+        assertEquals(film, second.get(5, TimeUnit.SECONDS));
+        verify(filmRepository, times(1)).findById(1);
+        assertEquals(film, filmCache.get(1));
+    }
+
+    @Test
+    void unknownFilmIsNotCached() throws Exception {
+        assertNull(filmService.getByIdAsync(2).get(5, TimeUnit.SECONDS));
+        assertNull(filmService.getByIdAsync(2).get(5, TimeUnit.SECONDS));
+
+        verify(filmRepository, times(2)).findById(2);
+        assertEquals(0, filmCache.size());
+    }
+
+    @Test
+    void intCacheIsReadWithPrimitiveIds() {
+        IntCacheAdapter<Film> intCache = new IntCacheAdapter<>(new IntCacheLRUImpl<>(100));
+        FilmServiceImpl service = new FilmServiceImpl(filmRepository, intCache, transactionManager, 100,
+                absent(), filmLoader, absent());
+        Film film = film(1, "Solaris");
+        when(filmRepository.findById(1)).thenReturn(Optional.of(film));
+
+        assertEquals(film, service.getById(1));
+        assertEquals(film, service.getById(1));
+
+        verify(filmRepository, times(1)).findById(1);
+        assertEquals(film, intCache.intCache().get(1));
+        assertEquals(1, intCache.stats().missCount());
+        assertEquals(2, intCache.stats().hitCount());
+    }
+
+    @Test
+    void idSentWithANewFilmIsIgnored() {
+        Film film = film(5, "Solaris");
+        when(filmRepository.save(any())).thenAnswer(invocation -> {
+            Film saved = (Film) invocation.getArguments()[0];
+            assertNull(saved.getId());
+            saved.setId(1);
+            return saved;
+        });
+
+        filmService.add(film);
+
+        assertEquals(1, (int) film.getId());
+        assertNull(filmCache.get(5));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> ObjectProvider<T> absent() {
+        // getIfAvailable of a mock returns null
+        return mock(ObjectProvider.class);
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.cachedemo.services;
+
+import com.example.cachedemo.model.Film;
+import com.example.cachedemo.repositories.FilmRepository;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.persister.entity.EntityPersister;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.persistence.EntityManager;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.example.cachedemo.Films.film;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FilmWriteBehindTests {
+
+    private final FilmRepository filmRepository = mock(FilmRepository.class);
+    private final List<Film> flushedSaves = new CopyOnWriteArrayList<>();
+    private final List<Film> flushedDeletes = new CopyOnWriteArrayList<>();
+
+    @Test
+    void writesOfTheSameFilmAreCoalesced() {
+        FilmWriteBehind writeBehind = writeBehind(10, 10);
+        Film edited = film(1, "Solaris (director's cut)");
+        Film stalker = film(2, "Stalker");
+        writeBehind.edit(film(1, "Solaris"));
+        writeBehind.edit(stalker);
+        writeBehind.edit(edited);
+
+        assertEquals(2, writeBehind.pendingCount());
+        assertEquals(edited, writeBehind.pendingWrite(1).getFilm());
+
+        writeBehind.delete(stalker);
+        assertTrue(writeBehind.pendingWrite(2).isDelete());
+
+        writeBehind.flush();
+        assertEquals(0, writeBehind.pendingCount());
+        assertEquals(Collections.singletonList(edited), flushedSaves);
+        assertEquals(Collections.singletonList(stalker), flushedDeletes);
+        verify(filmRepository, times(1)).saveAll(any());
+    }
+
+    @Test
+    void editOfAPendingInsertKeepsTheAssignedId() {
+        EntityManager entityManager = mock(EntityManager.class);
+        SharedSessionContractImplementor session = mock(SharedSessionContractImplementor.class);
+        EntityPersister persister = mock(EntityPersister.class);
+        IdentifierGenerator generator = mock(IdentifierGenerator.class);
+        when(entityManager.unwrap(SharedSessionContractImplementor.class)).thenReturn(session);
+        when(session.getEntityPersister(any(), any())).thenReturn(persister);
+        when(persister.getIdentifierGenerator()).thenReturn(generator);
+        when(generator.generate(any(), any())).thenReturn(7);
+        FilmWriteBehind writeBehind = new FilmWriteBehind(filmRepository, entityManager,
+                mock(PlatformTransactionManager.class), 50, 10, 10);
+
+        // the id sent by the client is not kept
+        Film added = film(3, "Solaris");
+        writeBehind.add(added);
+        assertEquals(7, (int) added.getId());
+        assertTrue(added.hasAssignedId());
+
+        Film edited = film(7, "Solaris (director's cut)");
+        writeBehind.edit(edited);
+        assertTrue(edited.hasAssignedId());
+        assertFalse(film(7, "Stalker").hasAssignedId());
+    }
+
+    @Test
+    void fullQueueBlocksWritersUntilFlush() throws Exception {
+        FilmWriteBehind writeBehind = writeBehind(1, 10);
+        writeBehind.edit(film(1, "Solaris"));
+        // a write of a queued film takes its place and does not wait
+        writeBehind.edit(film(1, "Solaris (director's cut)"));
+
+        CountDownLatch written = new CountDownLatch(1);
+        Thread writer = new Thread(() -> {
+            writeBehind.edit(film(2, "Stalker"));
+            written.countDown();
+        });
+        writer.start();
+        assertFalse(written.await(100, TimeUnit.MILLISECONDS));
+
+        writeBehind.flush();
+        assertTrue(written.await(5, TimeUnit.SECONDS));
+        writer.join();
+    }
+
+    @Test
+    void pendingWritesAreFlushedOnShutdown() {
+        FilmWriteBehind writeBehind = writeBehind(10, 10);
+        Film solaris = film(1, "Solaris");
+        Film stalker = film(2, "Stalker");
+        writeBehind.edit(solaris);
+        writeBehind.delete(stalker);
+
+        writeBehind.shutdown();
+
+        assertEquals(0, writeBehind.pendingCount());
+        assertEquals(Collections.singletonList(solaris), flushedSaves);
+        assertEquals(Collections.singletonList(stalker), flushedDeletes);
+        verify(filmRepository, times(1)).deleteInBatch(any());
+    }
+
+    @Test
+    void failedWriteStaysQueuedAndIsRetried() {
+        AtomicBoolean down = new AtomicBoolean(true);
+        when(filmRepository.saveAll(any())).thenAnswer(invocation -> {
+            if (down.get()) {
+                throw new TransientDataAccessResourceException("Connection is not available");
+            }
+            return invocation.getArguments()[0];
+        });
+        when(filmRepository.save(any())).thenAnswer(invocation -> {
+            if (down.get()) {
+                throw new TransientDataAccessResourceException("Connection is not available");
+            }
+            return invocation.getArguments()[0];
+        });
+        FilmWriteBehind writeBehind = writeBehind(10, 60_000);
+        Film solaris = film(1, "Solaris");
+        Film stalker = film(2, "Stalker");
+        writeBehind.edit(solaris);
+        writeBehind.edit(stalker);
+
+        writeBehind.flush();
+        assertEquals(2, writeBehind.pendingCount());
+        assertEquals(solaris, writeBehind.pendingWrite(1).getFilm());
+        // the listener must not drop the cached copies of writes that did not happen
+        assertTrue(flushedSaves.isEmpty());
+
+        // the scheduled flush waits for the retry delay
+        writeBehind.scheduledFlush();
+        verify(filmRepository, times(1)).saveAll(any());
+
+        down.set(false);
+        writeBehind.flush();
+        assertEquals(0, writeBehind.pendingCount());
+        assertEquals(Arrays.asList(solaris, stalker), flushedSaves);
+    }
+
+    @Test
+    void rejectedWriteIsDropped() {
+        when(filmRepository.saveAll(any())).thenAnswer(invocation -> {
+            throw new DataIntegrityViolationException("NULL not allowed for column TITLE");
+        });
+        when(filmRepository.save(any())).thenAnswer(invocation -> {
+            throw new DataIntegrityViolationException("NULL not allowed for column TITLE");
+        });
+        FilmWriteBehind writeBehind = writeBehind(10, 10);
+        Film untitled = film(1, null);
+        writeBehind.edit(untitled);
+
+        writeBehind.flush();
+
+        // retrying would fail again, the listener still drops the cached copy
+        assertEquals(0, writeBehind.pendingCount());
+        assertEquals(Collections.singletonList(untitled), flushedSaves);
+    }
+
+    private FilmWriteBehind writeBehind(int capacity, long retryDelay) {
+        // a mocked transaction manager runs the writes without a transaction
+        FilmWriteBehind writeBehind = new FilmWriteBehind(filmRepository, mock(EntityManager.class),
+                mock(PlatformTransactionManager.class), 50, capacity, retryDelay);
+        writeBehind.setFlushListener((added, saved, deleted) -> {
+            flushedSaves.addAll(saved);
+            flushedDeletes.addAll(deleted);
+        });
+        return writeBehind;
+    }
+}